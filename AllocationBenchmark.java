@@ -0,0 +1,160 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * The class <b>AllocationBenchmark</b> measures the memory allocated by the
+ * moves of a game, with the allocation counter of the current thread. For
+ * each <b>FloodEngine</b>, seeded games are played by the
+ * <b>GreedyStrategy</b> until the requested number of moves, first to warm
+ * up the engine and its buffers, then to measure:
+ *
+ * - the flood alone, on the model, which should allocate nothing once the
+ *   buffers of the engine have grown
+ * - a move of the <b>GameEngine</b>, which also records the
+ *   <b>MoveDelta</b> kept by the history
+ *
+ * The options are given as key=value pairs, for instance:
+ *
+ * java AllocationBenchmark size=200 moves=2000
+ */
+public class AllocationBenchmark {
+
+    /**
+     * The options of the benchmark, with their default values
+     */
+    private int size = 100;
+    private int moves = 2000;
+    private long seed = 0;
+
+    /**
+     * The allocation counter of the threads
+     */
+    private com.sun.management.ThreadMXBean threads;
+
+    /**
+     * Constructor parsing the options of the benchmark
+     *
+     * @param args
+     *            the options, as key=value pairs
+     */
+    public AllocationBenchmark(String[] args) {
+        for(String arg : args){
+            int index = arg.indexOf('=');
+            if(index < 0){
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            String key = arg.substring(0, index);
+            String value = arg.substring(index + 1);
+            if(key.equals("size")){
+                size = Integer.parseInt(value);
+            } else if(key.equals("moves")){
+                moves = Integer.parseInt(value);
+            } else if(key.equals("seed")){
+                seed = Long.parseLong(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + key);
+            }
+        }
+        if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)){
+            throw new IllegalStateException("The allocation counter is not available on this JVM");
+        }
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Measures each engine and prints the bytes allocated per move
+     */
+    public void run() {
+        System.out.printf("Board %dx%d, %d moves, bytes allocated per move%n", size, size, moves);
+        System.out.printf("%-22s %12s %12s%n", "", "flood", "engine move");
+        FloodEngine[] engines = {new FrontierFloodEngine(), new RegionFloodEngine(), new BitboardFloodEngine()};
+        for(FloodEngine engine : engines){
+            flood(engine);
+            double flood = flood(engine);
+            System.out.printf("%-22s %12.1f%n", engine.getClass().getName(), flood);
+        }
+        play();
+        System.out.printf("%-22s %12s %12.1f%n", "GameEngine", "", play());
+    }
+
+    /**
+     * <b>flood</b> is a helper method that plays games with a flood engine
+     * on models, without history
+     *
+     * @return the number of bytes allocated per move, the creation of the
+     *         models and of the region graphs being excluded
+     */
+    private double flood(FloodEngine engine){
+        Strategy player = new GreedyStrategy();
+        GameEngine game = new GameEngine(size, seed);
+        GameModel model = game.getModel();
+        long bytes = 0;
+        int played = 0;
+        while(played < moves){
+            model.reset();
+            model.getRegionGraph();
+            engine.capture(model, 0, 0, null);
+            engine.flood(model, null);
+            while(!model.isFinished() && played < moves){
+                int color = player.nextColor(game);
+                long start = allocated();
+                model.setCurrentSelectedColor(color);
+                engine.flood(model, null);
+                model.step();
+                bytes += allocated() - start;
+                played++;
+            }
+        }
+        return (double) bytes / played;
+    }
+
+    /**
+     * <b>play</b> is a helper method that plays games with a GameEngine,
+     * recording the history
+     *
+     * @return the number of bytes allocated per move, the resets being
+     *         excluded
+     */
+    private double play(){
+        Strategy player = new GreedyStrategy();
+        GameEngine game = new GameEngine(size, seed);
+        long bytes = 0;
+        int played = 0;
+        while(played < moves){
+            game.reset();
+            game.getModel().getRegionGraph();
+            game.start(0, 0);
+            while(!game.isFinished() && played < moves){
+                int color = player.nextColor(game);
+                long start = allocated();
+                game.play(color);
+                bytes += allocated() - start;
+                played++;
+            }
+        }
+        return (double) bytes / played;
+    }
+
+    /**
+     * <b>allocated</b> is a helper method that returns the number of bytes
+     * allocated by the current thread so far
+     */
+    private long allocated(){
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+   /**
+     * <b>main</b> of the benchmark.
+     *
+     * @param args
+     *            the options of the benchmark, as key=value pairs
+     */
+    public static void main(String[] args) {
+        try{
+            new AllocationBenchmark(args).run();
+        } catch(IllegalArgumentException e){
+            System.out.println(e.getMessage());
+            System.out.println("Usage: java AllocationBenchmark [size=100] [moves=2000] [seed=0]");
+        }
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+
+/**
+ * The class <b>BatchRunner</b> plays a large number of games with an automated
+ * <b>Strategy</b>, without any user interface, using all the cores of the
+ * machine. Each game runs on its own <b>GameEngine</b>, so the threads do not
+ * share any mutable state. One line per game is streamed to a result file:
+ *
+ * seed,steps,nanoseconds,dots captured by each move (separated by spaces)
+ *
+ * and the throughput is printed at the end. The seed is the seed of the
+ * board, which <b>BoardGenerator</b> turns into the same board on every
+ * machine, so the boards are not stored. The options are given as
+ * key=value pairs, for instance:
+ *
+ * java BatchRunner size=14 mode=torus direction=diagonal seed=0 games=100000
+ *                  strategy=greedy threads=8 output=batch.csv
+ *
+ * The games of seed, seed+1, ... are played, unless seeds names a file, for
+ * instance the result file of a previous batch, whose lines start with the
+ * seeds of the boards to play.
+ *
+ * With grade=millis, each board is also solved by the <b>Solver</b> within
+ * that time, and two fields are added to its line: the optimal number of
+ * moves, and the number of moves played above it. A game is only graded
+ * when the solver proved its plan optimal: otherwise the first field holds
+ * the range lowerBound..planLength of the optimum and the second one is
+ * "unproven".
+ */
+public class BatchRunner {
+
+    /**
+     * The options of the batch, with their default values
+     */
+    private int size = 14;
+    private int mode = GameModel.MODE_PLANE;
+    private int direction = GameModel.DIRECTION_ORTHOGONAL;
+    private long seed = 0;
+    private long games = 1000;
+    private long[] seeds;
+    private String strategy = "greedy";
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String output = "batch.csv";
+    private long grade = 0;
+
+    /**
+     * Marks the end of the stream of results
+     */
+    private static final String END = "";
+
+    /**
+     * Constructor parsing the options of the batch
+     *
+     * @param args
+     *            the options, as key=value pairs
+     */
+    public BatchRunner(String[] args) {
+        for(String arg : args){
+            int index = arg.indexOf('=');
+            if(index < 0){
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            String key = arg.substring(0, index);
+            String value = arg.substring(index + 1);
+            if(key.equals("size")){
+                size = Integer.parseInt(value);
+            } else if(key.equals("mode")){
+                mode = value.equals("torus") ? GameModel.MODE_TORUS : GameModel.MODE_PLANE;
+            } else if(key.equals("direction")){
+                direction = value.equals("diagonal") ? GameModel.DIRECTION_DIAGONAL : GameModel.DIRECTION_ORTHOGONAL;
+            } else if(key.equals("seed")){
+                seed = Long.parseLong(value);
+            } else if(key.equals("seeds")){
+                seeds = readSeeds(value);
+            } else if(key.equals("games")){
+                games = Long.parseLong(value);
+            } else if(key.equals("strategy")){
+                strategy = value;
+            } else if(key.equals("threads")){
+                threads = Integer.parseInt(value);
+            } else if(key.equals("output")){
+                output = value;
+            } else if(key.equals("grade")){
+                grade = Long.parseLong(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + key);
+            }
+        }
+        createStrategy(0);
+        if(seeds != null){
+            games = seeds.length;
+        }
+    }
+
+    /**
+     * Plays all the games of the batch in parallel, streams their results
+     * to the output file and prints the throughput.
+     */
+    public void run() throws IOException, InterruptedException, ExecutionException {
+        final BlockingQueue<String> results = new ArrayBlockingQueue<String>(4096);
+        final PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(output)));
+        Thread writer = new Thread(() -> {
+            try{
+                for(String line = results.take(); line != END; line = results.take()){
+                    out.println(line);
+                }
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }, "batch-writer");
+        writer.start();
+
+        final LongAdder totalSteps = new LongAdder();
+        final LongAdder graded = new LongAdder();
+        final LongAdder excess = new LongAdder();
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try{
+            LongStream boards = seeds != null ? LongStream.of(seeds) : LongStream.range(seed, seed + games);
+            pool.submit(() -> boards.parallel().forEach(s -> {
+                String line = play(s, totalSteps, pool, graded, excess);
+                try{
+                    results.put(line);
+                }catch(InterruptedException e){
+                    throw new CancellationException("Interrupted");
+                }
+            })).get();
+        } finally {
+            pool.shutdown();
+            results.put(END);
+            writer.join();
+            out.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d games of size %d (%s) in %.2f s: %.0f games/sec, %.2f steps/game%n",
+            games, size, strategy, seconds, games / seconds, totalSteps.doubleValue() / games);
+        if(grade > 0){
+            System.out.printf("%d games graded: %.2f moves above the optimum per game; %d not graded, the optimum"
+                + " being unproven%n", graded.sum(), excess.doubleValue() / Math.max(1, graded.sum()),
+                games - graded.sum());
+        }
+    }
+
+    /**
+     * <b>play</b> is a helper method that plays one game from the top left
+     * corner and describes its result, graded against the optimum if asked
+     *
+     * @param gameSeed the seed of the board
+     * @param totalSteps the counter of steps of all the games
+     * @param pool the pool running the games, and the solver
+     * @param graded the counter of games graded
+     * @param excess the counter of moves played above the optimum by the
+     *        games graded
+     * @return the line describing the game
+     */
+    private String play(long gameSeed, LongAdder totalSteps, ForkJoinPool pool, LongAdder graded, LongAdder excess) {
+        long start = System.nanoTime();
+        GameEngine engine = new GameEngine(size, gameSeed);
+        engine.setMode(mode);
+        engine.setDirection(direction);
+        Strategy player = createStrategy(gameSeed);
+
+        StringBuilder captured = new StringBuilder();
+        captured.append(engine.start(0, 0).getNumberCaptured());
+        Solver.Plan plan = grade > 0 ? new Solver(engine.getModel(), pool).solve(grade, Long.MAX_VALUE) : null;
+        while(!engine.isFinished()){
+            MoveDelta delta = engine.play(player.nextColor(engine));
+            captured.append(' ').append(delta.getNumberCaptured());
+        }
+        long time = System.nanoTime() - start;
+        int steps = engine.getModel().getNumberOfSteps();
+        totalSteps.add(steps);
+        String line = gameSeed + "," + steps + "," + time + "," + captured;
+        if(plan == null){
+            return line;
+        }
+        if(!plan.isOptimal()){
+            return line + "," + plan.getLowerBound() + ".." + plan.getLength() + ",unproven";
+        }
+        graded.increment();
+        excess.add(steps - plan.getLength());
+        return line + "," + plan.getLength() + "," + (steps - plan.getLength());
+    }
+
+    /**
+     * <b>readSeeds</b> is a helper method that reads the seeds at the start
+     * of the lines of a file, up to the first comma if any
+     *
+     * @param file the name of the file
+     * @return the seeds
+     */
+    private static long[] readSeeds(String file) {
+        try(BufferedReader in = new BufferedReader(new FileReader(file))){
+            return in.lines().filter(line -> !line.isEmpty())
+                .mapToLong(line -> Long.parseLong(line.split(",", 2)[0].trim())).toArray();
+        }catch(IOException e){
+            throw new IllegalArgumentException("Cannot read seeds: " + e.getMessage());
+        }
+    }
+
+    /**
+     * <b>createStrategy</b> is a helper method that creates the strategy of
+     * a game
+     *
+     * @param gameSeed the seed of the game
+     * @return a new instance of the strategy of the batch
+     */
+    private Strategy createStrategy(long gameSeed) {
+        if(strategy.equals("greedy")){
+            return new GreedyStrategy();
+        } else if(strategy.equals("random")){
+            return new RandomStrategy(gameSeed);
+        }
+        throw new IllegalArgumentException("Unknown strategy: " + strategy);
+    }
+
+   /**
+     * <b>main</b> of the batch runner.
+     *
+     * @param args
+     *            the options of the batch, as key=value pairs
+     */
+    public static void main(String[] args) throws Exception {
+        try{
+            new BatchRunner(args).run();
+        } catch(IllegalArgumentException e){
+            System.out.println(e.getMessage());
+            System.out.println("Usage: java BatchRunner [size=14] [mode=plane|torus] [direction=orthogonal|diagonal]"
+                + " [seed=0] [games=1000] [seeds=file] [strategy=greedy|random] [threads=n] [output=batch.csv]"
+                + " [grade=millis]");
+        }
+    }
+}
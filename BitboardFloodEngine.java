@@ -0,0 +1,518 @@
+import java.util.Arrays;
+
+/**
+ * The class <b>BitboardFloodEngine</b> is a <b>FloodEngine</b> that works on
+ * bitboards, with one bit per dot and the dots of each row in a few longs:
+ * one mask per color, the mask of the captured dots, and the mask of the
+ * border, the dots that are not captured but are next to a captured dot.
+ * Selecting a color grows the captured mask 64 dots at a time:
+ *
+ * - only the rows where the border meets the selected color are looked at,
+ *   found among the rows that have a border
+ * - in such a row, the dots of the border of the selected color, and the
+ *   captured dots, are filled along the row through the runs of dots of the
+ *   selected color, with a few shifts per long
+ * - the border is updated around the new dots, and the rows above and below
+ *   are looked at again if their border now meets the selected color
+ *
+ * On a torus, the first and last rows, and the first and last columns, are
+ * next to each other. As for <b>FrontierFloodEngine</b>, the masks are only
+ * rebuilt from the model when it changed behind the engine's back: a move
+ * undone or redone is replayed on the captured mask and on the border
+ * around its dots only.
+ */
+
+public class BitboardFloodEngine implements FloodEngine {
+
+    /**
+     * The model and board the masks were computed for
+     */
+    private GameModel model;
+    private Board board;
+
+    /**
+     * The mode, direction and version of the model when the masks were last
+     * updated
+     */
+    private int mode;
+    private int direction;
+    private int version;
+
+    /**
+     * The size of the board, and the number of longs of a row
+     */
+    private int size;
+    private int words;
+
+    /**
+     * The mask of the dots of each color, of the captured dots, and of the
+     * border
+     */
+    private long[][] colors;
+    private long[] captured;
+    private long[] border;
+
+    /**
+     * The rows to look at, as a circular queue with one more slot than
+     * rows, and one flag per row set while it is queued
+     */
+    private int[] queue;
+    private int head;
+    private int tail;
+    private boolean[] queued;
+
+    /**
+     * The rows whose border may not be empty, and one flag per row set
+     * while it is in the list. A row whose border became empty leaves the
+     * list at the next flood.
+     */
+    private int[] borderRows;
+    private int borderCount;
+    private boolean[] inBorderRows;
+
+    /**
+     * The number of dots looked at by the last capture or flood: the dots
+     * of the rows filled
+     */
+    private int visited;
+
+    /**
+     * Scratch rows: the dots being filled, the dots they can be filled
+     * through, and the dots next to the new ones
+     */
+    private long[] filled;
+    private long[] passable;
+    private long[] near;
+
+    /**
+     * Scratch arrays receiving the neighbours of a dot, and the neighbours
+     * of one of them
+     */
+    private int[] neighbours = new int[8];
+    private int[] around = new int[8];
+
+    public int capture(GameModel model, int i, int j, MoveDelta delta) {
+        sync(model);
+        int cell = board.cell(i, j);
+        visited = 1;
+        if(board.isCaptured(cell)){
+            return 0;
+        }
+        model.capture(cell);
+        if(delta != null){
+            delta.add(cell);
+        }
+        Arrays.fill(filled, 0L);
+        filled[j >> 6] = 1L << j;
+        captured[i*words + (j >> 6)] |= 1L << j;
+        surround(i, null);
+        version = model.getVersion();
+        return 1;
+    }
+
+    public int flood(GameModel model, MoveDelta delta) {
+        sync(model);
+        long[] color = colors[model.getCurrentSelectedColor()];
+        head = tail = 0;
+        for(int k = 0; k < borderCount; k++){
+            int row = borderRows[k];
+            if(hasBorder(row)){
+                enqueue(row, color);
+            } else {
+                inBorderRows[row] = false;
+                borderRows[k--] = borderRows[--borderCount];
+            }
+        }
+        int count = 0;
+        visited = 0;
+        while(head != tail){
+            int row = queue[head];
+            head = head + 1 == queue.length ? 0 : head + 1;
+            queued[row] = false;
+            visited += size;
+            if(grow(row, color)){
+                count += record(row, model, delta);
+                surround(row, color);
+            }
+        }
+        version = model.getVersion();
+        return count;
+    }
+
+    public void replay(GameModel model, MoveDelta delta, boolean undone, int version) {
+        if(model != this.model || model.getBoard() != board || version != this.version || delta.isReset()
+            || model.getMode() != mode || model.getDirection() != direction){
+            this.model = null;
+            return;
+        }
+        Topology topology = model.getTopology();
+        int n = delta.getNumberCaptured();
+        for(int k = 0; k < n; k++){
+            int cell = delta.getCell(k);
+            int index = index(cell);
+            long bit = 1L << (cell - cell/size*size);
+            if(undone){
+                captured[index] &= ~bit;
+            } else {
+                captured[index] |= bit;
+                border[index] &= ~bit;
+            }
+        }
+        for(int k = 0; k < n; k++){
+            int cell = delta.getCell(k);
+            int count = topology.neighbours(cell, neighbours);
+            if(undone){
+                refresh(cell, topology);
+                for(int m = 0; m < count; m++){
+                    refresh(neighbours[m], topology);
+                }
+            } else {
+                for(int m = 0; m < count; m++){
+                    int next = neighbours[m];
+                    int index = index(next);
+                    long bit = 1L << (next - next/size*size);
+                    if((captured[index] & bit) == 0){
+                        border[index] |= bit;
+                        markRow(next / size);
+                    }
+                }
+            }
+        }
+        this.version = version + n;
+    }
+
+    public int getVisited() {
+        return visited;
+    }
+
+    /**
+     * <b>refresh</b> is a helper method that puts a dot that is not
+     * captured in the border if it is next to a captured dot, and takes it
+     * out of the border otherwise
+     */
+    private void refresh(int cell, Topology topology){
+        int index = index(cell);
+        long bit = 1L << (cell - cell/size*size);
+        if((captured[index] & bit) != 0){
+            return;
+        }
+        int count = topology.neighbours(cell, around);
+        for(int k = 0; k < count; k++){
+            int next = around[k];
+            if((captured[index(next)] & (1L << (next - next/size*size))) != 0){
+                border[index] |= bit;
+                markRow(cell / size);
+                return;
+            }
+        }
+        border[index] &= ~bit;
+    }
+
+    /**
+     * <b>index</b> is a helper method that returns the index of the long
+     * holding the bit of a dot in the masks
+     */
+    private int index(int cell){
+        int row = cell / size;
+        return row*words + ((cell - row*size) >> 6);
+    }
+
+    /**
+     * <b>grow</b> is a helper method that fills the captured dots of a row,
+     * and the dots of the border of the selected color, along the row. The
+     * new dots are left in filled.
+     *
+     * @return true if the row has new dots to capture
+     */
+    private boolean grow(int row, long[] color){
+        int base = row*words;
+        for(int w = 0; w < words; w++){
+            passable[w] = color[base + w] | captured[base + w];
+            filled[w] = (border[base + w] & color[base + w]) | captured[base + w];
+        }
+        fill(filled, passable);
+        boolean any = false;
+        for(int w = 0; w < words; w++){
+            filled[w] &= ~captured[base + w];
+            any |= filled[w] != 0;
+        }
+        return any;
+    }
+
+    /**
+     * <b>record</b> is a helper method that captures the dots left in filled
+     * by grow, in the mask and in the model
+     *
+     * @return the number of dots captured
+     */
+    private int record(int row, GameModel model, MoveDelta delta){
+        int base = row*words;
+        int count = 0;
+        for(int w = 0; w < words; w++){
+            long bits = filled[w];
+            captured[base + w] |= bits;
+            while(bits != 0){
+                int cell = row*size + (w << 6) + Long.numberOfTrailingZeros(bits);
+                model.capture(cell);
+                if(delta != null){
+                    delta.add(cell);
+                }
+                bits &= bits - 1;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * <b>surround</b> is a helper method that adds to the border the dots
+     * next to the new dots of a row, left in filled, and queues the rows
+     * above and below if their border now meets the selected color
+     *
+     * @param row the row of the new dots
+     * @param color the mask of the selected color, or null
+     */
+    private void surround(int row, long[] color){
+        boolean torus = mode == GameModel.MODE_TORUS;
+        System.arraycopy(filled, 0, near, 0, words);
+        spread(near, torus);
+        addBorder(row, near);
+        if(direction != GameModel.DIRECTION_DIAGONAL){
+            System.arraycopy(filled, 0, near, 0, words);
+        }
+        int up = above(row, torus);
+        int down = below(row, torus);
+        if(up >= 0){
+            addBorder(up, near);
+            enqueue(up, color);
+        }
+        if(down >= 0){
+            addBorder(down, near);
+            enqueue(down, color);
+        }
+    }
+
+    /**
+     * <b>addBorder</b> is a helper method that adds dots to the border of a
+     * row, except the captured ones
+     */
+    private void addBorder(int row, long[] bits){
+        int base = row*words;
+        for(int w = 0; w < words; w++){
+            border[base + w] = (border[base + w] | bits[w]) & ~captured[base + w];
+        }
+        markRow(row);
+    }
+
+    /**
+     * <b>markRow</b> is a helper method that adds a row to the rows that
+     * have a border, unless it is already there
+     */
+    private void markRow(int row){
+        if(!inBorderRows[row]){
+            inBorderRows[row] = true;
+            borderRows[borderCount++] = row;
+        }
+    }
+
+    /**
+     * <b>hasBorder</b> is a helper method that returns true if the border
+     * of a row is not empty
+     */
+    private boolean hasBorder(int row){
+        int base = row*words;
+        for(int w = 0; w < words; w++){
+            if(border[base + w] != 0){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <b>enqueue</b> is a helper method that puts a row in the queue if its
+     * border meets the selected color, unless it is already there
+     */
+    private void enqueue(int row, long[] color){
+        if(color == null || queued[row]){
+            return;
+        }
+        int base = row*words;
+        for(int w = 0; w < words; w++){
+            if((border[base + w] & color[base + w]) != 0){
+                queued[row] = true;
+                queue[tail] = row;
+                tail = tail + 1 == queue.length ? 0 : tail + 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * <b>spread</b> is a helper method that adds to a row the dots next to
+     * its dots, on the left and on the right
+     */
+    private void spread(long[] row, boolean torus){
+        long first = row[0] & 1;
+        long last = (row[words - 1] >>> ((size - 1) & 63)) & 1;
+        long carry = 0;
+        for(int w = 0; w < words; w++){
+            long bits = row[w];
+            long next = w + 1 < words ? row[w + 1] : 0;
+            row[w] = bits | (bits << 1) | carry | (bits >>> 1) | (next << 63);
+            carry = bits >>> 63;
+        }
+        row[words - 1] &= lastMask();
+        if(torus){
+            row[words - 1] |= first << ((size - 1) & 63);
+            row[0] |= last;
+        }
+    }
+
+    /**
+     * <b>fill</b> is a helper method that extends the dots of a row along
+     * the runs of passable dots they belong to, in both directions. Each
+     * long is filled with a Kogge-Stone fill, carried over to the next one.
+     * On a torus, the fill goes round again when it reaches an end of the
+     * row and the other end is passable.
+     */
+    private void fill(long[] row, long[] mask){
+        boolean torus = mode == GameModel.MODE_TORUS;
+        int lastBit = (size - 1) & 63;
+        boolean changed = true;
+        while(changed){
+            long carry = 0;
+            for(int w = 0; w < words; w++){
+                long g = (row[w] | carry) & mask[w];
+                long p = mask[w];
+                g |= p & (g << 1);
+                p &= p << 1;
+                g |= p & (g << 2);
+                p &= p << 2;
+                g |= p & (g << 4);
+                p &= p << 4;
+                g |= p & (g << 8);
+                p &= p << 8;
+                g |= p & (g << 16);
+                p &= p << 16;
+                g |= p & (g << 32);
+                row[w] |= g;
+                carry = g >>> 63;
+            }
+            carry = 0;
+            for(int w = words - 1; w >= 0; w--){
+                long g = (row[w] | (carry << 63)) & mask[w];
+                long p = mask[w];
+                g |= p & (g >>> 1);
+                p &= p >>> 1;
+                g |= p & (g >>> 2);
+                p &= p >>> 2;
+                g |= p & (g >>> 4);
+                p &= p >>> 4;
+                g |= p & (g >>> 8);
+                p &= p >>> 8;
+                g |= p & (g >>> 16);
+                p &= p >>> 16;
+                g |= p & (g >>> 32);
+                row[w] |= g;
+                carry = g & 1;
+            }
+            changed = false;
+            if(torus){
+                boolean first = (row[0] & 1) != 0;
+                boolean last = (row[words - 1] & (1L << lastBit)) != 0;
+                if(first && !last && (mask[words - 1] & (1L << lastBit)) != 0){
+                    row[words - 1] |= 1L << lastBit;
+                    changed = true;
+                } else if(last && !first && (mask[0] & 1) != 0){
+                    row[0] |= 1;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * <b>sync</b> is a helper method that rebuilds the masks from the model
+     * if they are not up to date: the masks of the colors when the board
+     * changed, and the captured mask and the border when the model changed
+     *
+     * @param model the model of the game
+     */
+    private void sync(GameModel model) {
+        if(model == this.model && model.getBoard() == board && model.getMode() == mode
+            && model.getDirection() == direction && model.getVersion() == version){
+            return;
+        }
+        if(model != this.model || model.getBoard() != board){
+            this.model = model;
+            board = model.getBoard();
+            size = board.getSize();
+            words = (size + 63) >> 6;
+            colors = new long[GameModel.NUMBER_OF_COLORS][size*words];
+            for(int i = 0; i < size; i++){
+                for(int j = 0; j < size; j++){
+                    colors[board.getColor(board.cell(i, j))][i*words + (j >> 6)] |= 1L << j;
+                }
+            }
+            captured = new long[size*words];
+            border = new long[size*words];
+            queue = new int[size + 1];
+            queued = new boolean[size];
+            borderRows = new int[size];
+            inBorderRows = new boolean[size];
+            filled = new long[words];
+            passable = new long[words];
+            near = new long[words];
+        }
+        mode = model.getMode();
+        direction = model.getDirection();
+        version = model.getVersion();
+        Arrays.fill(captured, 0L);
+        Arrays.fill(border, 0L);
+        Arrays.fill(inBorderRows, false);
+        borderCount = 0;
+        for(int i = 0; i < size; i++){
+            for(int j = 0; j < size; j++){
+                if(board.isCaptured(board.cell(i, j))){
+                    captured[i*words + (j >> 6)] |= 1L << j;
+                }
+            }
+        }
+        for(int i = 0; i < size; i++){
+            System.arraycopy(captured, i*words, filled, 0, words);
+            surround(i, null);
+        }
+    }
+
+    /**
+     * <b>above</b> is a helper method that returns the row above a row, or
+     * -1 if there is none
+     */
+    private int above(int row, boolean torus){
+        if(row > 0){
+            return row - 1;
+        }
+        return torus && size > 1 ? size - 1 : -1;
+    }
+
+    /**
+     * <b>below</b> is a helper method that returns the row below a row, or
+     * -1 if there is none
+     */
+    private int below(int row, boolean torus){
+        if(row < size - 1){
+            return row + 1;
+        }
+        return torus && size > 1 ? 0 : -1;
+    }
+
+    /**
+     * <b>lastMask</b> is a helper method that returns the mask of the dots
+     * of the last long of a row
+     */
+    private long lastMask(){
+        int bits = size & 63;
+        return bits == 0 ? -1L : (1L << bits) - 1;
+    }
+}
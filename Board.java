@@ -0,0 +1,245 @@
+import java.nio.ByteBuffer;
+
+/**
+ * A <b>Board</b> stores the state of all the dots of a game: the initial
+ * color of each dot and whether it is captured. Every dot is identified by a
+ * single int cell id, <code>i*size+j</code>, so the size of a board is at
+ * most 46340.
+ *
+ * Two implementations are available: <b>PackedBoard</b>, which stores the
+ * whole board in two arrays, and <b>TiledBoard</b>, which splits it into
+ * chunks allocated when needed, shared between copies until one of them is
+ * changed, and possibly read from a memory-mapped file. create chooses the
+ * latter for boards of at least TILED_THRESHOLD dots per side.
+ *
+ * Both write the same bytes: the colors, two per byte, the dot with an even
+ * cell id in the low nibble, then the captured bitset as big-endian longs.
+ */
+
+public interface Board extends Cloneable {
+
+    /**
+     * Boards of at least this size are stored by a TiledBoard
+     */
+    public static final int TILED_THRESHOLD = 2000;
+
+    /**
+     * Getter method for the size of the board
+     *
+     * @return the size of the board
+     */
+
+    public abstract int getSize();
+
+    /**
+     * Returns the cell id of the dot at location (i,j)
+     *
+     * @param i
+     *            the x coordinate of the dot
+     * @param j
+     *            the y coordinate of the dot
+     * @return the cell id of the dot
+     */
+
+    public abstract int cell(int i, int j);
+
+    /**
+     * Returns the initial color of a cell
+     *
+     * @param cell
+     *            the cell id
+     * @return the color of the cell
+     */
+
+    public abstract int getColor(int cell);
+
+    /**
+     * Sets the initial color of a cell
+     *
+     * @param cell
+     *            the cell id
+     * @param color
+     *            the new color, between 0 and 15
+     */
+
+    public abstract void setColor(int cell, int color);
+
+    /**
+     * Returns true if the cell is captured, false otherwise
+     *
+     * @param cell
+     *            the cell id
+     * @return the captured state of the cell
+     */
+
+    public abstract boolean isCaptured(int cell);
+
+    /**
+     * Sets the captured state of a cell
+     *
+     * @param cell
+     *            the cell id
+     * @param value
+     *            the new captured state
+     */
+
+    public abstract void setCaptured(int cell, boolean value);
+
+    /**
+     * Marks every cell as not captured
+     */
+
+    public abstract void clearCaptured();
+
+    /**
+     * Returns the number of captured cells
+     *
+     * @return the number of captured cells
+     */
+
+    public abstract int countCaptured();
+
+    /**
+     * Writes the colors and the captured bitset of this board to a buffer
+     *
+     * @param buffer
+     *            the buffer, with at least byteSize() bytes remaining
+     */
+
+    public abstract void writeTo(ByteBuffer buffer);
+
+    /**
+     * Returns the number of bytes written by writeTo
+     *
+     * @return the size of the board once written, in bytes
+     */
+
+    public abstract int byteSize();
+
+    /**
+     * Returns the number of bytes of memory used by this board
+     *
+     * @return the size of the arrays of this board, in bytes
+     */
+
+    public abstract long footprint();
+
+    /**
+     * Returns a copy of this board
+     *
+     * @return a copy of this board
+     */
+
+    public abstract Board clone() throws CloneNotSupportedException;
+
+    /**
+     * Creates a board of a given size, all dots having color 0 and not
+     * captured
+     *
+     * @param size
+     *            the size of the board
+     * @return a TiledBoard if size is at least TILED_THRESHOLD, a
+     *         PackedBoard otherwise
+     */
+
+    public static Board create(int size){
+        return size >= TILED_THRESHOLD ? new TiledBoard(size) : new PackedBoard(size);
+    }
+
+    /**
+     * Reads a board written by writeTo
+     *
+     * @param buffer
+     *            the buffer, positioned at the board
+     * @param size
+     *            the size of the board
+     * @return the board read, of the class chosen by create
+     */
+
+    public static Board readFrom(ByteBuffer buffer, int size){
+        Board board = create(size);
+        if(board instanceof TiledBoard){
+            ((TiledBoard)board).read(buffer);
+        } else {
+            ((PackedBoard)board).read(buffer);
+        }
+        return board;
+    }
+
+    /**
+     * Returns the number of bytes written by writeTo for a board of a
+     * given size
+     *
+     * @param size
+     *            the size of the board
+     * @return the size of the board once written, in bytes
+     */
+
+    public static int byteSize(int size){
+        int cells = size*size;
+        return ((cells + 1) >> 1) + 8*((cells + 63) >> 6);
+    }
+
+    /**
+     * Writes only the captured bitset of a board, in the format of writeTo,
+     * for a board whose colors are known from elsewhere, for instance from
+     * its seed
+     *
+     * @param board
+     *            the board
+     * @param buffer
+     *            the buffer, with at least capturedByteSize(size) bytes
+     *            remaining
+     */
+
+    public static void writeCaptured(Board board, ByteBuffer buffer){
+        int cells = board.getSize()*board.getSize();
+        for(int first = 0; first < cells; first += 64){
+            long bits = 0;
+            for(int cell = first; cell < Math.min(cells, first + 64); cell++){
+                if(board.isCaptured(cell)){
+                    bits |= 1L << cell;
+                }
+            }
+            buffer.putLong(bits);
+        }
+    }
+
+    /**
+     * Reads a captured bitset written by writeCaptured into a board
+     *
+     * @param board
+     *            the board, whose captured dots are replaced
+     * @param buffer
+     *            the buffer, positioned at the bitset
+     */
+
+    public static void readCaptured(Board board, ByteBuffer buffer){
+        int cells = board.getSize()*board.getSize();
+        board.clearCaptured();
+        for(int first = 0; first < cells; first += 64){
+            long bits = buffer.getLong();
+            while(bits != 0){
+                int cell = first + Long.numberOfTrailingZeros(bits);
+                if(cell >= cells){
+                    throw new IllegalArgumentException("Invalid dot " + cell);
+                }
+                board.setCaptured(cell, true);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes written by writeCaptured for a board of a
+     * given size
+     *
+     * @param size
+     *            the size of the board
+     * @return the size of the captured bitset, in bytes
+     */
+
+    public static int capturedByteSize(int size){
+        return 8*((size*size + 63) >> 6);
+    }
+}
@@ -0,0 +1,328 @@
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+
+import javax.swing.*;
+
+/**
+ * The class <b>BoardCanvas</b> displays the whole board in a single Swing
+ * component, instead of one <b>DotButton</b> per dot. The dots are painted
+ * from an array of the colors shown, in one pass over the dots of the area
+ * to repaint, and a click is mapped back to its dot by a division.
+ *
+ * The captured dots are not stored with their color, but with the index
+ * BLOB, which refers to the selected color. When the selected color changes,
+ * the whole captured region is recolored by changing that one reference.
+ *
+ * When the dots are a few pixels wide, they are painted with the images of
+ * <b>IconAtlas</b> scaled to the size of the dots. Until the atlas has
+ * computed them, which it does in the background, plain circles of the same
+ * colors are painted instead. When the dots are smaller, the array is used
+ * as an indexed image of one pixel per dot, which is scaled when painted. In
+ * all cases, an update only repaints the rectangle around the dots that
+ * changed.
+ */
+
+public class BoardCanvas extends JComponent implements BoardView {
+
+    /**
+     * The colors of the dots, matching the icons of DotButton
+     */
+    private static final int[] RGB = IconAtlas.RGB;
+    private static final Color[] COLORS = new Color[RGB.length];
+    static {
+        for(int color = 0; color < RGB.length; color++){
+            COLORS[color] = new Color(RGB[color]);
+        }
+    }
+
+    /**
+     * The index shown for the captured dots
+     */
+    private static final int BLOB = GameModel.NUMBER_OF_COLORS;
+
+    /**
+     * Below this size in pixels, the dots are painted from the image
+     */
+    private static final int MIN_CIRCLE_SIZE = 6;
+
+    /**
+     * The size of the board
+     */
+    private int size;
+
+    /**
+     * The index shown for each dot, by cell id: its color, or BLOB for a
+     * captured dot. This is also the data of the image.
+     */
+    private byte[] shown;
+
+    /**
+     * The color of the captured dots
+     */
+    private int blobColor;
+
+    /**
+     * A rectangle containing every captured dot, in dots
+     */
+    private int blobTop, blobBottom, blobLeft, blobRight;
+
+    /**
+     * The board as an indexed image of one pixel per dot
+     */
+    private BufferedImage image;
+
+    /**
+     * The image of each index for the current size of the dots, and the
+     * images of the atlas they come from, or null if they are circles drawn
+     * while the atlas computes them
+     */
+    private Image[] sprites = new Image[BLOB + 1];
+    private int spriteSize;
+    private ImageIcon[] icons;
+
+    /**
+     * Reference to the controller of the game
+     */
+    private GameController gameController;
+
+    /**
+     * Constructor used for initializing the canvas
+     *
+     * @param model
+     *            the model of the game
+     * @param gameController
+     *            the controller
+     */
+
+    public BoardCanvas(GameModel model, GameController gameController) {
+        this.gameController = gameController;
+        size = model.getSize();
+        image = new BufferedImage(size, size, BufferedImage.TYPE_BYTE_INDEXED, createColorModel(0));
+        shown = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        setBorder(BorderFactory.createEmptyBorder(20, 20, 0, 20));
+        int dot = size < 26 ? 28 : Math.max(1, Math.min(11, 800/size));
+        setPreferredSize(new Dimension(dot*size + 40, dot*size + 20));
+        update(model);
+
+        addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                int dot = getDotSize();
+                Insets insets = getInsets();
+                int row = Math.floorDiv(e.getY() - insets.top, dot);
+                int column = Math.floorDiv(e.getX() - insets.left, dot);
+                if(row >= 0 && row < size && column >= 0 && column < size){
+                    BoardCanvas.this.gameController.selectDot(row, column);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the canvas
+     *
+     * @return the component to add to the view
+     */
+
+    public Component getComponent(){
+        return this;
+    }
+
+    /**
+     * Reads every dot of the model and repaints the whole board
+     *
+     * @param model
+     *            the model of the game
+     */
+
+    public void update(GameModel model){
+        blobTop = blobLeft = size;
+        blobBottom = blobRight = -1;
+        for(int i = 0; i < size; i++){
+            for(int j = 0; j < size; j++){
+                if(model.isCaptured(i, j)){
+                    shown[i*size + j] = BLOB;
+                    includeInBlob(i, j);
+                } else {
+                    shown[i*size + j] = (byte)model.getColor(i, j);
+                }
+            }
+        }
+        setBlobColor(model.getCurrentSelectedColor());
+        repaint();
+    }
+
+    /**
+     * Updates the dots of a move, and the color of the captured dots, then
+     * repaints the rectangle around the dots that changed
+     *
+     * @param model
+     *            the model of the game, once the move is applied
+     * @param delta
+     *            the move
+     */
+
+    public void update(GameModel model, MoveDelta delta){
+        int top = size, bottom = -1, left = size, right = -1;
+        for(int k = 0; k < delta.getNumberCaptured(); k++){
+            int cell = delta.getCell(k);
+            int i = cell / size;
+            int j = cell % size;
+            if(model.isCaptured(i, j)){
+                shown[cell] = BLOB;
+                includeInBlob(i, j);
+            } else {
+                shown[cell] = (byte)model.getColor(i, j);
+            }
+            top = Math.min(top, i);
+            bottom = Math.max(bottom, i);
+            left = Math.min(left, j);
+            right = Math.max(right, j);
+        }
+        if(model.getCurrentSelectedColor() != blobColor){
+            setBlobColor(model.getCurrentSelectedColor());
+            top = Math.min(top, blobTop);
+            bottom = Math.max(bottom, blobBottom);
+            left = Math.min(left, blobLeft);
+            right = Math.max(right, blobRight);
+        }
+        if(bottom >= 0){
+            int dot = getDotSize();
+            Insets insets = getInsets();
+            repaint(insets.left + left*dot, insets.top + top*dot,
+                (right - left + 1)*dot, (bottom - top + 1)*dot);
+        }
+    }
+
+    /**
+     * Paints the dots inside the clip area
+     *
+     * @param g
+     *            the graphics context
+     */
+
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if(clip == null){
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int dot = getDotSize();
+        Insets insets = getInsets();
+        if(dot < MIN_CIRCLE_SIZE){
+            g.drawImage(image, insets.left, insets.top, insets.left + dot*size, insets.top + dot*size,
+                0, 0, size, size, null);
+            return;
+        }
+        int top = Math.max(0, (clip.y - insets.top) / dot);
+        int bottom = Math.min(size - 1, (clip.y + clip.height - insets.top) / dot);
+        int left = Math.max(0, (clip.x - insets.left) / dot);
+        int right = Math.min(size - 1, (clip.x + clip.width - insets.left) / dot);
+        if(spriteSize != dot || icons == null){
+            ImageIcon[] ready = IconAtlas.getIcons(dot);
+            if(ready == null){
+                IconAtlas.prepare(dot, this::repaint);
+            }
+            if(spriteSize != dot || ready != null){
+                spriteSize = dot;
+                icons = ready;
+                for(int index = 0; index <= BLOB; index++){
+                    sprites[index] = createSprite(index == BLOB ? blobColor : index);
+                }
+            }
+        }
+        for(int i = top; i <= bottom; i++){
+            for(int j = left; j <= right; j++){
+                g.drawImage(sprites[shown[i*size + j]], insets.left + j*dot, insets.top + i*dot, null);
+            }
+        }
+    }
+
+    /**
+     * <b>setBlobColor</b> is a helper method that changes the color of all
+     * the captured dots at once: the BLOB entry of the palette of the image,
+     * and the BLOB sprite
+     *
+     * @param color
+     *            the selected color
+     */
+    private void setBlobColor(int color){
+        blobColor = color;
+        image = new BufferedImage(createColorModel(color), image.getRaster(), false, null);
+        if(spriteSize > 0){
+            sprites[BLOB] = createSprite(color);
+        }
+    }
+
+    /**
+     * <b>includeInBlob</b> is a helper method that extends the rectangle of
+     * the captured dots to a dot
+     */
+    private void includeInBlob(int i, int j){
+        blobTop = Math.min(blobTop, i);
+        blobBottom = Math.max(blobBottom, i);
+        blobLeft = Math.min(blobLeft, j);
+        blobRight = Math.max(blobRight, j);
+    }
+
+    /**
+     * <b>createColorModel</b> is a helper method that creates the palette of
+     * the image: the six colors, then the color of the captured dots. It is
+     * also used by BoardViewport
+     *
+     * @param color
+     *            the selected color
+     * @return the palette
+     */
+    static IndexColorModel createColorModel(int color){
+        int[] palette = java.util.Arrays.copyOf(RGB, BLOB + 1);
+        palette[BLOB] = RGB[color];
+        return new IndexColorModel(8, palette.length, palette, 0, false, -1, DataBuffer.TYPE_BYTE);
+    }
+
+    /**
+     * <b>createSprite</b> is a helper method that returns the image of a
+     * color for the current size of dots: the image of the atlas if it is
+     * ready, or a circle of that color
+     *
+     * @param color
+     *            the color of the dot
+     * @return the image of the dot
+     */
+    private Image createSprite(int color){
+        if(icons != null){
+            return icons[color].getImage();
+        }
+        BufferedImage sprite = new BufferedImage(spriteSize, spriteSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = sprite.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(getBackground());
+        g.fillRect(0, 0, spriteSize, spriteSize);
+        g.setColor(COLORS[color]);
+        g.fillOval(1, 1, spriteSize - 2, spriteSize - 2);
+        g.dispose();
+        return sprite;
+    }
+
+    /**
+     * <b>getDotSize</b> is a helper method that returns the size of a dot in
+     * pixels, so that the board fits in the component
+     *
+     * @return the size of a dot, at least one pixel
+     */
+    private int getDotSize(){
+        Insets insets = getInsets();
+        int width = getWidth() - insets.left - insets.right;
+        int height = getHeight() - insets.top - insets.bottom;
+        return Math.max(1, Math.min(width, height) / size);
+    }
+}
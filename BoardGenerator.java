@@ -0,0 +1,198 @@
+import java.util.stream.IntStream;
+
+/**
+ * The class <b>BoardGenerator</b> generates the colors of a board from a
+ * seed. The color of each dot is computed from the seed, the size of the
+ * board, the number of colors and the cell id of the dot only, by mixing
+ * them with the finalizer of SplitMix64, instead of being drawn one after
+ * the other from a random generator. Therefore:
+ *
+ * - the same size, seed and number of colors always produce the same board,
+ *   on every JVM, so a board can be saved or logged as its seed
+ * - the dots can be generated in any order: a large board is generated in
+ *   tiles of TILE dots, on several threads, and the result does not depend
+ *   on the number of threads
+ *
+ * The colors are written directly into the packed arrays of the boards,
+ * two dots per byte as in <b>Board</b>.
+ */
+public class BoardGenerator {
+
+    /**
+     * The number of dots of a tile generated by one task. It is even, so
+     * that two tiles never write to the same byte.
+     */
+    public static final int TILE = 1 << 16;
+
+    /**
+     * Boards of at least this number of dots are generated on several
+     * threads
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 18;
+
+    /**
+     * The increment of the counter of SplitMix64, also used by Zobrist
+     */
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private BoardGenerator() {
+    }
+
+    /**
+     * Generates a board of a given size with the colors of the game
+     *
+     * @param size
+     *            the size of the board
+     * @param seed
+     *            the seed of the board
+     * @return the board, of the class chosen by Board.create, with no
+     *         captured dot
+     */
+    public static Board generate(int size, long seed){
+        return generate(size, seed, GameModel.NUMBER_OF_COLORS);
+    }
+
+    /**
+     * Generates a board of a given size and number of colors
+     *
+     * @param size
+     *            the size of the board
+     * @param seed
+     *            the seed of the board
+     * @param colors
+     *            the number of colors, between 1 and 16
+     * @return the board, of the class chosen by Board.create, with no
+     *         captured dot
+     */
+    public static Board generate(int size, long seed, int colors){
+        if(colors < 1 || colors > 16){
+            throw new IllegalArgumentException("Invalid number of colors " + colors);
+        }
+        Board board = Board.create(size);
+        int cells = size*size;
+        long key = key(size, seed, colors);
+        if(board instanceof TiledBoard){
+            TiledBoard tiled = (TiledBoard)board;
+            IntStream tiles = IntStream.range(0, tiled.getNumberOfChunks());
+            if(cells >= PARALLEL_THRESHOLD){
+                tiles = tiles.parallel();
+            }
+            tiles.forEach(index -> {
+                int first = index*TiledBoard.CHUNK;
+                fill(tiled.getColorChunk(index), first, first, Math.min(cells, first + TiledBoard.CHUNK), key, colors);
+            });
+        } else {
+            fill(((PackedBoard)board).getColors(), cells, key, colors);
+        }
+        return board;
+    }
+
+    /**
+     * Returns the color of one dot of the board generated from a seed,
+     * without generating the board
+     *
+     * @param size
+     *            the size of the board
+     * @param seed
+     *            the seed of the board
+     * @param colors
+     *            the number of colors
+     * @param cell
+     *            the cell id of the dot
+     * @return the color of the dot
+     */
+    public static int getColor(int size, long seed, int colors, int cell){
+        return color(key(size, seed, colors), cell, colors);
+    }
+
+    /**
+     * Fills a packed array of colors, two dots per byte, with the colors of
+     * the board generated from a seed, in tiles of TILE dots. The tiles are
+     * generated on several threads if there are at least PARALLEL_THRESHOLD
+     * dots.
+     *
+     * @param packed
+     *            the array, of at least (cells+1)/2 bytes
+     * @param cells
+     *            the number of dots of the board
+     * @param key
+     *            the key of the board, returned by key
+     * @param colors
+     *            the number of colors
+     */
+    public static void fill(byte[] packed, int cells, long key, int colors){
+        int tiles = (cells + TILE - 1) / TILE;
+        IntStream range = IntStream.range(0, tiles);
+        if(cells >= PARALLEL_THRESHOLD){
+            range = range.parallel();
+        }
+        range.forEach(tile -> fill(packed, 0, tile*TILE, (int)Math.min(cells, (long)(tile + 1)*TILE), key, colors));
+    }
+
+    /**
+     * Fills a range of dots of a packed array of colors, on the calling
+     * thread
+     *
+     * @param packed
+     *            the array
+     * @param base
+     *            the cell id of the dot stored in the low nibble of the
+     *            first byte of the array, even
+     * @param from
+     *            the first cell id to fill, even
+     * @param to
+     *            the cell id after the last one to fill
+     * @param key
+     *            the key of the board, returned by key
+     * @param colors
+     *            the number of colors
+     */
+    public static void fill(byte[] packed, int base, int from, int to, long key, int colors){
+        int cell = from;
+        int index = (from - base) >> 1;
+        for(; cell + 1 < to; cell += 2){
+            packed[index++] = (byte)(color(key, cell, colors) | (color(key, cell + 1, colors) << 4));
+        }
+        if(cell < to){
+            packed[index] = (byte)((packed[index] & 0xF0) | color(key, cell, colors));
+        }
+    }
+
+    /**
+     * Returns the key of a board, from which the color of each dot is
+     * computed: boards of different sizes or numbers of colors differ even
+     * with the same seed
+     *
+     * @param size
+     *            the size of the board
+     * @param seed
+     *            the seed of the board
+     * @param colors
+     *            the number of colors
+     * @return the key of the board
+     */
+    public static long key(int size, long seed, int colors){
+        return mix(mix(seed) + ((long)size << 4 | colors)*GOLDEN_GAMMA);
+    }
+
+    /**
+     * <b>color</b> is a helper method that computes the color of a dot: the
+     * high 32 bits of the mix of its counter are scaled to the number of
+     * colors with a multiplication instead of a division
+     */
+    private static int color(long key, int cell, int colors){
+        long bits = mix(key + (cell + 1L)*GOLDEN_GAMMA) >>> 32;
+        return (int)((bits*colors) >>> 32);
+    }
+
+    /**
+     * <b>mix</b> is a helper method implementing the finalizer of
+     * SplitMix64, which turns a counter into 64 random looking bits. It is
+     * also used by Zobrist.
+     */
+    static long mix(long z){
+        z = (z ^ (z >>> 30))*0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27))*0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,46 @@
+import java.awt.Component;
+
+/**
+ * A <b>BoardView</b> displays the dots of the board in the <b>GameView</b>,
+ * and reports the dots clicked by the player to the <b>GameController</b>
+ * through its method selectDot.
+ *
+ * Three implementations are available: <b>DotButtonBoard</b>, a grid of
+ * DotButton, <b>BoardCanvas</b>, which paints every dot in a single
+ * component and is used for large boards, and <b>BoardViewport</b>, which
+ * only paints the visible part of huge boards.
+ */
+
+public interface BoardView {
+
+    /**
+     * Returns the Swing component showing the board
+     *
+     * @return the component to add to the view
+     */
+
+    public abstract Component getComponent();
+
+    /**
+     * Shows the current state of the model
+     *
+     * @param model
+     *            the model of the game
+     */
+
+    public abstract void update(GameModel model);
+
+    /**
+     * Shows the changes made by a move, played, undone or redone: the dots
+     * of the move are shown with their color in the model, and the captured
+     * dots with the selected color if it changed. Does not look at the
+     * other dots.
+     *
+     * @param model
+     *            the model of the game, once the move is applied
+     * @param delta
+     *            the move, which must not be a reset
+     */
+
+    public abstract void update(GameModel model, MoveDelta delta);
+}
@@ -0,0 +1,465 @@
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.*;
+
+/**
+ * The class <b>BoardViewport</b> displays a huge board in a scrollable and
+ * zoomable view. Only the part of the board shown in the window is painted,
+ * so the time needed does not depend on the size of the board.
+ *
+ * The board is split into square tiles of TILE dots. The image of a tile is
+ * only computed from the model once the tile is shown, and kept in a cache
+ * of at most MAX_TILE_BYTES bytes, the least recently used tiles being
+ * evicted. As in <b>BoardCanvas</b>, the captured dots are stored with the
+ * index BLOB, so that changing the selected color only changes the palette
+ * of the images, and an update only changes the dots of the move.
+ *
+ * When zoomed out, a dot of every shrink dots of each row and column is
+ * shown, one pixel each; when zoomed in, each dot is dot pixels wide, and
+ * painted with the images of <b>IconAtlas</b> once they are large enough.
+ * The mouse wheel with the control key, or the keys + and -, zoom around the
+ * mouse; the board is moved with the scroll bars or by dragging it.
+ */
+
+public class BoardViewport extends JScrollPane implements BoardView {
+
+    /**
+     * The number of dots of the side of a tile
+     */
+    private static final int TILE = 256;
+
+    /**
+     * The maximal number of bytes of the images of the tiles kept
+     */
+    private static final int MAX_TILE_BYTES = 32 << 20;
+
+    /**
+     * The index shown for the captured dots
+     */
+    private static final int BLOB = GameModel.NUMBER_OF_COLORS;
+
+    /**
+     * From this size in pixels, the dots are painted with the images of the
+     * atlas
+     */
+    private static final int MIN_CIRCLE_SIZE = 6;
+
+    /**
+     * The zoom levels: each level shows a dot of every SHRINK[level] dots,
+     * DOTS[level] pixels wide
+     */
+    private static final int[] SHRINK = {64, 32, 16, 8, 4, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+    private static final int[] DOTS = {1, 1, 1, 1, 1, 1, 1, 2, 3, 4, 6, 8, 11, 16, 24, 32};
+
+    /**
+     * The component painting the board, inside the viewport
+     */
+    private class Surface extends JComponent {
+
+        protected void paintComponent(Graphics g) {
+            paintTiles(g);
+        }
+    }
+
+    /**
+     * The size of the board, and its number of tiles per side
+     */
+    private int size;
+    private int tiles;
+
+    /**
+     * The model shown, read when a tile is shown for the first time
+     */
+    private GameModel model;
+
+    /**
+     * The current zoom level, and its values
+     */
+    private int level;
+    private int shrink;
+    private int dot;
+
+    /**
+     * The images of the tiles computed for the current zoom level, the
+     * least recently used first, and their number of bytes
+     */
+    private Map<Integer, BufferedImage> cache;
+    private long cachedBytes;
+
+    /**
+     * The color of the captured dots, and the palette of the images
+     */
+    private int blobColor;
+    private IndexColorModel colorModel;
+
+    /**
+     * The image of each index for the current size of the dots, or null if
+     * the images of the atlas are not ready
+     */
+    private Image[] sprites;
+    private int spriteSize;
+
+    /**
+     * The component painting the board
+     */
+    private Surface surface;
+
+    /**
+     * The position of the mouse when the board is being dragged
+     */
+    private Point dragStart;
+
+    /**
+     * Reference to the controller of the game
+     */
+    private GameController gameController;
+
+    /**
+     * Constructor used for initializing the viewport. The zoom level chosen
+     * is the largest one showing the whole board in 800 pixels, if any.
+     *
+     * @param model
+     *            the model of the game
+     * @param gameController
+     *            the controller
+     */
+
+    public BoardViewport(GameModel model, GameController gameController) {
+        this.gameController = gameController;
+        size = model.getSize();
+        tiles = (size + TILE - 1) / TILE;
+        cache = new LinkedHashMap<Integer, BufferedImage>(64, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+                if(cachedBytes <= MAX_TILE_BYTES){
+                    return false;
+                }
+                cachedBytes -= bytes(eldest.getValue());
+                return true;
+            }
+        };
+        surface = new Surface();
+        surface.setOpaque(true);
+        surface.setBackground(Color.WHITE);
+        setViewportView(surface);
+        getViewport().setBackground(Color.WHITE);
+        setBorder(BorderFactory.createEmptyBorder(20, 20, 0, 20));
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(840, 820));
+        getVerticalScrollBar().setUnitIncrement(16);
+        getHorizontalScrollBar().setUnitIncrement(16);
+
+        level = 0;
+        while(level + 1 < DOTS.length && pixels(size, level + 1) <= 800){
+            level++;
+        }
+        setLevel(level);
+        update(model);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                int row = (int)((long)e.getY() * shrink / dot);
+                int column = (int)((long)e.getX() * shrink / dot);
+                if(row < size && column < size){
+                    BoardViewport.this.gameController.selectDot(row, column);
+                }
+            }
+
+            public void mousePressed(MouseEvent e) {
+                dragStart = e.getLocationOnScreen();
+            }
+
+            public void mouseDragged(MouseEvent e) {
+                Point now = e.getLocationOnScreen();
+                Point view = getViewport().getViewPosition();
+                moveTo(view.x - now.x + dragStart.x, view.y - now.y + dragStart.y);
+                dragStart = now;
+            }
+
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if(e.isControlDown()){
+                    zoom(level - e.getWheelRotation(), e.getPoint());
+                } else {
+                    BoardViewport.this.dispatchEvent(SwingUtilities.convertMouseEvent(surface, e, BoardViewport.this));
+                }
+            }
+        };
+        surface.addMouseListener(mouse);
+        surface.addMouseMotionListener(mouse);
+        surface.addMouseWheelListener(mouse);
+
+        InputMap keys = getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        keys.put(KeyStroke.getKeyStroke('+'), "zoomIn");
+        keys.put(KeyStroke.getKeyStroke('='), "zoomIn");
+        keys.put(KeyStroke.getKeyStroke('-'), "zoomOut");
+        getActionMap().put("zoomIn", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                zoom(level + 1, null);
+            }
+        });
+        getActionMap().put("zoomOut", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                zoom(level - 1, null);
+            }
+        });
+    }
+
+    /**
+     * Returns the scroll pane
+     *
+     * @return the component to add to the view
+     */
+
+    public Component getComponent(){
+        return this;
+    }
+
+    /**
+     * Forgets the images of the tiles, which are computed again from the
+     * model when shown, and repaints the board
+     *
+     * @param model
+     *            the model of the game
+     */
+
+    public void update(GameModel model){
+        this.model = model;
+        cache.clear();
+        cachedBytes = 0;
+        setBlobColor(model.getCurrentSelectedColor());
+        surface.repaint();
+    }
+
+    /**
+     * Updates the dots of a move in the images of the tiles computed, and
+     * the color of the captured dots, then repaints the rectangle around the
+     * dots that changed
+     *
+     * @param model
+     *            the model of the game, once the move is applied
+     * @param delta
+     *            the move
+     */
+
+    public void update(GameModel model, MoveDelta delta){
+        this.model = model;
+        Board board = model.getBoard();
+        int top = size, bottom = -1, left = size, right = -1;
+        for(int k = 0; k < delta.getNumberCaptured(); k++){
+            int cell = delta.getCell(k);
+            int i = cell / size;
+            int j = cell % size;
+            if(i % shrink != 0 || j % shrink != 0){
+                continue;
+            }
+            BufferedImage tile = cache.get((i / TILE)*tiles + j / TILE);
+            if(tile != null){
+                int x = (j % TILE) / shrink;
+                int y = (i % TILE) / shrink;
+                data(tile)[y*tile.getWidth() + x] = (byte)(board.isCaptured(cell) ? BLOB : board.getColor(cell));
+            }
+            top = Math.min(top, i);
+            bottom = Math.max(bottom, i);
+            left = Math.min(left, j);
+            right = Math.max(right, j);
+        }
+        if(model.getCurrentSelectedColor() != blobColor){
+            setBlobColor(model.getCurrentSelectedColor());
+            surface.repaint();
+        } else if(bottom >= 0){
+            int x = pixels(left, level);
+            int y = pixels(top, level);
+            surface.repaint(x, y, pixels(right + 1, level) - x + dot, pixels(bottom + 1, level) - y + dot);
+        }
+    }
+
+    /**
+     * <b>paintTiles</b> is a helper method that paints the tiles inside the
+     * clip area, computing the ones that are not in the cache
+     */
+    private void paintTiles(Graphics g){
+        Rectangle clip = g.getClipBounds();
+        if(clip == null){
+            clip = new Rectangle(0, 0, surface.getWidth(), surface.getHeight());
+        }
+        g.setColor(Color.WHITE);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int tilePixels = TILE * dot / shrink;
+        int firstColumn = Math.max(0, clip.x / tilePixels);
+        int lastColumn = Math.min(tiles - 1, (clip.x + clip.width) / tilePixels);
+        int firstRow = Math.max(0, clip.y / tilePixels);
+        int lastRow = Math.min(tiles - 1, (clip.y + clip.height) / tilePixels);
+        Image[] images = getSprites();
+        for(int row = firstRow; row <= lastRow; row++){
+            for(int column = firstColumn; column <= lastColumn; column++){
+                BufferedImage tile = getTile(row, column);
+                int x = column * tilePixels;
+                int y = row * tilePixels;
+                if(images == null){
+                    g.drawImage(tile, x, y, x + tile.getWidth()*dot, y + tile.getHeight()*dot,
+                        0, 0, tile.getWidth(), tile.getHeight(), null);
+                    continue;
+                }
+                byte[] shown = data(tile);
+                int top = Math.max(0, (clip.y - y) / dot);
+                int bottom = Math.min(tile.getHeight() - 1, (clip.y + clip.height - y) / dot);
+                int left = Math.max(0, (clip.x - x) / dot);
+                int right = Math.min(tile.getWidth() - 1, (clip.x + clip.width - x) / dot);
+                for(int i = top; i <= bottom; i++){
+                    for(int j = left; j <= right; j++){
+                        g.drawImage(images[shown[i*tile.getWidth() + j]], x + j*dot, y + i*dot, null);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * <b>getTile</b> is a helper method that returns the image of a tile
+     * for the current zoom level, computing it from the model if it is not
+     * in the cache
+     */
+    private BufferedImage getTile(int row, int column){
+        BufferedImage tile = cache.get(row*tiles + column);
+        if(tile != null){
+            return tile;
+        }
+        Board board = model.getBoard();
+        int top = row*TILE;
+        int left = column*TILE;
+        int width = (Math.min(TILE, size - left) + shrink - 1) / shrink;
+        int height = (Math.min(TILE, size - top) + shrink - 1) / shrink;
+        byte[] shown = new byte[width*height];
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                int cell = board.cell(top + y*shrink, left + x*shrink);
+                shown[y*width + x] = (byte)(board.isCaptured(cell) ? BLOB : board.getColor(cell));
+            }
+        }
+        tile = new BufferedImage(colorModel, Raster.createInterleavedRaster(new DataBufferByte(shown, shown.length),
+            width, height, width, 1, new int[]{0}, null), false, null);
+        cachedBytes += shown.length;
+        cache.put(row*tiles + column, tile);
+        return tile;
+    }
+
+    /**
+     * <b>getSprites</b> is a helper method that returns the images of the
+     * dots for the current zoom level, or null if the dots are too small or
+     * the images of the atlas are not ready yet
+     */
+    private Image[] getSprites(){
+        if(dot < MIN_CIRCLE_SIZE){
+            return null;
+        }
+        if(sprites == null || spriteSize != dot){
+            ImageIcon[] icons = IconAtlas.getIcons(dot);
+            if(icons == null){
+                IconAtlas.prepare(dot, surface::repaint);
+                return null;
+            }
+            spriteSize = dot;
+            sprites = new Image[BLOB + 1];
+            for(int color = 0; color < BLOB; color++){
+                sprites[color] = icons[color].getImage();
+            }
+            sprites[BLOB] = icons[blobColor].getImage();
+        }
+        return sprites;
+    }
+
+    /**
+     * <b>setBlobColor</b> is a helper method that changes the color of all
+     * the captured dots at once: the BLOB entry of the palette of the images
+     * of the tiles, and the BLOB sprite
+     */
+    private void setBlobColor(int color){
+        blobColor = color;
+        colorModel = BoardCanvas.createColorModel(color);
+        for(Map.Entry<Integer, BufferedImage> entry : cache.entrySet()){
+            entry.setValue(new BufferedImage(colorModel, entry.getValue().getRaster(), false, null));
+        }
+        sprites = null;
+    }
+
+    /**
+     * <b>zoom</b> is a helper method that changes the zoom level, keeping
+     * the dot under a point of the board, or at the center of the view, at
+     * the same place in the window
+     */
+    private void zoom(int newLevel, Point point){
+        newLevel = Math.max(0, Math.min(DOTS.length - 1, newLevel));
+        if(newLevel == level){
+            return;
+        }
+        Point view = getViewport().getViewPosition();
+        if(point == null){
+            Dimension extent = getViewport().getExtentSize();
+            point = new Point(view.x + extent.width/2, view.y + extent.height/2);
+        }
+        long row = (long)point.y * shrink / dot;
+        long column = (long)point.x * shrink / dot;
+        setLevel(newLevel);
+        moveTo(pixels((int)column, level) - point.x + view.x, pixels((int)row, level) - point.y + view.y);
+    }
+
+    /**
+     * <b>setLevel</b> is a helper method that sets the zoom level, and
+     * resizes the board
+     */
+    private void setLevel(int newLevel){
+        level = newLevel;
+        shrink = SHRINK[level];
+        dot = DOTS[level];
+        cache.clear();
+        cachedBytes = 0;
+        sprites = null;
+        Dimension dimension = new Dimension(pixels(size, level), pixels(size, level));
+        surface.setPreferredSize(dimension);
+        surface.setSize(dimension);
+        surface.revalidate();
+        surface.repaint();
+    }
+
+    /**
+     * <b>moveTo</b> is a helper method that scrolls the view to a position,
+     * kept inside the board
+     */
+    private void moveTo(int x, int y){
+        Dimension extent = getViewport().getExtentSize();
+        x = Math.max(0, Math.min(x, surface.getWidth() - extent.width));
+        y = Math.max(0, Math.min(y, surface.getHeight() - extent.height));
+        getViewport().setViewPosition(new Point(x, y));
+    }
+
+    /**
+     * <b>pixels</b> is a helper method that returns the position in pixels
+     * of a row or column of dots at a zoom level
+     */
+    private static int pixels(int dots, int level){
+        return (int)(((long)dots * DOTS[level] + SHRINK[level] - 1) / SHRINK[level]);
+    }
+
+    /**
+     * <b>data</b> is a helper method that returns the indexes shown by the
+     * image of a tile
+     */
+    private static byte[] data(BufferedImage tile){
+        return ((DataBufferByte)tile.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * <b>bytes</b> is a helper method that returns the number of bytes of
+     * the image of a tile
+     */
+    private static long bytes(BufferedImage tile){
+        return (long)tile.getWidth() * tile.getHeight();
+    }
+}
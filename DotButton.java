@@ -37,7 +37,7 @@ public class DotButton extends JButton {
      */
 
     private int color;
-    private int iconSize;
+    private int pixels;
 
     /**
      * The coordinate of this cell on the <b>Board</b>.
@@ -47,16 +47,17 @@ public class DotButton extends JButton {
 
 
     /**
-     * An array is used to cache all the images. Since the images are not
+     * The images are cached by <b>IconAtlas</b>. Since the images are not
      * modified, all the cells that display the same image reuse the same
-     * <b>ImageIcon</b> object. Notice the use of the keyword <b>static</b>.
+     * <b>ImageIcon</b> object. The sizes below are the sizes of the images
+     * of the directories ``S'', ``M'' and ``N'', in pixels.
      */
     public static final int NUMBER_OF_SIZES = 3;
     public static final int SMALL_SIZE     = 0;
     public static final int MEDIUM_SIZE    = 1;
     public static final int LARGE_SIZE     = 2;
 
-    private static final ImageIcon[][] icons = new ImageIcon[NUMBER_OF_SIZES][GameModel.NUMBER_OF_COLORS];
+    private static final int[] PIXELS = {11, 28, 40};
 
 
     /**
@@ -76,7 +77,7 @@ public class DotButton extends JButton {
     	this.row = row;
     	this.column = column;
     	this.color = color;
-        this.iconSize = iconSize;
+        this.pixels = PIXELS[iconSize];
     	setBackground(Color.WHITE);
     	setIcon(getImageIcon());
     	Border emptyBorder = BorderFactory.createEmptyBorder(0, 0, 0, 0);
@@ -96,13 +97,37 @@ public class DotButton extends JButton {
      */
 
     private ImageIcon getImageIcon() {
-	
-        String directory = (iconSize == SMALL_SIZE ? "S": (iconSize == MEDIUM_SIZE ? "M" : "N"));
+        return IconAtlas.getIcon(color, pixels);
+    }
+
+     /**
+     * Returns the cached image of a color, for a size of icons
+     * 
+     * @param color
+     *            the color of the dot
+     * @param iconSize
+     *            the size, one of SMALL_SIZE, MEDIUM_SIZE or LARGE_SIZE
+     * @return the image of the dot
+     */
+
+    public static ImageIcon getImageIcon(int color, int iconSize) {
+        return IconAtlas.getIcon(color, PIXELS[iconSize]);
+    }
+
+    /**
+     * Changes the size of the image of this cell, for instance to the size
+     * of the cell once the window is resized. An icon set by setIcon that
+     * is not an image of the atlas, such as a shared icon, is kept.
+     *
+     * @param pixels
+     *            the size of the image, in pixels
+     */
 
-        if (icons[iconSize][color] == null) {
-        	    icons[iconSize][color] = new ImageIcon("data/" + directory + "/ball-" + Integer.toString(color) + ".png");
+    public void setPixels(int pixels) {
+        this.pixels = pixels;
+        if(getIcon() instanceof ImageIcon){
+            setIcon(getImageIcon());
         }
-        return icons[iconSize][color];
     }
 
     /**
@@ -0,0 +1,207 @@
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+
+import javax.swing.*;
+
+/**
+ * The class <b>DotButtonBoard</b> displays the board as a grid of
+ * <b>DotButton</b> instances, one per dot. It is simple and uses the icons of
+ * the game, but needs one Swing component per dot, so it is only used for
+ * small boards.
+ *
+ * All the captured dots share the same icon, which draws the image of the
+ * selected color, so they are recolored at once when the selected color
+ * changes.
+ *
+ * When the window is resized, the images of the size of the new cells are
+ * computed in the background by <b>IconAtlas</b>, and the buttons switch to
+ * them once they are ready.
+ */
+
+public class DotButtonBoard implements BoardView, ActionListener {
+
+    /**
+     * The icon of the captured dots, showing the image of the selected color
+     */
+    private static class BlobIcon implements Icon {
+
+        private Icon icon;
+
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            icon.paintIcon(c, g, x, y);
+        }
+
+        public int getIconWidth() {
+            return icon.getIconWidth();
+        }
+
+        public int getIconHeight() {
+            return icon.getIconHeight();
+        }
+    }
+
+    /**
+     * The board is a two dimensionnal array of DotButtons instances
+     */
+    private DotButton[][] board;
+
+    /**
+     * The panel holding the buttons
+     */
+    private JPanel panel;
+
+    /**
+     * The size of the icons in pixels, and the icon shared by the captured
+     * dots
+     */
+    private int pixels;
+    private BlobIcon blob = new BlobIcon();
+    private int blobColor = -1;
+
+    /**
+     * Reference to the controller of the game
+     */
+    private GameController gameController;
+
+    /**
+     * Constructor used for initializing the buttons
+     *
+     * @param model
+     *            the model of the game
+     * @param gameController
+     *            the controller
+     */
+
+    public DotButtonBoard(GameModel model, GameController gameController) {
+        this.gameController = gameController;
+        int size = model.getSize();
+        int iconSize = size < 26 ? DotButton.MEDIUM_SIZE : DotButton.SMALL_SIZE;
+        pixels = DotButton.getImageIcon(0, iconSize).getIconWidth();
+
+        panel = new JPanel();
+        panel.setBackground(Color.WHITE);
+        panel.setLayout(new GridLayout(size, size));
+        panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 0, 20));
+        board = new DotButton[size][size];
+
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                board[row][column] = new DotButton(row, column, model.getColor(row,column), iconSize);
+                board[row][column].addActionListener(this);
+                panel.add(board[row][column]);
+            }
+        }
+        update(model);
+
+        panel.addComponentListener(new ComponentAdapter() {
+            public void componentResized(ComponentEvent e) {
+                Insets insets = panel.getInsets();
+                int cell = Math.min(panel.getWidth() - insets.left - insets.right,
+                    panel.getHeight() - insets.top - insets.bottom) / board.length;
+                if(cell > 0 && cell != pixels){
+                    IconAtlas.prepare(cell, () -> setPixels(cell));
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the panel holding the buttons
+     *
+     * @return the component to add to the view
+     */
+
+    public Component getComponent(){
+        return panel;
+    }
+
+    /**
+     * Sets the icon of every button from the model
+     *
+     * @param model
+     *            the model of the game
+     */
+
+    public void update(GameModel model){
+        setBlobColor(model.getCurrentSelectedColor());
+        for(int i = 0; i < model.getSize(); i++){
+            for(int j = 0; j < model.getSize(); j++){
+                updateButton(model, i, j);
+            }
+        }
+    }
+
+    /**
+     * Sets the icon of the buttons of a move, and the color of the captured
+     * dots
+     *
+     * @param model
+     *            the model of the game, once the move is applied
+     * @param delta
+     *            the move
+     */
+
+    public void update(GameModel model, MoveDelta delta){
+        for(int k = 0; k < delta.getNumberCaptured(); k++){
+            int cell = delta.getCell(k);
+            updateButton(model, cell / model.getSize(), cell % model.getSize());
+        }
+        if(model.getCurrentSelectedColor() != blobColor){
+            setBlobColor(model.getCurrentSelectedColor());
+            panel.repaint();
+        }
+    }
+
+    /**
+     * Callback used when the user clicks a button
+     *
+     * @param e
+     *            the ActionEvent
+     */
+
+    public void actionPerformed(ActionEvent e) {
+        DotButton button = (DotButton)e.getSource();
+        gameController.selectDot(button.getRow(), button.getColumn());
+    }
+
+    /**
+     * <b>updateButton</b> is a helper method that shows a dot with the shared
+     * icon if it is captured, or with the icon of its color otherwise
+     */
+    private void updateButton(GameModel model, int i, int j){
+        if(model.isCaptured(i, j)){
+            if(board[i][j].getIcon() != blob){
+                board[i][j].setIcon(blob);
+            }
+        } else {
+            board[i][j].setColor(model.getColor(i, j));
+        }
+    }
+
+    /**
+     * <b>setPixels</b> is a helper method that shows every dot with the
+     * images of a size
+     */
+    private void setPixels(int cell){
+        pixels = cell;
+        blob.icon = IconAtlas.getIcon(blobColor, pixels);
+        for(DotButton[] row : board){
+            for(DotButton button : row){
+                button.setPixels(pixels);
+            }
+        }
+        panel.repaint();
+    }
+
+    /**
+     * <b>setBlobColor</b> is a helper method that changes the image shown by
+     * the icon of the captured dots
+     */
+    private void setBlobColor(int color){
+        blobColor = color;
+        blob.icon = IconAtlas.getIcon(color, pixels);
+    }
+}
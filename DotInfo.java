@@ -8,6 +8,12 @@ import java.io.*;
 
 public class DotInfo implements Cloneable, Serializable {
 
+    /**
+     * The version of the serialized form, kept from the first version of
+     * the class, whose saved games are still read
+     */
+    private static final long serialVersionUID = 8853806057598006429L;
+
     /**
      * The coordinate of this DotInfo.
      */
@@ -0,0 +1,59 @@
+/**
+ * A <b>FloodEngine</b> computes which dots of a <b>GameModel</b> are captured
+ * when the player selects the initial dot or a new color. The model is
+ * updated accordingly.
+ */
+
+public interface FloodEngine {
+
+    /**
+     * Captures the dot at location (i,j) as the initial dot of the game.
+     * The dots of the same color connected to it are captured by the next
+     * call to flood.
+     *
+     * @param model the model of the game
+     * @param i the x coordinate of the dot
+     * @param j the y coordinate of the dot
+     * @param delta the move receiving the captured dots, or null
+     * @return the number of newly captured dots
+     */
+
+    public abstract int capture( GameModel model, int i, int j, MoveDelta delta );
+
+    /**
+     * Captures every dot of the current selected color of the model that
+     * is connected to the captured region.
+     *
+     * @param model the model of the game
+     * @param delta the move receiving the captured dots, or null
+     * @return the number of newly captured dots
+     */
+
+    public abstract int flood( GameModel model, MoveDelta delta );
+
+    /**
+     * Tells the engine that a move was undone or redone on the model, so
+     * that it brings what it keeps between moves up to date from the dots
+     * of the move only. If the engine was not up to date with the model
+     * before the move, or if the move is a reset, it rebuilds everything on
+     * its next call instead.
+     *
+     * @param model the model of the game, once the move is undone or redone
+     * @param delta the move undone or redone
+     * @param undone true if the move was undone, false if it was redone
+     * @param version the version of the model before the move was undone
+     *        or redone
+     */
+
+    public abstract void replay( GameModel model, MoveDelta delta, boolean undone, int version );
+
+    /**
+     * Returns the number of dots looked at by the last call to capture or
+     * flood, for the instrumentation
+     *
+     * @return the number of dots visited
+     */
+
+    public abstract int getVisited();
+
+}
@@ -11,12 +11,14 @@ public class FloodIt {
    /**
      * <b>main</b> of the application. Creates the instance of  GameController 
      * and starts the game. If a game size (greater than 10) is passed as parameter, it is 
-     * used as the board size. Otherwise, a default value is passed
+     * used as the board size. Otherwise, a default value is passed. The
+     * images of the dots are decoded in the background meanwhile.
      * 
      * @param args
      *            command line parameters
      */
      public static void main(String[] args) {
+        IconAtlas.preload();
         int size = 10;
         //int size = 17;
         //int size = 22;
@@ -31,7 +33,6 @@ public class FloodIt {
                 System.out.println("Invalide argument, using default...");
             }
         }
-        StudentInfo.display();
         GameController game = new GameController(size);
     }
 
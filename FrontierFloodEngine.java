@@ -0,0 +1,219 @@
+/**
+ * The class <b>FrontierFloodEngine</b> is a <b>FloodEngine</b> that keeps the
+ * frontier of the captured region between moves: every dot that is not
+ * captured but is next to a captured dot is stored in the bucket of its
+ * color. Selecting a color only visits the bucket of that color and the
+ * dots exposed by the new captures, so the cost of a move is proportional
+ * to the number of dots that change, not to the size of the board.
+ *
+ * An undone move is replayed on the frontier from its dots: they are put
+ * back in the frontier if they are next to a captured dot, and their
+ * neighbours that no longer are leave it. A dot leaves the frontier by
+ * clearing its bit in queued, and is skipped when found in a bucket
+ * without it. The frontier is rebuilt with a full scan of the board only
+ * when the model changed behind the engine's back (another model, a
+ * reset, or a change of mode or direction).
+ */
+
+public class FrontierFloodEngine implements FloodEngine {
+
+    /**
+     * The model the frontier was computed for
+     */
+    private GameModel model;
+
+    /**
+     * The mode, direction and version of the model when the frontier was
+     * last updated
+     */
+    private int mode;
+    private int direction;
+    private int version;
+
+    /**
+     * The frontier: one bucket of cell ids per color
+     */
+    private IntStack[] buckets;
+
+    /**
+     * One bit per dot, set when the dot has been put in a bucket, and
+     * cleared when it leaves the frontier
+     */
+    private long[] queued;
+
+    /**
+     * The number of dots looked at by the last capture or flood
+     */
+    private int visited;
+
+    /**
+     * The topology of the board, for the mode and direction of the model
+     */
+    private Topology topology;
+
+    /**
+     * Scratch arrays receiving the neighbours of a dot, and the neighbours
+     * of one of them
+     */
+    private int[] neighbours = new int[8];
+    private int[] around = new int[8];
+
+    /**
+     * Constructor
+     */
+    public FrontierFloodEngine() {
+        buckets = new IntStack[GameModel.NUMBER_OF_COLORS];
+        for(int color = 0; color < buckets.length; color++){
+            buckets[color] = new IntStack();
+        }
+    }
+
+    public int capture(GameModel model, int i, int j, MoveDelta delta) {
+        sync(model);
+        int cell = model.getBoard().cell(i, j);
+        visited = 1;
+        if(model.getBoard().isCaptured(cell)){
+            return 0;
+        }
+        model.capture(cell);
+        if(delta != null){
+            delta.add(cell);
+        }
+        expand(cell);
+        version = model.getVersion();
+        return 1;
+    }
+
+    public int flood(GameModel model, MoveDelta delta) {
+        sync(model);
+        Board board = model.getBoard();
+        int color = model.getCurrentSelectedColor();
+        int count = 0;
+        IntStack bucket = buckets[color];
+        visited = 0;
+        while(!bucket.isEmpty()){
+            int cell = bucket.pop();
+            visited++;
+            if(!board.isCaptured(cell) && (queued[cell >> 6] & (1L << cell)) != 0){
+                model.capture(cell);
+                if(delta != null){
+                    delta.add(cell);
+                }
+                expand(cell);
+                count++;
+            }
+        }
+        version = model.getVersion();
+        return count;
+    }
+
+    public void replay(GameModel model, MoveDelta delta, boolean undone, int version) {
+        if(model != this.model || version != this.version || delta.isReset() || queued == null
+            || model.getMode() != mode || model.getDirection() != direction){
+            this.model = null;
+            return;
+        }
+        int n = delta.getNumberCaptured();
+        if(undone){
+            for(int k = 0; k < n; k++){
+                int cell = delta.getCell(k);
+                queued[cell >> 6] &= ~(1L << cell);
+            }
+            for(int k = 0; k < n; k++){
+                int cell = delta.getCell(k);
+                refresh(cell);
+                int count = topology.neighbours(cell, neighbours);
+                for(int m = 0; m < count; m++){
+                    refresh(neighbours[m]);
+                }
+            }
+        } else {
+            for(int k = 0; k < n; k++){
+                expand(delta.getCell(k));
+            }
+        }
+        this.version = version + n;
+    }
+
+    public int getVisited() {
+        return visited;
+    }
+
+    /**
+     * <b>refresh</b> is a helper method that puts a dot that is not
+     * captured in the frontier if it is next to a captured dot, and takes
+     * it out of the frontier otherwise
+     *
+     * @param cell the cell id of the dot
+     */
+    private void refresh(int cell) {
+        Board board = model.getBoard();
+        if(board.isCaptured(cell)){
+            return;
+        }
+        int count = topology.neighbours(cell, around);
+        boolean border = false;
+        for(int k = 0; k < count && !border; k++){
+            border = board.isCaptured(around[k]);
+        }
+        boolean in = (queued[cell >> 6] & (1L << cell)) != 0;
+        if(border && !in){
+            queued[cell >> 6] |= 1L << cell;
+            buckets[board.getColor(cell)].push(cell);
+        } else if(!border && in){
+            queued[cell >> 6] &= ~(1L << cell);
+        }
+    }
+
+    /**
+     * <b>sync</b> is a helper method that rebuilds the frontier from the
+     * captured dots of the model if it is not up to date
+     *
+     * @param model the model of the game
+     */
+    private void sync(GameModel model) {
+        if(model == this.model && model.getMode() == mode && model.getDirection() == direction
+            && model.getVersion() == version && queued != null){
+            return;
+        }
+        this.model = model;
+        mode = model.getMode();
+        direction = model.getDirection();
+        version = model.getVersion();
+        topology = model.getTopology();
+
+        Board board = model.getBoard();
+        int cells = board.getSize()*board.getSize();
+        if(queued == null || queued.length != (cells + 63) >> 6){
+            queued = new long[(cells + 63) >> 6];
+        } else {
+            java.util.Arrays.fill(queued, 0L);
+        }
+        for(IntStack bucket : buckets){
+            bucket.clear();
+        }
+        for(int cell = 0; cell < cells; cell++){
+            if(board.isCaptured(cell)){
+                expand(cell);
+            }
+        }
+    }
+
+    /**
+     * <b>expand</b> is a helper method that puts the neighbours of a newly
+     * captured dot in the frontier, unless they are captured or already there
+     *
+     * @param cell the cell id of the captured dot
+     */
+    private void expand(int cell) {
+        Board board = model.getBoard();
+        int count = topology.neighbours(cell, neighbours);
+        for(int k = 0; k < count; k++){
+            int next = neighbours[k];
+            if(!board.isCaptured(next) && (queued[next >> 6] & (1L << next)) == 0){
+                queued[next >> 6] |= 1L << next;
+                buckets[board.getColor(next)].push(next);
+            }
+        }
+    }
+}
@@ -2,91 +2,210 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.*;
 import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 
 /**
  * The class <b>GameController</b> is the controller of the game. It has a method
  * <b>selectColor</b> which is called by the view when the player selects the next
- * color. It then computesthe next step of the game, and  updates model and view.
+ * color. It then asks the <b>GameEngine</b> to compute the next step of the game,
+ * and updates the view.
+ *
+ * On boards of at least WORKER_THRESHOLD dots, the engine is only used by a
+ * worker thread, so that the window stays responsive while a move is
+ * computed. The changes are then shown on the event dispatch thread. The
+ * clicks made while a move is computed are ignored, except on the history
+ * slider, which goes to its last position once the move is done.
  *
  * @author Guy-Vincent Jourdan, University of Ottawa
  */
 
 
-public class GameController implements ActionListener, Serializable {
+public class GameController implements ActionListener, ChangeListener, Serializable {
 
     /**
      * Reference to the view of the board
      */
     private GameView gameView;
     /**
-     * Reference to the model of the game
+     * Reference to the engine playing the game
+     */
+    private GameEngine engine;
+    /**
+     * Reference to the journal saving the game as it is played
+     */
+    private transient MoveJournal journal;
+    /**
+     * The history being loaded in the background, if any
+     */
+    private transient CompletableFuture<HistoryStore> pendingHistory;
+    /**
+     * The thread computing the moves on large boards, or null if they are
+     * computed on the event dispatch thread
+     */
+    private transient ExecutorService worker;
+    /**
+     * The number of actions given to the worker and not shown yet, and the
+     * step selected on the history slider meanwhile, or -1
+     */
+    private transient int pending;
+    private transient int requestedStep = -1;
+    /**
+     * The model shown by the view. On large boards it is a copy of the model
+     * of the engine that only the event dispatch thread reads and changes,
+     * replaying the moves handed over by the worker; otherwise it is the
+     * model of the engine itself.
+     */
+    private transient GameModel shown;
+    /**
+     * The last outcome shown by the view
+     */
+    private transient Outcome last;
+    /**
+     * The events measuring the startup, started when the controller is
+     * created
      */
-    private GameModel gameModel;
+    private transient GameEvent firstFrame;
+    private transient GameEvent historyLoad;
     /**
      * Constant for plane mode
      */
-    private static final int MODE_PLANE = 0;
+    private static final int MODE_PLANE = GameModel.MODE_PLANE;
     /**
      * Constant for torus mode
      */
-    private static final int MODE_TORUS = 1;
+    private static final int MODE_TORUS = GameModel.MODE_TORUS;
     /**
      * Constant for orthogonal direction
      */
-    private static final int DIRECTION_ORTHOGONAL = 0;
+    private static final int DIRECTION_ORTHOGONAL = GameModel.DIRECTION_ORTHOGONAL;
     /**
      * Constant for diagonal direction
      */
-    private static final int DIRECTION_DIAGONAL = 1;
+    private static final int DIRECTION_DIAGONAL = GameModel.DIRECTION_DIAGONAL;
     /**
-     * Reference to undo stack
+     * Boards of at least this size are painted by a single BoardCanvas
+     * instead of a grid of DotButtons
      */
-    private Stack<GameModel> undoState = new GenericLinkedStack<GameModel>();
+    public static final int CANVAS_THRESHOLD = 40;
     /**
-     * Reference to redo stack
+     * Boards of at least this size are shown in a scrollable and zoomable
+     * BoardViewport, which only paints the visible dots
      */
-    private Stack<GameModel> redoState = new GenericLinkedStack<GameModel>();
+    public static final int VIEWPORT_THRESHOLD = 1000;
+    /**
+     * On boards of at least this size, the moves are computed by a worker
+     * thread instead of the event dispatch thread
+     */
+    public static final int WORKER_THRESHOLD = 100;
  
     /**
      * Constructor used for initializing the controller. It creates the game's view 
-     * and the game's model instances
+     * and the game's model instances. When the saved game is up to date, only
+     * its current board is read before the view is shown, and its history is
+     * loaded in the background.
      * 
      * @param size
      *            the size of the board on which the game will be played
      */
     public GameController(int size) {
+        firstFrame = GameEvents.firstFrame();
+        firstFrame.start();
+        historyLoad = GameEvents.historyLoad();
+        historyLoad.start();
         String fileName = "savedGame.ser";
+        Path savePath = Paths.get(fileName);
+        Path journalPath = Paths.get("savedGame.journal");
         try{
-            ObjectInputStream is = new ObjectInputStream(new FileInputStream(fileName));
-            gameModel = (GameModel) is.readObject();
-            undoState = (GenericLinkedStack<GameModel>) is.readObject();
-            redoState = (GenericLinkedStack<GameModel>) is.readObject();
-        }catch(FileNotFoundException e){
+            if(GameFile.isGameFile(savePath) && MoveJournal.isClean(savePath, journalPath)){
+                engine = new GameEngine(GameFile.readModel(savePath), new HistoryStore());
+                engine.loadHistory();
+                pendingHistory = CompletableFuture.supplyAsync(() -> {
+                    try{
+                        return GameFile.readHistory(savePath);
+                    }catch(IOException e){
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } else if(GameFile.isGameFile(savePath)){
+                engine = GameFile.read(Paths.get(fileName));
+            } else {
+                engine = GameFile.readSerialized(savePath);
+            }
+        }catch(FileNotFoundException | NoSuchFileException e){
             System.out.println("File not found. Starting a new game");
-            gameModel = new GameModel(size);
+            engine = new GameEngine(size);
+        }catch(IOException e){
+            System.out.println("Cannot read the saved game: " + e.getMessage());
+            setAside(savePath, journalPath);
+            System.out.println("Starting a new game");
+            engine = new GameEngine(size);
+        }
+        journal = new MoveJournal(savePath, journalPath);
+        try{
+            int records = journal.open(engine);
+            if(records > 0){
+                System.out.println("Recovered " + records + " actions from the journal");
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
         }catch(IOException e){
-            System.out.println("No object to be read. Starting a new game");
-            gameModel = new GameModel(size);
-        }catch(ClassNotFoundException e){
-            System.out.println("Class is not GameModel. Starting a new game");
-            gameModel = new GameModel(size);
+            System.out.println("Cannot open journal. The game will only be saved on quit");
+            engine.setJournal(null);
+            journal = null;
+        }
+        if(engine.getModel().getSize() >= WORKER_THRESHOLD){
+            worker = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "game-engine");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
-        gameView = new GameView(gameModel, this);
-        //flood();
-        gameView.update(gameModel, canUndo(), canRedo());
+        Outcome initial = outcome(null, false);
+        shown = initial.snapshot != null ? initial.snapshot : engine.getModel();
+        BoardView board;
+        if(shown.getSize() >= VIEWPORT_THRESHOLD){
+            board = new BoardViewport(shown, this);
+        } else if(shown.getSize() >= CANVAS_THRESHOLD){
+            board = new BoardCanvas(shown, this);
+        } else {
+            board = new DotButtonBoard(shown, this);
+        }
+        gameView = new GameView(shown, this, board);
+        show(initial);
+        if(pendingHistory != null){
+            pendingHistory.whenComplete((history, failure) ->
+                SwingUtilities.invokeLater(() -> run(() -> historyLoaded(history, failure), () -> {})));
+        }
+    }
+
+    /**
+     * Called by the view once its first frame is painted: records the time
+     * needed to show the game
+     */
+    public void firstFrame(){
+        firstFrame.finish(shown, 0, 0, 0);
     }
 
     /**
      * resets the game
      */
     public void reset(){
-        gameModel.reset();
-        //flood();
-        gameView.update(gameModel, canUndo(), canRedo());
+        if(pending == 0){
+            run(engine::reset, () -> {});
+        }
     }
 
     /**
@@ -99,47 +218,29 @@ public class GameController implements ActionListener, Serializable {
     public void actionPerformed(ActionEvent e) {
         String command = e.getActionCommand();
         
-        if (e.getSource() instanceof DotButton) {
-
-            redoState.clear();
-            DotButton button = (DotButton)e.getSource();
-            if(gameModel.allDotsNotCaptured()){
-                addStates();
-                gameModel.capture(button.getRow(), button.getColumn());
-                flood();
-                //addStates();
-                gameView.update(gameModel, canUndo(), canRedo());
-            }
-            else{
-                selectColor(((DotButton)(e.getSource())).getColor());
-            }
-        } else if (e.getSource() instanceof JButton) {
+        if (e.getSource() instanceof JButton) {
             JButton clicked = (JButton)(e.getSource());
 
             if (clicked.getText().equals("Quit")) {
-                String fileName = "savedGame.ser";
-                try{
-                    ObjectOutputStream os = new ObjectOutputStream(new FileOutputStream(fileName));
-                    os.writeObject(gameModel);
-                    os.writeObject(undoState);
-                    os.writeObject(redoState);
-                    os.close();
-                }catch(FileNotFoundException f){
-                    System.out.println("File not found. Creating a new file");
-                    f.printStackTrace();
-                }catch(IOException f){
-                    System.out.println("Implementation incorrect");
-                    f.printStackTrace();
+                if(worker != null){
+                    CompletableFuture.runAsync(this::save, worker).join();
+                } else {
+                    save();
                 }
                  System.exit(0);
                 
              } else if (clicked.getText().equals("Reset")){
                 reset();
             }else if(clicked.getText().equals("Undo")){
-                undo();
+                if(pending == 0){
+                    submit(engine::undo, true, () -> {});
+                }
             }else if(clicked.getText().equals("Redo")){
-                redo();
+                if(pending == 0){
+                    submit(engine::redo, false, () -> {});
+                }
              }else if(clicked.getText().equals("Settings")){
+                GameModel gameModel = shown;
                 JPanel planeOptions = new JPanel();
                 planeOptions.setLayout(new GridLayout(6, 1));
                 JLabel q1 = new JLabel("Play on plane or torus?");
@@ -191,42 +292,100 @@ public class GameController implements ActionListener, Serializable {
         }
         else if(e.getSource() instanceof JRadioButton){
             if(command.equals("Plane")){
-                gameModel.setMode(MODE_PLANE);
+                run(() -> engine.setMode(MODE_PLANE), () -> {});
             }
             else if(command.equals("Torus")){
-                gameModel.setMode(MODE_TORUS);
+                run(() -> engine.setMode(MODE_TORUS), () -> {});
             }
             if(command.equals("Orthogonal")){
-                gameModel.setDirection(DIRECTION_ORTHOGONAL);
+                run(() -> engine.setDirection(DIRECTION_ORTHOGONAL), () -> {});
             }
             else if(command.equals("Diagonals")){
-                gameModel.setDirection(DIRECTION_DIAGONAL);
+                run(() -> engine.setDirection(DIRECTION_DIAGONAL), () -> {});
             }
         } 
     }
 
+    /**
+     * Callback used when the user moves the history slider: the game jumps
+     * to the selected step of its history
+     *
+     * @param e
+     *            the ChangeEvent
+     */
+    public void stateChanged(ChangeEvent e) {
+        int step = ((JSlider)e.getSource()).getValue();
+        if(pending > 0){
+            requestedStep = step;
+        } else if(last.ready && step != last.position){
+            seek(step);
+        }
+    }
+
+    /**
+     * <b>seek</b> is a helper method that jumps to a step of the history,
+     * then to the last step selected on the slider meanwhile, if any
+     *
+     * @param step
+     *            the number of moves of the history to keep applied
+     */
+    private void seek(int step){
+        requestedStep = -1;
+        run(() -> engine.seek(step), () -> {
+            if(requestedStep >= 0 && requestedStep != step){
+                seek(requestedStep);
+            }
+        });
+    }
+
+    /**
+     * <b>selectDot</b> is the method called by the view of the board when the
+     * user clicks a dot. The first dot clicked is the initial dot, then the
+     * color of the dot clicked is selected.
+     *
+     * @param row
+     *            the row of the dot
+     * @param column
+     *            the column of the dot
+     */
+    public void selectDot(int row, int column){
+        if(pending > 0){
+            return;
+        }
+        if(shown.allDotsNotCaptured()){
+            submit(() -> engine.start(row, column), false, () -> {});
+        }
+        else{
+            selectColor(shown.getColor(row, column));
+        }
+    }
+
     /**
      * <b>selectColor</b> is the method called when the user selects a new color.
      * If that color is not the currently selected one, then it applies the laogic
-     * of the game to capture possible locations. It then checks if the game
-     * is finished, and if so, congratulates the player, showing the number of
-     * moves, and gives to options: start a new game, or exit
+     * of the game to capture possible locations, and the move is shown by
+     * played. Ignored while another move is computed.
      * @param color
      *            the newly selected color
      */
     public void selectColor(int color){
-        if(color != gameModel.getCurrentSelectedColor()) {
-            addStates();   
-            gameModel.setCurrentSelectedColor(color);
-            flood();
-            gameModel.step();
-           
-            gameView.update(gameModel, canUndo(), canRedo());
-            if(gameModel.isFinished()) {
+        if(pending == 0 && color != shown.getCurrentSelectedColor()){
+            submit(() -> engine.play(color), false, this::played);
+        }
+    }
+
+    /**
+     * <b>played</b> is a helper method called once a move is shown. If the
+     * game is finished, it congratulates the player, showing the number of
+     * moves, and gives to options: start a new game, or exit
+     */
+    private void played(){
+        if(last.delta != null) {
+            if(last.finished) {
                       Object[] options = {"Play Again",
                                 "Quit"};
                         int n = JOptionPane.showOptionDialog(gameView,
-                                "Congratulations, you won in " + gameModel.getNumberOfSteps() 
+                                "Congratulations, you won in " + last.steps 
                                     +" steps!\n Would you like to play again?",
                                 "Won",
                                 JOptionPane.YES_NO_OPTION,
@@ -235,10 +394,7 @@ public class GameController implements ActionListener, Serializable {
                                 options,
                                 options[0]);
                         if(n == 0){
-                            reset();
-                            undoState.clear();
-                            redoState.clear();
-                            gameView.update(gameModel, canUndo(), canRedo());
+                            run(engine::newGame, () -> {});
                         } else{
                             System.exit(0);
                         }   
@@ -246,324 +402,248 @@ public class GameController implements ActionListener, Serializable {
             }        
     }
 
-   /**
-     * <b>flood</b> is the method that computes which new dots should be "captured" 
-     * when a new color has been selected. The Model is updated accordingly
+    /**
+     * <b>historyLoaded</b> is a helper method that gives the history loaded
+     * in the background to the engine, waiting for it if needed. It must be
+     * called where the engine is used: by the worker, if there is one.
+     *
+     * @param history
+     *            the history loaded, or null to wait for it
+     * @param failure
+     *            the error met while loading the history, if any
      */
-     private void flood() {
-
-        Stack<DotInfo> stack = new GenericLinkedStack<DotInfo>();
-        for(int i =0; i < gameModel.getSize(); i++) {
-           for(int j =0; j < gameModel.getSize(); j++) {
-                if(gameModel.isCaptured(i,j)) {
-                    stack.push(gameModel.get(i,j));
-                }
-           }
+    private void historyLoaded(HistoryStore history, Throwable failure){
+        if(!engine.isHistoryLoading()){
+            return;
         }
-
-        DotInfo dotInfo;
-        while(!stack.isEmpty()){
-            dotInfo = stack.pop();
-            if(gameModel.getMode() == MODE_PLANE){ //the board is now plane (borders are limited)
-                if((dotInfo.getX() > 0) && shouldBeCaptured (dotInfo.getX()-1, dotInfo.getY())) {
-                    gameModel.capture(dotInfo.getX()-1, dotInfo.getY());
-                    stack.push(gameModel.get(dotInfo.getX()-1, dotInfo.getY()));
-                }  
-                if((dotInfo.getX() < gameModel.getSize()-1) && shouldBeCaptured (dotInfo.getX()+1, dotInfo.getY())) {
-                    gameModel.capture(dotInfo.getX()+1, dotInfo.getY());
-                    stack.push(gameModel.get(dotInfo.getX()+1, dotInfo.getY()));
-                }
-                if((dotInfo.getY() > 0) && shouldBeCaptured (dotInfo.getX(), dotInfo.getY()-1)) {
-                    gameModel.capture(dotInfo.getX(), dotInfo.getY()-1);
-                    stack.push(gameModel.get(dotInfo.getX(), dotInfo.getY()-1));
-                }  
-                if((dotInfo.getY() < gameModel.getSize()-1) && shouldBeCaptured (dotInfo.getX(), dotInfo.getY()+1)) {
-                    gameModel.capture(dotInfo.getX(), dotInfo.getY()+1);
-                    stack.push(gameModel.get(dotInfo.getX(), dotInfo.getY()+1));
-                }
-                if(gameModel.getDirection() == DIRECTION_DIAGONAL){ //checks diagonals when radio button "Diagonals" is selected in settings
-                    if((dotInfo.getX() > 0 && dotInfo.getY() > 0) && shouldBeCaptured (dotInfo.getX()-1, dotInfo.getY()-1)) { //top left
-                        gameModel.capture(dotInfo.getX()-1, dotInfo.getY()-1);
-                        stack.push(gameModel.get(dotInfo.getX()-1, dotInfo.getY()-1));
-                    }
-                    if((dotInfo.getX() < gameModel.getSize()-1 && dotInfo.getY() > 0) && shouldBeCaptured (dotInfo.getX()+1, dotInfo.getY()-1)) { //bottom left
-                        gameModel.capture(dotInfo.getX()+1, dotInfo.getY()-1);
-                        stack.push(gameModel.get(dotInfo.getX()+1, dotInfo.getY()-1));
-                    }
-                    if((dotInfo.getX() > 0 && dotInfo.getY() < gameModel.getSize()-1) && shouldBeCaptured (dotInfo.getX()-1, dotInfo.getY()+1)) { //top right
-                        gameModel.capture(dotInfo.getX()-1, dotInfo.getY()+1);
-                        stack.push(gameModel.get(dotInfo.getX()-1, dotInfo.getY()+1));
-                    }
-                    if((dotInfo.getX() < gameModel.getSize()-1 && dotInfo.getY() < gameModel.getSize()-1) && shouldBeCaptured (dotInfo.getX()+1, dotInfo.getY()+1)) { //bottom right
-                        gameModel.capture(dotInfo.getX()+1, dotInfo.getY()+1);
-                        stack.push(gameModel.get(dotInfo.getX()+1, dotInfo.getY()+1));
-                    }
-                }
+        if(history == null && failure == null){
+            try{
+                history = pendingHistory.join();
+            }catch(CompletionException e){
+                failure = e.getCause();
             }
-            else if(gameModel.getMode() == MODE_TORUS){ //the board is now torus (board is like a cylinder)
-                if(dotInfo.getX() >= 0) {
-                    if(dotInfo.getX() == 0){
-                        if(shouldBeCaptured (gameModel.getSize()-1, dotInfo.getY())){
-                            gameModel.capture(gameModel.getSize()-1, dotInfo.getY());
-                            stack.push(gameModel.get(gameModel.getSize()-1, dotInfo.getY()));
-                        }
-                    }
-                    else{
-                        if(shouldBeCaptured (dotInfo.getX()-1, dotInfo.getY())){
-                            gameModel.capture(dotInfo.getX()-1, dotInfo.getY());
-                            stack.push(gameModel.get(dotInfo.getX()-1, dotInfo.getY()));
-                        }
-                    }
-                }  
-                if(dotInfo.getX() < gameModel.getSize()) {
-                    if(dotInfo.getX() == gameModel.getSize()-1){
-                        if(shouldBeCaptured (0, dotInfo.getY())){
-                            gameModel.capture(0, dotInfo.getY());
-                            stack.push(gameModel.get(0, dotInfo.getY()));
-                        }
-                    }
-                    else{
-                        if(shouldBeCaptured (dotInfo.getX()+1, dotInfo.getY())){
-                            gameModel.capture(dotInfo.getX()+1, dotInfo.getY());
-                            stack.push(gameModel.get(dotInfo.getX()+1, dotInfo.getY()));
-                        }
-                    }
-                }
-                if(dotInfo.getY() >= 0) {
-                    if(dotInfo.getY() == 0){
-                        if(shouldBeCaptured (dotInfo.getX(), gameModel.getSize()-1)){
-                            gameModel.capture(dotInfo.getX(), gameModel.getSize()-1);
-                            stack.push(gameModel.get(dotInfo.getX(), gameModel.getSize()-1));
-                        }
-                    }
-                    else{
-                        if(shouldBeCaptured (dotInfo.getX(), dotInfo.getY()-1)){
-                            gameModel.capture(dotInfo.getX(), dotInfo.getY()-1);
-                            stack.push(gameModel.get(dotInfo.getX(), dotInfo.getY()-1));
-                        }
-                    }
-                }  
-                if(dotInfo.getY() < gameModel.getSize()) {
-                    if(dotInfo.getY() == gameModel.getSize()-1){
-                        if(shouldBeCaptured (dotInfo.getX(), 0)){
-                            gameModel.capture(dotInfo.getX(), 0);
-                            stack.push(gameModel.get(dotInfo.getX(), 0));
-                        }
-                    }
-                    else{
-                        if(shouldBeCaptured (dotInfo.getX(), dotInfo.getY()+1)){
-                            gameModel.capture(dotInfo.getX(), dotInfo.getY()+1);
-                            stack.push(gameModel.get(dotInfo.getX(), dotInfo.getY()+1));
-                        }
-                    }
-                }
-                if(gameModel.getDirection() == DIRECTION_DIAGONAL){ //checks diagonals when radio button "Diagonals" is selected in settings
-                    if(dotInfo.getX() >= 0 && dotInfo.getY() >= 0) { //top left
-                        if(dotInfo.getX() == 0 && dotInfo.getY() == 0){
-                            if(shouldBeCaptured (gameModel.getSize()-1, gameModel.getSize()-1)){
-                                gameModel.capture(gameModel.getSize()-1, gameModel.getSize()-1);
-                                stack.push(gameModel.get(gameModel.getSize()-1, gameModel.getSize()-1));
-                            }
-                        }
-                        else if(dotInfo.getX() == 0){
-                            if(shouldBeCaptured (dotInfo.getX() + (gameModel.getSize()-1-dotInfo.getY()), gameModel.getSize()-1)){
-                                gameModel.capture(dotInfo.getX() + (gameModel.getSize()-1-dotInfo.getY()), gameModel.getSize()-1);
-                                stack.push(gameModel.get(dotInfo.getX() + (gameModel.getSize()-1-dotInfo.getY()), gameModel.getSize()-1));
-
-                            }
-                        }
-                        else if(dotInfo.getY() == 0){
-                            if(shouldBeCaptured (gameModel.getSize()-1, dotInfo.getY() + (gameModel.getSize()-1-dotInfo.getX()))){
-                                gameModel.capture(gameModel.getSize()-1, dotInfo.getY() + (gameModel.getSize()-1-dotInfo.getX()));
-                                stack.push(gameModel.get(gameModel.getSize()-1, dotInfo.getY() + (gameModel.getSize()-1-dotInfo.getX())));
-                            }
-                        }
-                        else{
-                            if(shouldBeCaptured (dotInfo.getX()-1, dotInfo.getY()-1)){
-                                gameModel.capture(dotInfo.getX()-1, dotInfo.getY()-1);
-                                stack.push(gameModel.get(dotInfo.getX()-1, dotInfo.getY()-1));
-                            }
-                        }
-                    }
-                    if(dotInfo.getX() < gameModel.getSize() && dotInfo.getY() >= 0) { //bottom left
-                        if(dotInfo.getX() == gameModel.getSize()-1 && dotInfo.getY() == 0){
-                            if(shouldBeCaptured (0, gameModel.getSize()-1)){
-                                gameModel.capture(0, gameModel.getSize()-1);
-                                stack.push(gameModel.get(0, gameModel.getSize()-1));
-                            }
-                        }
-                        else if(dotInfo.getX() == gameModel.getSize()-1){
-                            if(shouldBeCaptured (dotInfo.getY(), gameModel.getSize()-1)){
-                                gameModel.capture(dotInfo.getY(), gameModel.getSize()-1);
-                                stack.push(gameModel.get(dotInfo.getY(), gameModel.getSize()-1));
-
-                            }
-                        }
-                        else if(dotInfo.getY() == 0){
-                            if(shouldBeCaptured (gameModel.getSize()-1, dotInfo.getX())){
-                                gameModel.capture(gameModel.getSize()-1, dotInfo.getX());
-                                stack.push(gameModel.get(gameModel.getSize()-1, dotInfo.getX()));
-                            }
-                        }
-                        else{
-                            if(shouldBeCaptured (dotInfo.getX()+1, dotInfo.getY()-1)){
-                                gameModel.capture(dotInfo.getX()+1, dotInfo.getY()-1);
-                                stack.push(gameModel.get(dotInfo.getX()+1, dotInfo.getY()-1));
-                            }
-                        }
-                    }
-                    if(dotInfo.getX() >= 0 && dotInfo.getY() < gameModel.getSize()) { //top right
-                        if(dotInfo.getX() == 0 && dotInfo.getY() == gameModel.getSize()-1){
-                            if(shouldBeCaptured (gameModel.getSize()-1, 0)){
-                                gameModel.capture(gameModel.getSize()-1, 0);
-                                stack.push(gameModel.get(gameModel.getSize()-1, 0));
-                            }
-                        }
-                        else if(dotInfo.getX() == 0){
-                            if(shouldBeCaptured (dotInfo.getY(), gameModel.getSize()-1)){
-                                gameModel.capture(dotInfo.getY(), gameModel.getSize()-1);
-                                stack.push(gameModel.get(dotInfo.getY(), gameModel.getSize()-1));
-
-                            }
-                        }
-                        else if(dotInfo.getY() == gameModel.getSize()-1){
-                            if(shouldBeCaptured (gameModel.getSize()-1, dotInfo.getX())){
-                                gameModel.capture(gameModel.getSize()-1, dotInfo.getX());
-                                stack.push(gameModel.get(gameModel.getSize()-1, dotInfo.getX()));
-                            }
-                        }
-                        else{
-                            if(shouldBeCaptured (dotInfo.getX()-1, dotInfo.getY()+1)){
-                                gameModel.capture(dotInfo.getX()-1, dotInfo.getY()+1);
-                                stack.push(gameModel.get(dotInfo.getX()-1, dotInfo.getY()+1));
-                            }
-                        }
-                    }
-                    if(dotInfo.getX() < gameModel.getSize() && dotInfo.getY() < gameModel.getSize()) { //top right
-                        if(dotInfo.getX() == gameModel.getSize()-1 && dotInfo.getY() == gameModel.getSize()-1){
-                            if(shouldBeCaptured (0, 0)){
-                                gameModel.capture(0, 0);
-                                stack.push(gameModel.get(0, 0));
-                            }
-                        }
-                        else if(dotInfo.getX() == gameModel.getSize()-1){
-                            if(shouldBeCaptured (dotInfo.getX() - (gameModel.getSize()-1-dotInfo.getY()), gameModel.getSize()-1)){
-                                gameModel.capture(dotInfo.getX() - (gameModel.getSize()-1-dotInfo.getY()), gameModel.getSize()-1);
-                                stack.push(gameModel.get(dotInfo.getX() - (gameModel.getSize()-1-dotInfo.getY()), gameModel.getSize()-1));
-
-                            }
-                        }
-                        else if(dotInfo.getY() == gameModel.getSize()-1){
-                            if(shouldBeCaptured (gameModel.getSize()-1, dotInfo.getY() - (gameModel.getSize()-1-dotInfo.getX()))){
-                                gameModel.capture(gameModel.getSize()-1, dotInfo.getY() - (gameModel.getSize()-1-dotInfo.getX()));
-                                stack.push(gameModel.get(gameModel.getSize()-1, dotInfo.getY() - (gameModel.getSize()-1-dotInfo.getX())));
-                            }
-                        }
-                        else{
-                            if(shouldBeCaptured (dotInfo.getX()+1, dotInfo.getY()+1)){
-                                gameModel.capture(dotInfo.getX()+1, dotInfo.getY()+1);
-                                stack.push(gameModel.get(dotInfo.getX()+1, dotInfo.getY()+1));
-                            }
-                        }
-                    }
-                }
+        }
+        if(failure != null){
+            System.out.println("Cannot load history: " + failure.getMessage() + ". Continuing without it");
+            try{
+                System.out.println("Saved game kept as " + GameFile.setAside(Paths.get("savedGame.ser"), true));
+            }catch(IOException e){
+                System.out.println("Cannot keep the saved game: " + e.getMessage());
             }
+            history = new HistoryStore();
         }
+        long bytes = history.byteSize();
+        engine.restoreHistory(history);
+        historyLoad.finish(engine.getModel(), 0, 0, bytes);
     }
 
-
     /**
-     * <b>shouldBeCaptured</b> is a helper method that decides if the dot
-     * located at position (i,j), which is next to a captured dot, should
-     * itself be captured
-     * @param i
-     *            row of the dot
-     * @param j
-     *            column of the dot
-     * @return true if the dot should be captured and false otherwise
+     * <b>setAside</b> is a helper method that moves a saved game that cannot
+     * be read, and its journal, out of the way before a new game replaces
+     * them. The game does not start if they cannot be moved.
+     *
+     * @param savePath the saved game
+     * @param journalPath the journal of the saved game
      */
-    
-   private boolean shouldBeCaptured(int i, int j) {
-        if(!gameModel.isCaptured(i, j) &&
-           (gameModel.getColor(i,j) == gameModel.getCurrentSelectedColor())) {
-            return true;
-        } else {
-            return false;
+    private static void setAside(Path savePath, Path journalPath){
+        try{
+            System.out.println("Unreadable saved game kept as " + GameFile.setAside(savePath, false));
+            if(Files.exists(journalPath)){
+                GameFile.setAside(journalPath, false);
+            }
+        }catch(IOException e){
+            System.out.println("Cannot move the saved game aside: " + e.getMessage()
+                + ". Not starting, so that it is not replaced");
+            System.exit(1);
         }
     }
-    
+
     /**
-     * <b>addStates</b> is a helper method that pushes every GameModel into the undo stack
+     * <b>save</b> is a helper method that saves the game before quitting.
+     * It must be called where the engine is used: by the worker, if there is
+     * one.
      */
-    private void addStates(){
+    private void save(){
+        String fileName = "savedGame.ser";
         try{
-            undoState.push(gameModel.clone());
-        }catch(CloneNotSupportedException e){
-            System.out.println("Cannot be cloned");
-        }catch(NullPointerException e){ // this should never happen as GameModel is always initialized
-            System.out.println("GameModel is empty");
+            if(engine.isHistoryLoading()){
+                historyLoaded(null, null);
+            }
+            if(journal != null){
+                journal.checkpoint(engine);
+                journal.close();
+            } else {
+                GameFile.write(engine, Paths.get(fileName));
+            }
+        }catch(FileNotFoundException f){
+            System.out.println("File not found. Creating a new file");
+            f.printStackTrace();
+        }catch(IOException f){
+            System.out.println("Implementation incorrect");
+            f.printStackTrace();
         }
     }
 
     /**
-     * <b>canUndo</b> is a helper method that returns true if the user can undo and false otherwise.
+     * <b>submit</b> is a helper method that applies an action to the engine,
+     * then shows its outcome. On large boards, the action is run by the
+     * worker, and its outcome is shown later on the event dispatch thread;
+     * the actions are run, and their outcomes shown, in the order they are
+     * submitted.
      *
-     * @return true if an undo is permitted and false otherwise
+     * @param action
+     *            the action, returning the move it made, if any
+     * @param undone
+     *            true if the action undoes the move it returns
+     * @param done
+     *            run once the outcome is shown, on the event dispatch thread
      */
-    private boolean canUndo(){
-        return !undoState.isEmpty();
+    private void submit(Supplier<MoveDelta> action, boolean undone, Runnable done){
+        schedule(() -> outcome(action.get(), undone), done);
     }
 
     /**
-     * <b>undo</b> is a helper method that restores the game to its previous state when the user presses "Undo" button.
+     * <b>run</b> is a helper method that applies an action that makes no
+     * move to the engine, like submit, then shows the whole model
+     *
+     * @param action
+     *            the action
+     * @param done
+     *            run once the outcome is shown, on the event dispatch thread
+     */
+    private void run(Runnable action, Runnable done){
+        schedule(() -> {
+            action.run();
+            return outcome(null, false);
+        }, done);
+    }
+
+    /**
+     * <b>schedule</b> is a helper method that runs a task on the engine,
+     * by the worker if there is one, then shows its outcome
+     *
+     * @param task
+     *            the task, returning its outcome
+     * @param done
+     *            run once the outcome is shown, on the event dispatch thread
      */
-    private void undo(){
-        if(!canUndo()){
-            throw new IllegalStateException("Cannot undo");
+    private void schedule(Supplier<Outcome> task, Runnable done){
+        if(worker == null){
+            show(task.get());
+            done.run();
+            return;
         }
-        try{
-            redoState.push(gameModel.clone());
-            gameModel = undoState.pop();
-        }catch(CloneNotSupportedException e){
-            System.out.println("Cannot be cloned");
-        }catch(EmptyStackException e){
-            System.out.println("Empty Stack");
-        }catch(NullPointerException e){// this should never happen as GameModel is always initialized
-            System.out.println("GameModel is empty");
+        if(pending++ == 0){
+            gameView.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
         }
-        
-        
-        gameView.update(gameModel, canUndo(), canRedo());
+        CompletableFuture.supplyAsync(() -> {
+            try{
+                return task.get();
+            }catch(RuntimeException e){
+                System.out.println("Move failed: " + e);
+                return outcome(null, false);
+            }
+        }, worker).thenAccept(outcome ->
+            SwingUtilities.invokeLater(() -> {
+                if(--pending == 0){
+                    gameView.setCursor(Cursor.getDefaultCursor());
+                }
+                show(outcome);
+                done.run();
+            }));
     }
 
     /**
-     * <b>canRedo</b> is a helper method that returns true if the user can redo and false otherwise.
+     * <b>outcome</b> is a helper method that reads the state of the engine
+     * after an action, where the engine is used: by the worker, if there is
+     * one. With a worker, a copy of the whole model is taken unless the
+     * action is a move that the view can replay.
      *
-     * @return true if an redo is permitted and false otherwise
+     * @param delta
+     *            the move made by the action, or null
+     * @param undone
+     *            true if the action undid the move
+     * @return the outcome of the action
      */
-    private boolean canRedo(){
-        return !redoState.isEmpty();
+    private Outcome outcome(MoveDelta delta, boolean undone){
+        Outcome outcome = new Outcome();
+        outcome.delta = delta;
+        outcome.undone = undone;
+        if(worker != null && (delta == null || delta.isReset())){
+            outcome.snapshot = engine.snapshot();
+        }
+        GameModel model = engine.getModel();
+        outcome.steps = model.getNumberOfSteps();
+        outcome.finished = engine.isFinished();
+        outcome.ready = !engine.isHistoryLoading();
+        outcome.undoable = outcome.ready && engine.canUndo();
+        outcome.redoable = outcome.ready && engine.canRedo();
+        outcome.position = engine.getHistory().getPosition();
+        outcome.size = engine.getHistory().getSize();
+        return outcome;
     }
 
     /**
-     * <b>redo</b> is a helper method that restores the game to its previous state after the game is undone when the user presses "Redo" button.
+     * <b>show</b> is a helper method that shows the outcome of an action in
+     * the view, on the event dispatch thread. The move is replayed on the
+     * model of the view, or the model of the view is replaced by the copy
+     * taken by the worker. Only the dots of the move and the captured dots
+     * are updated, unless the model is replaced or the move is a reset.
+     * Undo, redo and the history slider are disabled while the history is
+     * loading.
+     *
+     * @param outcome
+     *            the outcome of the action
      */
-    private void redo(){
-        if(!canRedo()){
-            throw new IllegalStateException("Cannot redo");
+    private void show(Outcome outcome){
+        last = outcome;
+        MoveDelta delta = outcome.delta;
+        if(outcome.snapshot != null){
+            shown = outcome.snapshot;
+        } else if(worker != null && delta != null){
+            if(outcome.undone){
+                delta.undo(shown);
+            } else {
+                delta.redo(shown);
+            }
         }
-        try{
-            undoState.push(gameModel.clone());
-            gameModel = redoState.pop();
-        }catch(CloneNotSupportedException e){
-            System.out.println("Cannot be cloned");
-        }catch(EmptyStackException e){
-            System.out.println("EmptyStack");
-        }catch(NullPointerException e){// this should never happen as GameModel is always initialized
-            System.out.println("GameModel is empty");
+        if(delta == null || delta.isReset()){
+            gameView.update(shown, outcome.undoable, outcome.redoable);
+        } else {
+            gameView.update(shown, delta, outcome.undoable, outcome.redoable);
         }
-        
-        gameView.update(gameModel, canUndo(), canRedo());
+        gameView.updateHistory(outcome.position, outcome.size, outcome.ready);
+    }
+
+    /**
+     * The class <b>Outcome</b> is what the engine hands to the view after an
+     * action: the move to replay, or a copy of the whole model, and the
+     * state of the game and of its history, all read right after the action.
+     * It is not changed once handed over.
+     */
+    private static class Outcome {
+        /**
+         * The move made by the action, or null, and whether it was undone
+         */
+        private MoveDelta delta;
+        private boolean undone;
+        /**
+         * A copy of the model, or null if the move is replayed
+         */
+        private GameModel snapshot;
+        /**
+         * The number of steps played, and whether the game is finished
+         */
+        private int steps;
+        private boolean finished;
+        /**
+         * The state of the history
+         */
+        private boolean ready;
+        private boolean undoable;
+        private boolean redoable;
+        private int position;
+        private int size;
     }
 
 }
@@ -0,0 +1,540 @@
+import java.io.*;
+/**
+ * The class <b>GameEngine</b> holds the logic of the game, without any user
+ * interface: the capture of the initial dot, the flood after each selected
+ * color, the step counting, the end of the game and the undo/redo history.
+ * The <b>HistoryStore</b> records the <b>MoveDelta</b> of each move, not
+ * copies of the model, and can jump to any step of the game.
+ * It can be used as is to play games in a server, a benchmark or a batch
+ * job, or be driven by the <b>GameController</b> of the Swing application.
+ */
+public class GameEngine implements Serializable {
+
+    /**
+     * Reference to the model of the game
+     */
+    private GameModel gameModel;
+    /**
+     * Reference to the history of the game
+     */
+    private HistoryStore history;
+    /**
+     * Reference to the engine computing the captured dots
+     */
+    private transient FloodEngine floodEngine;
+    /**
+     * The stack recording the dots captured by a move, reused by every move
+     */
+    private transient IntStack recording;
+    /**
+     * Reference to the journal recording the actions, if any
+     */
+    private transient MoveJournal journal;
+    /**
+     * True while the history saved before the current moves is being
+     * loaded, and true if a new game was started meanwhile, so that the
+     * loaded history must be dropped
+     */
+    private transient boolean historyLoading;
+    private transient boolean historyDropped;
+
+    /**
+     * Constructor used to start a new game on a board of a given size
+     *
+     * @param size
+     *            the size of the board on which the game will be played
+     */
+    public GameEngine(int size) {
+        this(new GameModel(size), new HistoryStore());
+    }
+
+    /**
+     * Constructor used to start a new game on a board of a given size,
+     * generated from a seed
+     *
+     * @param size
+     *            the size of the board on which the game will be played
+     * @param seed
+     *            the seed used to generate the board
+     */
+    public GameEngine(int size, long seed) {
+        this(new GameModel(size, seed), new HistoryStore());
+    }
+
+    /**
+     * Constructor used to continue a game from a model and its history
+     *
+     * @param model
+     *            the model of the game
+     * @param history
+     *            the history of the game
+     */
+    public GameEngine(GameModel model, HistoryStore history) {
+        this.gameModel = model;
+        this.history = history;
+    }
+
+    /**
+     * Captures the initial dot at location (row, column) and everything of
+     * the same color connected to it.
+     *
+     * @param row
+     *            the row of the initial dot
+     * @param column
+     *            the column of the initial dot
+     * @return the dots captured by the move
+     */
+    public MoveDelta start(int row, int column){
+        if(!gameModel.allDotsNotCaptured()){
+            throw new IllegalStateException("Initial dot already selected");
+        }
+        GameEvent event = GameEvents.move();
+        event.start();
+        history.prepare(gameModel);
+        MoveDelta delta = new MoveDelta(gameModel, getRecording());
+        getFloodEngine().capture(gameModel, row, column, delta);
+        int visited = getFloodEngine().getVisited() + flood(delta);
+        delta.finish(gameModel);
+        history.add(delta);
+        event.finish(gameModel, visited, delta.getNumberCaptured(), 0);
+        if(journal != null){
+            journal.start(row, column);
+            compact();
+        }
+        return delta;
+    }
+
+    /**
+     * Plays a new color: if it is not the currently selected one, the dots
+     * of that color connected to the captured ones are captured and the
+     * number of steps is incremented.
+     *
+     * @param color
+     *            the newly selected color
+     * @return the dots captured by the move, or null if the color is the
+     *         currently selected one
+     */
+    public MoveDelta play(int color){
+        if(gameModel.allDotsNotCaptured()){
+            throw new IllegalStateException("Initial dot not selected");
+        }
+        if(color == gameModel.getCurrentSelectedColor()) {
+            return null;
+        }
+        GameEvent event = GameEvents.move();
+        event.start();
+        history.prepare(gameModel);
+        MoveDelta delta = new MoveDelta(gameModel, getRecording());
+        gameModel.setCurrentSelectedColor(color);
+        int visited = flood(delta);
+        gameModel.step();
+        delta.finish(gameModel);
+        history.add(delta);
+        event.finish(gameModel, visited, delta.getNumberCaptured(), 0);
+        if(journal != null){
+            journal.play(color);
+            compact();
+        }
+        return delta;
+    }
+
+    /**
+     * Resets the game. The history is kept, so the reset can be undone.
+     */
+    public void reset(){
+        reset(null);
+    }
+
+    /**
+     * Resets the game on a given board. The history is kept, so the reset
+     * can be undone.
+     *
+     * @param board
+     *            the new board, or null for a random one
+     */
+    public void reset(Board board){
+        history.prepare(gameModel);
+        history.add(MoveDelta.reset(gameModel, board));
+        journalReset();
+    }
+
+    /**
+     * Resets the game on the board generated from a seed. The history is
+     * kept, so the reset can be undone.
+     *
+     * @param seed
+     *            the seed of the new board
+     */
+    public void reset(long seed){
+        history.prepare(gameModel);
+        history.add(MoveDelta.reset(gameModel, seed));
+        journalReset();
+    }
+
+    /**
+     * Starts a new game, forgetting the history
+     */
+    public void newGame(){
+        newGame(null);
+    }
+
+    /**
+     * Starts a new game on a given board, forgetting the history
+     *
+     * @param board
+     *            the new board, or null for a random one
+     */
+    public void newGame(Board board){
+        if(board == null){
+            gameModel.reset();
+        } else {
+            gameModel.reset(board);
+        }
+        startNewGame();
+    }
+
+    /**
+     * Starts a new game on the board generated from a seed, forgetting the
+     * history
+     *
+     * @param seed
+     *            the seed of the new board
+     */
+    public void newGame(long seed){
+        gameModel.reset(seed);
+        startNewGame();
+    }
+
+    /**
+     * <b>journalReset</b> is a helper method that records a reset in the
+     * journal, as the seed of the new board if it has one
+     */
+    private void journalReset(){
+        if(journal != null){
+            if(gameModel.hasSeed()){
+                journal.reset(gameModel.getSeed());
+            } else {
+                journal.reset(gameModel.getBoard());
+            }
+            compact();
+        }
+    }
+
+    /**
+     * <b>startNewGame</b> is a helper method that forgets the history once
+     * the model is reset for a new game, and records the new game in the
+     * journal, as the seed of the new board if it has one
+     */
+    private void startNewGame(){
+        history.clear();
+        historyDropped = historyLoading;
+        if(journal != null){
+            if(gameModel.hasSeed()){
+                journal.newGame(gameModel.getSeed());
+            } else {
+                journal.newGame(gameModel.getBoard());
+            }
+            compact();
+        }
+    }
+
+    /**
+     * Returns true if the current position was already reached since the
+     * last reset: the same dots are captured and the same color is
+     * selected. The captured dots only grow during a game, so only the
+     * moves played since the last move that captured a dot are looked at,
+     * by undoing them on the Zobrist hash of the model.
+     *
+     * @return true if the position is repeated
+     */
+    public boolean isRepeated(){
+        long hash = gameModel.getHash();
+        long earlier = hash;
+        for(int k = history.getPosition() - 1; k >= 0; k--){
+            MoveDelta delta = history.get(k);
+            if(delta.isReset() || delta.getNumberCaptured() > 0){
+                return false;
+            }
+            earlier = delta.unhash(earlier);
+            if(earlier == hash){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the user can undo and false otherwise.
+     *
+     * @return true if an undo is permitted and false otherwise
+     */
+    public boolean canUndo(){
+        return history.canUndo();
+    }
+
+    /**
+     * Restores the game to its previous state.
+     *
+     * @return the move undone: its dots are no longer captured
+     */
+    public MoveDelta undo(){
+        if(!canUndo()){
+            throw new IllegalStateException("Cannot undo");
+        }
+        int version = gameModel.getVersion();
+        MoveDelta delta = history.undo(gameModel);
+        if(floodEngine != null){
+            floodEngine.replay(gameModel, delta, true, version);
+        }
+        if(journal != null){
+            journal.undo();
+            compact();
+        }
+        return delta;
+    }
+
+    /**
+     * Returns true if the user can redo and false otherwise.
+     *
+     * @return true if an redo is permitted and false otherwise
+     */
+    public boolean canRedo(){
+        return history.canRedo();
+    }
+
+    /**
+     * Restores the game to the state it was in before the last undo.
+     *
+     * @return the move redone
+     */
+    public MoveDelta redo(){
+        if(!canRedo()){
+            throw new IllegalStateException("Cannot redo");
+        }
+        int version = gameModel.getVersion();
+        MoveDelta delta = history.redo(gameModel);
+        if(floodEngine != null){
+            floodEngine.replay(gameModel, delta, false, version);
+        }
+        if(journal != null){
+            journal.redo();
+            compact();
+        }
+        return delta;
+    }
+
+    /**
+     * Brings the game to the state it was in after a given number of moves
+     * of its history, played or undone. Unless a checkpoint is restored,
+     * the flood engine is told about each move undone or redone, so that
+     * the next move does not rebuild it.
+     *
+     * @param step
+     *            the number of moves, between 0 and getHistory().getSize()
+     */
+    public void seek(int step){
+        int from = history.getPosition();
+        int version = gameModel.getVersion();
+        if(!history.seek(gameModel, step) && floodEngine != null){
+            for(int k = from; k < step; k++){
+                MoveDelta delta = history.get(k);
+                floodEngine.replay(gameModel, delta, false, version);
+                version += delta.getNumberCaptured();
+            }
+            for(int k = from - 1; k >= step; k--){
+                MoveDelta delta = history.get(k);
+                floodEngine.replay(gameModel, delta, true, version);
+                version += delta.getNumberCaptured();
+            }
+        }
+        if(journal != null){
+            journal.seek(step);
+            compact();
+        }
+    }
+
+    /**
+     * Returns true iff the game is finished, that is, all the dots are captured.
+     *
+     * @return true if the game is finished, false otherwise
+     */
+    public boolean isFinished(){
+        return gameModel.isFinished();
+    }
+
+    /**
+     * Returns a copy of the current state of the game, which is not changed
+     * by the next moves.
+     *
+     * @return a copy of the model of the game
+     */
+    public GameModel snapshot(){
+        try{
+            return gameModel.clone();
+        }catch(CloneNotSupportedException e){
+            throw new IllegalStateException("Cannot be cloned");
+        }
+    }
+
+    /**
+     * Getter method for the model of the game
+     *
+     * @return the model of the game
+     */
+    public GameModel getModel(){
+        return gameModel;
+    }
+
+    /**
+     * Setter method for the mode of the game
+     *
+     * @param mode
+     *          the new mode, GameModel.MODE_PLANE or GameModel.MODE_TORUS
+     */
+    public void setMode(int mode){
+        gameModel.setMode(mode);
+        if(journal != null){
+            journal.mode(mode);
+            compact();
+        }
+    }
+
+    /**
+     * Setter method for the direction of the game
+     *
+     * @param direction
+     *          the new direction, GameModel.DIRECTION_ORTHOGONAL or
+     *          GameModel.DIRECTION_DIAGONAL
+     */
+    public void setDirection(int direction){
+        gameModel.setDirection(direction);
+        if(journal != null){
+            journal.direction(direction);
+            compact();
+        }
+    }
+
+    /**
+     * Getter method for the history of the game
+     *
+     * @return the history of the game
+     */
+    public HistoryStore getHistory(){
+        return history;
+    }
+
+    /**
+     * Tells the engine that the history of the game is being loaded in the
+     * background. Until restoreHistory is called, the moves played are kept
+     * in a separate history and no checkpoint is written.
+     */
+    public void loadHistory(){
+        historyLoading = true;
+        historyDropped = false;
+    }
+
+    /**
+     * Puts back the history of the game once it has been loaded: the moves
+     * played since loadHistory are appended to it. Does nothing if the
+     * history is not being loaded.
+     *
+     * @param earlier
+     *            the history of the game before loadHistory
+     */
+    public void restoreHistory(HistoryStore earlier){
+        if(!historyLoading){
+            return;
+        }
+        if(!historyDropped){
+            earlier.append(history);
+            history = earlier;
+        }
+        historyLoading = false;
+    }
+
+    /**
+     * Returns true while the history of the game is being loaded
+     *
+     * @return true between loadHistory and restoreHistory
+     */
+    public boolean isHistoryLoading(){
+        return historyLoading;
+    }
+
+    /**
+     * Setter method for the journal recording the actions on the game
+     *
+     * @param journal
+     *            the journal, or null to stop recording
+     */
+    public void setJournal(MoveJournal journal){
+        this.journal = journal;
+    }
+
+    /**
+     * <b>compact</b> is a helper method that writes a new checkpoint when the
+     * journal has become too large
+     */
+    private void compact(){
+        if(!historyLoading && journal.isCheckpointDue()){
+            try{
+                journal.checkpoint(this);
+            }catch(IOException e){
+                System.out.println("Cannot write checkpoint: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * <b>flood</b> is a helper method that floods the model with the flood
+     * engine, recording the flood event
+     *
+     * @return the number of dots visited by the flood
+     */
+    private int flood(MoveDelta delta){
+        GameEvent event = GameEvents.flood();
+        event.start();
+        int captured = getFloodEngine().flood(gameModel, delta);
+        int visited = getFloodEngine().getVisited();
+        event.finish(gameModel, visited, captured, 0);
+        return visited;
+    }
+
+    /**
+     * <b>getRecording</b> is a helper method that returns the stack
+     * recording the dots captured by a move, emptied
+     *
+     * @return the stack
+     */
+    private IntStack getRecording(){
+        if(recording == null){
+            recording = new IntStack();
+        }
+        recording.clear();
+        return recording;
+    }
+
+    /**
+     * <b>getFloodEngine</b> is a helper method that creates the flood engine
+     * the first time it is needed. Huge boards use a FrontierFloodEngine,
+     * which does not need a mask of every color of the whole board, or a
+     * ParallelFloodEngine when there are several processors to flood them
+     * on; the other boards use a BitboardFloodEngine.
+     *
+     * @return the flood engine
+     */
+    private FloodEngine getFloodEngine(){
+        if(floodEngine == null){
+            if(gameModel.getSize() >= Board.TILED_THRESHOLD){
+                if(Runtime.getRuntime().availableProcessors() > 1){
+                    floodEngine = new ParallelFloodEngine();
+                } else {
+                    floodEngine = new FrontierFloodEngine();
+                }
+            } else {
+                floodEngine = new BitboardFloodEngine();
+            }
+        }
+        return floodEngine;
+    }
+}
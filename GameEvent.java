@@ -0,0 +1,222 @@
+import jdk.jfr.*;
+
+/**
+ * The class <b>GameEvent</b> is the base of the JDK Flight Recorder events of
+ * the game, one per kind of operation: a move, a flood, a snapshot of the
+ * board for the history, an update of the view, a save and a load, and the
+ * startup of the game until its first frame and until its history is
+ * loaded. Each
+ * event holds the size, mode and direction of the board, and the number of
+ * dots visited and captured and of bytes written or read, when they apply.
+ *
+ * A session can be recorded with the usual JFR options, for instance
+ *
+ * java -XX:StartFlightRecording=filename=floodit.jfr FloodIt 100
+ *
+ * and the events analysed offline with jfr print --categories FloodIt
+ * floodit.jfr, or in JDK Mission Control. The events are also counted by
+ * <b>Metrics</b> when it is enabled. When neither records anything, an event
+ * costs a few tests.
+ *
+ * An operation is measured as follows, the events being created by
+ * <b>GameEvents</b>:
+ *
+ * GameEvent event = GameEvents.flood();
+ * event.start();
+ * ...
+ * event.finish(model, visited, captured, bytes);
+ */
+@Category("FloodIt")
+@StackTrace(false)
+public abstract class GameEvent extends Event {
+
+    // the fields are protected: the flight recorder ignores the private
+    // fields of the superclass of an event
+
+    @Label("Board Size")
+    @Description("The number of dots per side of the board")
+    protected int size;
+
+    @Label("Mode")
+    @Description("0 for a plane, 1 for a torus")
+    protected int mode;
+
+    @Label("Direction")
+    @Description("0 for orthogonal, 1 for diagonal")
+    protected int direction;
+
+    @Label("Dots Visited")
+    protected long visited;
+
+    @Label("Dots Captured")
+    protected long captured;
+
+    @Label("Bytes")
+    @Description("The number of bytes written or read")
+    @DataAmount
+    protected long bytes;
+
+    /**
+     * The time the operation started, for the metrics
+     */
+    private transient long startTime;
+
+    /**
+     * True for the shared events that record nothing
+     */
+    private transient boolean inactive;
+
+    /**
+     * Starts measuring the operation
+     */
+    public void start(){
+        if(inactive){
+            return;
+        }
+        begin();
+        if(Metrics.ENABLED){
+            startTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Stops measuring the operation, and records it if the flight recorder
+     * or the metrics are enabled
+     *
+     * @param model
+     *            the model of the game, or null if unknown
+     * @param visited
+     *            the number of dots visited
+     * @param captured
+     *            the number of dots captured
+     * @param bytes
+     *            the number of bytes written or read
+     */
+    public void finish(GameModel model, long visited, long captured, long bytes){
+        if(inactive){
+            return;
+        }
+        end();
+        if(shouldCommit()){
+            if(model != null){
+                size = model.getSize();
+                mode = model.getMode();
+                direction = model.getDirection();
+            }
+            this.visited = visited;
+            this.captured = captured;
+            this.bytes = bytes;
+            commit();
+        }
+        if(Metrics.ENABLED){
+            Metrics.record(getName(), System.nanoTime() - startTime, visited, captured, bytes);
+        }
+    }
+
+    /**
+     * Returns the name of the operation, used by the metrics
+     *
+     * @return the name of the operation
+     */
+    protected abstract String getName();
+
+    /**
+     * Marks the event as one that records nothing, for the shared events of
+     * <b>GameEvents</b>
+     *
+     * @return the event
+     */
+    GameEvent deactivate(){
+        inactive = true;
+        return this;
+    }
+
+    /**
+     * A move played, including the flood and the history
+     */
+    @Name("floodit.Move")
+    @Label("Move")
+    public static class Move extends GameEvent {
+        protected String getName(){
+            return "move";
+        }
+    }
+
+    /**
+     * The flood of a move, computed by the FloodEngine
+     */
+    @Name("floodit.Flood")
+    @Label("Flood")
+    public static class Flood extends GameEvent {
+        protected String getName(){
+            return "flood";
+        }
+    }
+
+    /**
+     * A copy of the board kept as a checkpoint by the history
+     */
+    @Name("floodit.Snapshot")
+    @Label("Snapshot")
+    public static class Snapshot extends GameEvent {
+        protected String getName(){
+            return "snapshot";
+        }
+    }
+
+    /**
+     * An update of the view of the board
+     */
+    @Name("floodit.ViewUpdate")
+    @Label("View Update")
+    public static class ViewUpdate extends GameEvent {
+        protected String getName(){
+            return "view-update";
+        }
+    }
+
+    /**
+     * A game saved to a file
+     */
+    @Name("floodit.Save")
+    @Label("Save")
+    public static class Save extends GameEvent {
+        protected String getName(){
+            return "save";
+        }
+    }
+
+    /**
+     * A game, or its board only, read from a file
+     */
+    @Name("floodit.Load")
+    @Label("Load")
+    public static class Load extends GameEvent {
+        protected String getName(){
+            return "load";
+        }
+    }
+
+    /**
+     * The startup of the game, until the first frame of the view is painted
+     */
+    @Name("floodit.FirstFrame")
+    @Label("First Frame")
+    public static class FirstFrame extends GameEvent {
+        protected String getName(){
+            return "first-frame";
+        }
+    }
+
+    /**
+     * The startup of the game, until the history loaded in the background
+     * is given to the engine
+     */
+    @Name("floodit.HistoryLoad")
+    @Label("History Load")
+    public static class HistoryLoad extends GameEvent {
+        protected String getName(){
+            return "history-load";
+        }
+    }
+}
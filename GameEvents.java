@@ -0,0 +1,109 @@
+/**
+ * The class <b>GameEvents</b> creates the <b>GameEvent</b>s measuring the
+ * operations of the game. When the flight recorder does not record a kind
+ * of event and the metrics are disabled, a shared event that records nothing
+ * is returned instead of a new one, so that the operations of the game
+ * allocate nothing more.
+ *
+ * The factory methods are not in GameEvent itself: the flight recorder
+ * instruments the event classes when they are loaded, and fails when an
+ * event class refers to the classes of its own events.
+ */
+
+public class GameEvents {
+
+    /**
+     * The shared events that record nothing, one per kind
+     */
+    private static final GameEvent MOVE = new GameEvent.Move().deactivate();
+    private static final GameEvent FLOOD = new GameEvent.Flood().deactivate();
+    private static final GameEvent SNAPSHOT = new GameEvent.Snapshot().deactivate();
+    private static final GameEvent VIEW_UPDATE = new GameEvent.ViewUpdate().deactivate();
+    private static final GameEvent SAVE = new GameEvent.Save().deactivate();
+    private static final GameEvent LOAD = new GameEvent.Load().deactivate();
+    private static final GameEvent FIRST_FRAME = new GameEvent.FirstFrame().deactivate();
+    private static final GameEvent HISTORY_LOAD = new GameEvent.HistoryLoad().deactivate();
+
+    private GameEvents() {
+    }
+
+    /**
+     * Returns an event measuring a move
+     *
+     * @return the event
+     */
+    public static GameEvent move(){
+        return active(MOVE) ? new GameEvent.Move() : MOVE;
+    }
+
+    /**
+     * Returns an event measuring a flood
+     *
+     * @return the event
+     */
+    public static GameEvent flood(){
+        return active(FLOOD) ? new GameEvent.Flood() : FLOOD;
+    }
+
+    /**
+     * Returns an event measuring a snapshot of the board
+     *
+     * @return the event
+     */
+    public static GameEvent snapshot(){
+        return active(SNAPSHOT) ? new GameEvent.Snapshot() : SNAPSHOT;
+    }
+
+    /**
+     * Returns an event measuring an update of the view
+     *
+     * @return the event
+     */
+    public static GameEvent viewUpdate(){
+        return active(VIEW_UPDATE) ? new GameEvent.ViewUpdate() : VIEW_UPDATE;
+    }
+
+    /**
+     * Returns an event measuring a save
+     *
+     * @return the event
+     */
+    public static GameEvent save(){
+        return active(SAVE) ? new GameEvent.Save() : SAVE;
+    }
+
+    /**
+     * Returns an event measuring a load
+     *
+     * @return the event
+     */
+    public static GameEvent load(){
+        return active(LOAD) ? new GameEvent.Load() : LOAD;
+    }
+
+    /**
+     * Returns an event measuring the startup until the first frame
+     *
+     * @return the event
+     */
+    public static GameEvent firstFrame(){
+        return active(FIRST_FRAME) ? new GameEvent.FirstFrame() : FIRST_FRAME;
+    }
+
+    /**
+     * Returns an event measuring the startup until the history is loaded
+     *
+     * @return the event
+     */
+    public static GameEvent historyLoad(){
+        return active(HISTORY_LOAD) ? new GameEvent.HistoryLoad() : HISTORY_LOAD;
+    }
+
+    /**
+     * <b>active</b> is a helper method that returns true if the events of
+     * the kind of a shared event must be measured
+     */
+    private static boolean active(GameEvent shared){
+        return Metrics.ENABLED || shared.isEnabled();
+    }
+}
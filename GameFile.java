@@ -0,0 +1,484 @@
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The class <b>GameFile</b> saves a game in a compact binary format, and
+ * reads it back. The file contains:
+ *
+ * - a header: the magic number "FLOD", the version of the format, the
+ *   sequence number of the file (used by <b>MoveJournal</b>), the size of
+ *   the board, the selected color, the number of steps, the mode, the
+ *   direction, the flags (1 if the board was generated from a seed) and
+ *   the seed of the board
+ * - for a board generated from a seed, the captured bitmap only, the colors
+ *   being generated again by <b>BoardGenerator</b> when the file is read;
+ *   otherwise the colors of the dots, two per byte, and the captured bitmap,
+ *   as written by <b>Board</b>
+ * - the history, as the list of <b>MoveDelta</b> of the moves, the
+ *   captured dots of each move being gap encoded
+ *
+ * All the numbers are big-endian. Files written by Java serialization
+ * (savedGame.ser of the first version) start with a different magic
+ * number, so isGameFile can be used to tell them apart, and are read by
+ * readSerialized. Files of version 1,
+ * which had no sequence number, and of version 2, which had no seed, can
+ * still be read.
+ *
+ * The board of a huge game (of at least Board.TILED_THRESHOLD dots per side)
+ * that has no seed is not read, but copied to a temporary file mapped in
+ * memory: the dots are read from the copy as they are needed. The game file
+ * itself is never mapped, so the next save can replace it even on systems
+ * that do not replace a mapped file. The copy is deleted once it is no
+ * longer mapped.
+ */
+public class GameFile {
+
+    /**
+     * The magic number at the start of every file, "FLOD"
+     */
+    public static final int MAGIC = 0x464C4F44;
+
+    /**
+     * The version of the format written by this class
+     */
+    public static final int VERSION = 3;
+
+    /**
+     * The size of the header, in bytes, and its size in the files of
+     * versions 1 and 2
+     */
+    private static final int HEADER_SIZE = 48;
+    private static final int HEADER_SIZE_V1 = 28;
+    private static final int HEADER_SIZE_V2 = 36;
+
+    /**
+     * The flag telling that the board was generated from a seed
+     */
+    private static final int SEEDED = 1;
+
+    /**
+     * Writes a game to a file, replacing it if it exists. The game is
+     * written to a temporary file first, which then replaces the file.
+     *
+     * @param engine
+     *            the game to save
+     * @param path
+     *            the file
+     */
+    public static void write(GameEngine engine, Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        write(engine, temporary, 0);
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a game to a file with a sequence number, replacing the file if
+     * it exists. The data is forced to the storage device before returning.
+     * The file is overwritten in place.
+     *
+     * @param engine
+     *            the game to save
+     * @param path
+     *            the file
+     * @param sequence
+     *            the sequence number of the file
+     */
+    public static void write(GameEngine engine, Path path, long sequence) throws IOException {
+        GameEvent event = GameEvents.save();
+        event.start();
+        GameModel model = engine.getModel();
+        HistoryStore history = engine.getHistory();
+        long bytes = HEADER_SIZE + boardByteSize(model.getSize(), model.hasSeed()) + history.byteSize();
+        if(bytes > Integer.MAX_VALUE){
+            throw new IOException("Game too large to be saved: " + bytes + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int)bytes);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(sequence);
+        buffer.putInt(model.getSize());
+        buffer.putInt(model.getCurrentSelectedColor());
+        buffer.putInt(model.getNumberOfSteps());
+        buffer.putInt(model.getMode());
+        buffer.putInt(model.getDirection());
+        buffer.putInt(model.hasSeed() ? SEEDED : 0);
+        buffer.putLong(model.getSeed());
+        if(model.hasSeed()){
+            Board.writeCaptured(model.getBoard(), buffer);
+        } else {
+            model.getBoard().writeTo(buffer);
+        }
+        history.writeTo(buffer);
+        buffer.flip();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+            while(buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        event.finish(model, 0, 0, bytes);
+    }
+
+    /**
+     * Reads a game written by write
+     *
+     * @param path
+     *            the file
+     * @return the game read
+     * @throws IOException
+     *            if the file cannot be read, or is not a valid game file
+     */
+    public static GameEngine read(Path path) throws IOException {
+        GameEvent event = GameEvents.load();
+        event.start();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            GameModel model = readModel(channel, path);
+            GameEngine engine = new GameEngine(model, readHistory(channel, path, model.getSize()));
+            event.finish(model, 0, 0, channel.position());
+            return engine;
+        }
+    }
+
+    /**
+     * Reads only the current state of a game written by write, without its
+     * history. The time needed does not depend on the length of the history.
+     *
+     * @param path
+     *            the file
+     * @return the model of the game
+     * @throws IOException
+     *            if the file cannot be read, or is not a valid game file
+     */
+    public static GameModel readModel(Path path) throws IOException {
+        GameEvent event = GameEvents.load();
+        event.start();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            GameModel model = readModel(channel, path);
+            event.finish(model, 0, 0, channel.position());
+            return model;
+        }
+    }
+
+    /**
+     * Reads only the history of a game written by write
+     *
+     * @param path
+     *            the file
+     * @return the history of the game
+     * @throws IOException
+     *            if the file cannot be read, or is not a valid game file
+     */
+    public static HistoryStore readHistory(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            ByteBuffer header = readHeader(channel, path);
+            int size = header.getInt();
+            header.position(header.position() + 4*4);
+            boolean seeded = header.hasRemaining() && (header.getInt() & SEEDED) != 0;
+            GameEvent event = GameEvents.load();
+            event.start();
+            long position = channel.position() + boardByteSize(size, seeded);
+            channel.position(position);
+            HistoryStore history = readHistory(channel, path, size);
+            event.finish(null, 0, 0, channel.position() - position);
+            return history;
+        }
+    }
+
+    /**
+     * <b>readHeader</b> is a helper method that reads and checks the header,
+     * leaving the channel after it and the buffer at the size of the board,
+     * with its limit at the end of the header
+     */
+    private static ByteBuffer readHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer buffer = readFully(channel, Math.min(HEADER_SIZE, channel.size()), path);
+        int end;
+        try{
+            if(buffer.remaining() < HEADER_SIZE_V1 || buffer.getInt() != MAGIC){
+                throw new IOException("Not a game file: " + path);
+            }
+            int version = buffer.getInt();
+            if(version == VERSION){
+                end = HEADER_SIZE;
+            } else if(version == 2){
+                end = HEADER_SIZE_V2;
+            } else if(version == 1){
+                end = HEADER_SIZE_V1;
+            } else {
+                throw new IOException("Unsupported game file version " + version);
+            }
+            if(version > 1){
+                buffer.getLong();
+            }
+            // the header goes on with five ints: size, color, steps, mode,
+            // direction, then with the flags and the seed since version 3
+            buffer.limit(end);
+        }catch(BufferUnderflowException | IllegalArgumentException e){
+            throw new IOException("Corrupted game file: " + path, e);
+        }
+        channel.position(end);
+        return buffer;
+    }
+
+    /**
+     * <b>readModel</b> is a helper method that reads the header and the
+     * board, leaving the channel at the history
+     */
+    private static GameModel readModel(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = readHeader(channel, path);
+        int size = header.getInt();
+        if(size < 1 || (long)size*size > Integer.MAX_VALUE){
+            throw new IOException("Invalid board size " + size);
+        }
+        int color = header.getInt();
+        int steps = header.getInt();
+        int mode = header.getInt();
+        int direction = header.getInt();
+        boolean seeded = false;
+        long seed = 0;
+        if(header.hasRemaining()){
+            seeded = (header.getInt() & SEEDED) != 0;
+            seed = header.getLong();
+        }
+        Board board;
+        if(seeded){
+            board = BoardGenerator.generate(size, seed);
+            try{
+                Board.readCaptured(board, readFully(channel, Board.capturedByteSize(size), path));
+            }catch(IllegalArgumentException e){
+                throw new IOException("Corrupted game file: " + path, e);
+            }
+        } else if(size >= Board.TILED_THRESHOLD){
+            long position = channel.position();
+            if(channel.size() - position < Board.byteSize(size)){
+                throw new IOException("Corrupted game file: " + path, new EOFException());
+            }
+            board = TiledBoard.map(mapCopy(channel, position, Board.byteSize(size)), size);
+            channel.position(position + Board.byteSize(size));
+        } else {
+            board = Board.readFrom(readFully(channel, Board.byteSize(size), path), size);
+        }
+        GameModel model = new GameModel(board);
+        if(seeded){
+            model.setBoard(board, seed);
+        }
+        model.setCurrentSelectedColor(color);
+        model.setNumberOfSteps(steps);
+        model.setMode(mode);
+        model.setDirection(direction);
+        return model;
+    }
+
+    /**
+     * <b>boardByteSize</b> is a helper method that returns the number of
+     * bytes of the board in a file: the captured bitmap only for a board
+     * generated from a seed
+     */
+    private static int boardByteSize(int size, boolean seeded){
+        return seeded ? Board.capturedByteSize(size) : Board.byteSize(size);
+    }
+
+    /**
+     * <b>readHistory</b> is a helper method that reads the history, from the
+     * position of the channel to the end of the file
+     */
+    private static HistoryStore readHistory(FileChannel channel, Path path, int size) throws IOException {
+        ByteBuffer buffer = readFully(channel, channel.size() - channel.position(), path);
+        try{
+            return HistoryStore.readFrom(buffer, size);
+        }catch(BufferUnderflowException | IllegalArgumentException e){
+            throw new IOException("Corrupted game file: " + path, e);
+        }
+    }
+
+    /**
+     * <b>mapCopy</b> is a helper method that copies bytes of a game file to
+     * a temporary file, and maps the copy in memory
+     */
+    private static ByteBuffer mapCopy(FileChannel channel, long position, int bytes) throws IOException {
+        Path copy = Files.createTempFile("floodit-board", ".bin");
+        try(FileChannel target = FileChannel.open(copy, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)){
+            long copied = 0;
+            while(copied < bytes){
+                copied += channel.transferTo(position + copied, bytes - copied, target);
+            }
+            return target.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+        }
+    }
+
+    /**
+     * <b>readFully</b> is a helper method that reads a number of bytes from
+     * the position of the channel
+     */
+    private static ByteBuffer readFully(FileChannel channel, long bytes, Path path) throws IOException {
+        if(bytes < 0 || bytes > Integer.MAX_VALUE){
+            throw new IOException("Corrupted game file: " + path);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int)bytes);
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer) < 0){
+                throw new IOException("Corrupted game file: " + path, new EOFException());
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads the sequence number of a game file
+     *
+     * @param path
+     *            the file
+     * @return the sequence number, 0 for a file of version 1, or -1 if the
+     *         file does not exist or is not a game file
+     */
+    public static long readSequence(Path path) throws IOException {
+        if(!Files.exists(path)){
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            while(buffer.hasRemaining()){
+                if(channel.read(buffer) < 0){
+                    return -1;
+                }
+            }
+        }
+        buffer.flip();
+        if(buffer.getInt() != MAGIC){
+            return -1;
+        }
+        return buffer.getInt() == 1 ? 0 : buffer.getLong();
+    }
+
+    /**
+     * Returns true if the file starts with the magic number of this format
+     *
+     * @param path
+     *            the file
+     * @return true for a file written by write, false otherwise
+     */
+    public static boolean isGameFile(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            while(buffer.hasRemaining()){
+                if(channel.read(buffer) < 0){
+                    return false;
+                }
+            }
+        }
+        buffer.flip();
+        return buffer.getInt() == MAGIC;
+    }
+
+    /**
+     * Reads a game saved with Java serialization by the first version of
+     * the game (savedGame.ser): the model, then the stacks of the models
+     * to undo and to redo. Each model of the stacks becomes a
+     * <b>MoveDelta</b> of the history: the dots captured since the model
+     * before it, or a reset if the colors changed or dots were released.
+     *
+     * @param path
+     *            the file
+     * @return the game read, at the position of the saved model in its
+     *         history
+     * @throws IOException
+     *            if the file cannot be read, or is not a saved game
+     */
+    @SuppressWarnings("unchecked")
+    public static GameEngine readSerialized(Path path) throws IOException {
+        GameEvent event = GameEvents.load();
+        event.start();
+        java.util.ArrayList<GameModel> states = new java.util.ArrayList<GameModel>();
+        int position;
+        try(ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path)))){
+            GameModel current = (GameModel) in.readObject();
+            Stack<GameModel> undo = (Stack<GameModel>) in.readObject();
+            Stack<GameModel> redo = (Stack<GameModel>) in.readObject();
+            while(!undo.isEmpty()){
+                states.add(undo.pop());
+            }
+            java.util.Collections.reverse(states);
+            position = states.size();
+            states.add(current);
+            while(!redo.isEmpty()){
+                states.add(redo.pop());
+            }
+        }catch(ClassNotFoundException | ClassCastException e){
+            throw new IOException("Not a saved game: " + path, e);
+        }
+        GameModel model = states.get(0);
+        HistoryStore history = new HistoryStore();
+        for(int k = 1; k < states.size(); k++){
+            GameModel next = states.get(k);
+            if(next.getSize() != model.getSize()){
+                throw new IOException("Corrupted saved game: " + path);
+            }
+            history.prepare(model);
+            history.add(legacyMove(model, next));
+        }
+        while(history.getPosition() > position){
+            history.undo(model);
+        }
+        event.finish(model, 0, 0, Files.size(path));
+        return new GameEngine(model, history);
+    }
+
+    /**
+     * <b>legacyMove</b> is a helper method that brings a model to the state
+     * of the next model of a saved history, and returns the move doing it
+     */
+    private static MoveDelta legacyMove(GameModel model, GameModel next){
+        Board from = model.getBoard();
+        Board to = next.getBoard();
+        int cells = model.getSize()*model.getSize();
+        boolean captures = true;
+        for(int cell = 0; cell < cells && captures; cell++){
+            captures = from.getColor(cell) == to.getColor(cell) && (!from.isCaptured(cell) || to.isCaptured(cell));
+        }
+        MoveDelta delta;
+        if(captures){
+            delta = new MoveDelta(model);
+            for(int cell = 0; cell < cells; cell++){
+                if(to.isCaptured(cell) && !from.isCaptured(cell)){
+                    model.capture(cell);
+                    delta.add(cell);
+                }
+            }
+        } else {
+            delta = MoveDelta.reset(model, to);
+        }
+        model.setCurrentSelectedColor(next.getCurrentSelectedColor());
+        model.setNumberOfSteps(next.getNumberOfSteps());
+        model.setMode(next.getMode());
+        model.setDirection(next.getDirection());
+        delta.finish(model);
+        return delta;
+    }
+
+    /**
+     * Keeps a saved game that cannot be read out of the way, so that the
+     * game saved next does not replace it: it is moved or copied to a file
+     * with the suffix ".unreadable-" followed by the current time in
+     * milliseconds.
+     *
+     * @param path
+     *            the file
+     * @param copy
+     *            true to copy the file, false to move it
+     * @return the file the game is kept in
+     * @throws IOException
+     *            if the file cannot be moved or copied
+     */
+    public static Path setAside(Path path, boolean copy) throws IOException {
+        Path aside = path.resolveSibling(path.getFileName() + ".unreadable-" + System.currentTimeMillis());
+        return copy ? Files.copy(path, aside) : Files.move(path, aside);
+    }
+}
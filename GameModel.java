@@ -1,4 +1,5 @@
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.*;
 /**
  * The class <b>GameModel</b> holds the model, the state of the systems. 
@@ -17,6 +18,29 @@ import java.io.*;
  */
 public class GameModel implements Cloneable, Serializable{
 
+    /**
+     * The version of the serialized form, kept from the first version of
+     * the class so that its saved games can still be read
+     */
+    private static final long serialVersionUID = -6890173028971157238L;
+
+    /**
+     * The serialized fields. The board is declared as an Object: it is a
+     * Board, but it was a DotInfo[][] in the first version of the class,
+     * and both are read by readObject.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("currentSelectedColor", int.class),
+        new ObjectStreamField("sizeOfGame", int.class),
+        new ObjectStreamField("model", Object.class),
+        new ObjectStreamField("numberOfSteps", int.class),
+        new ObjectStreamField("numberCaptured", int.class),
+        new ObjectStreamField("mode", int.class),
+        new ObjectStreamField("direction", int.class),
+        new ObjectStreamField("generator", Random.class),
+        new ObjectStreamField("seed", long.class),
+        new ObjectStreamField("seeded", boolean.class)
+    };
 
     /**
      * predefined values to capture the color of a DotInfo
@@ -29,6 +53,14 @@ public class GameModel implements Cloneable, Serializable{
     public static final int COLOR_5           = 5;
     public static final int NUMBER_OF_COLORS  = 6;
 
+    /**
+     * predefined values for the mode and the direction of the game
+     */
+    public static final int MODE_PLANE           = 0;
+    public static final int MODE_TORUS           = 1;
+    public static final int DIRECTION_ORTHOGONAL = 0;
+    public static final int DIRECTION_DIAGONAL   = 1;
+
     /**
      * The current selection color
      */
@@ -40,9 +72,9 @@ public class GameModel implements Cloneable, Serializable{
     private  int sizeOfGame;
  
     /**
-     * A 2 dimentionnal array of sizeOfGame*sizeOfGame recording the state of each dot
+     * The board of sizeOfGame*sizeOfGame recording the state of each dot
      */
-	private DotInfo[][] model;
+	private Board model;
 
 
    /**
@@ -65,11 +97,50 @@ public class GameModel implements Cloneable, Serializable{
      */
     private int direction;
 
+    /**
+     * The number of changes made to the captured dots or to the board. The
+     * flood engines use it to detect changes made behind their back.
+     */
+    private transient int version;
+
+    /**
+     * The XOR of the Zobrist keys of the captured dots, updated by each
+     * capture and release, and recomputed when the board is replaced
+     */
+    private transient long capturedHash;
+
+    /**
+     * The graph of the regions of the board, for the current mode and
+     * direction. It is recomputed when needed.
+     */
+    private transient RegionGraph regionGraph;
+
+    /**
+     * The topology of the board, for the current mode and direction. It is
+     * recomputed when needed.
+     */
+    private transient Topology topology;
+
+    /**
+     * The topologies last created for each mode and direction, shared by
+     * the models of the same size, even when they are played by different
+     * threads, as the sessions of GameServer
+     */
+    private static final ConcurrentHashMap<Integer, Topology> topologies = new ConcurrentHashMap<Integer, Topology>();
+
    /**
-     * Random generator
+     * Random generator, drawing the seed of each new board
      */
 	private Random generator;
 
+    /**
+     * The seed the board was generated from by <b>BoardGenerator</b>, if
+     * seeded is true. A board read from a file of an older version, or
+     * given by the caller, has no seed.
+     */
+    private long seed;
+    private boolean seeded;
+
     /**
      * Constructor to initialize the model to a given size of board.
      * 
@@ -82,24 +153,79 @@ public class GameModel implements Cloneable, Serializable{
         reset();
     }
 
+    /**
+     * Constructor to initialize the model to a given size of board, with a
+     * seeded random generator: the same size and seed always produce the
+     * same boards. The first board is the board of that seed, the next ones
+     * are drawn from a random generator with that seed.
+     * 
+     * @param size
+     *            the size of the board
+     * @param seed
+     *            the seed of the first board and of the random generator
+     */
+    public GameModel(int size, long seed) {
+        generator = new Random(seed);
+        sizeOfGame = size;
+        reset(seed);
+    }
+
+    /**
+     * Constructor to initialize the model from an existing board, for
+     * instance one read from a saved game. The selected color, number of
+     * steps, mode and direction are set to their initial values.
+     *
+     * @param board
+     *            the board of the game
+     */
+    public GameModel(Board board) {
+        generator = new Random();
+        sizeOfGame = board.getSize();
+        setBoard(board);
+    }
+
 
     /**
      * Resets the model to (re)start a game. The previous game (if there is one)
-     * is cleared up . 
+     * is cleared up . The new board is generated from a seed drawn from the
+     * random generator.
      */
     public void reset(){
+        reset(generator.nextLong());
+    }
 
-    	model = new DotInfo[sizeOfGame][sizeOfGame];
-
-    	for(int i = 0; i < sizeOfGame; i++){
-		   	for(int j = 0; j < sizeOfGame; j++){
-    			model[i][j] = new DotInfo(i,j,generator.nextInt(NUMBER_OF_COLORS));
-    		}
-    	}
+    /**
+     * Resets the model to (re)start a game on the board generated from a
+     * given seed by <b>BoardGenerator</b>
+     *
+     * @param seed
+     *            the seed of the new board
+     */
+    public void reset(long seed){
+        reset(BoardGenerator.generate(sizeOfGame, seed));
+        this.seed = seed;
+        seeded = true;
+    }
 
+    /**
+     * Resets the model to (re)start a game on a given board, for instance
+     * one recorded in a journal.
+     *
+     * @param board
+     *            the new board, of the same size, with no captured dot
+     */
+    public void reset(Board board){
+    	model = board;
+        seeded = false;
+        if(mode != 0 || direction != 0){
+            topology = null;
+        }
     	mode = direction = 0;    
-        numberCaptured = 0;
+        numberCaptured = board.countCaptured();
+        capturedHash = numberCaptured == 0 ? 0L : Zobrist.hashCaptured(board);
     	numberOfSteps = 0;
+        version++;
+        regionGraph = null;
     }
 
 
@@ -125,7 +251,7 @@ public class GameModel implements Cloneable, Serializable{
         if(isCaptured(i, j)) {
             return currentSelectedColor;
         } else {
-    	   return model[i][j].getColor();
+    	   return model.getColor(model.cell(i, j));
         }
     }
 
@@ -139,7 +265,7 @@ public class GameModel implements Cloneable, Serializable{
      * @return the status of the dot at location (i,j)
      */   
     public boolean isCaptured(int i, int j){
-        return model[i][j].isCaptured();
+        return model.isCaptured(model.cell(i, j));
     }
 
     /**
@@ -151,9 +277,67 @@ public class GameModel implements Cloneable, Serializable{
      *            the y coordinate of the dot
      */   
     public void capture(int i, int j){
-        currentSelectedColor = model[i][j].getColor();
- 		model[i][j].setCaptured(true);
+        capture(model.cell(i, j));
+    }
+
+    /**
+     * Sets the status of the dot with a given cell id to captured
+     * 
+     * @param cell
+     *            the cell id of the dot, as computed by the board
+     */   
+    public void capture(int cell){
+        currentSelectedColor = model.getColor(cell);
+ 		model.setCaptured(cell, true);
+        capturedHash ^= Zobrist.cellKey(cell);
         numberCaptured++;
+        version++;
+    }
+
+    /**
+     * Sets the status of the dot with a given cell id back to not captured.
+     * Used to undo a move.
+     * 
+     * @param cell
+     *            the cell id of the dot, as computed by the board
+     */   
+    public void release(int cell){
+ 		model.setCaptured(cell, false);
+        capturedHash ^= Zobrist.cellKey(cell);
+        numberCaptured--;
+        version++;
+    }
+
+    /**
+     * Getter method for the number of changes made to the captured dots or
+     * to the board since the model was created
+     * 
+     * @return the version of the model
+     */   
+    public int getVersion(){
+        return version;
+    }
+
+    /**
+     * Returns the Zobrist hash of the state of the game: the captured dots
+     * and the selected color. Two states with the same hash are the same
+     * position, except for a collision, which is very unlikely. The hash is
+     * kept up to date as dots are captured and released, so this costs
+     * O(1).
+     *
+     * @return the 64 bit hash of the state
+     */
+    public long getHash(){
+        return capturedHash ^ Zobrist.colorKey(currentSelectedColor);
+    }
+
+    /**
+     * Getter method for the number of captured dots
+     * 
+     * @return the number of captured dots
+     */   
+    public int getNumberCaptured(){
+        return numberCaptured;
     }
 
     /**
@@ -211,6 +395,9 @@ public class GameModel implements Cloneable, Serializable{
      *          the new value for mode
      */   
     public void setMode(int newMode){
+        if(newMode != mode){
+            topology = null;
+        }
         mode = newMode;
     }
 
@@ -230,33 +417,140 @@ public class GameModel implements Cloneable, Serializable{
      *          the new value for direction
      */   
     public void setDirection(int newDirection){
+        if(newDirection != direction){
+            topology = null;
+        }
         direction = newDirection;
     }
 
 
     /**
-     * Getter method for the model's dotInfo reference
-     * at location (i,j)
+     * Getter method for a DotInfo describing the dot at location (i,j).
+     * The dots are no longer stored as DotInfo instances, so the
+     * returned DotInfo is a new copy: changing it does not change the model.
      *
       * @param i
      *            the x coordinate of the dot
      * @param j
      *            the y coordinate of the dot
      *
-     * @return model[i][j]
+     * @return a DotInfo for the dot at location (i,j)
      */   
     public DotInfo get(int i, int j) {
-        return model[i][j];
+        int cell = model.cell(i, j);
+        DotInfo dotInfo = new DotInfo(i, j, model.getColor(cell));
+        dotInfo.setCaptured(model.isCaptured(cell));
+        return dotInfo;
     }
 
      /**
-     * Setter method for the model's 2D array of DotInfo references.
+     * Setter method for the model's dots, from a 2D array of DotInfo references.
+     * The DotInfo instances are copied into a new board.
      *
      * @param newDotInfo
      *            the new 2D array of DotInfo references to be stored
      */   
     public void set(DotInfo[][] newDotInfo){
-        model = newDotInfo;
+        model = Board.create(sizeOfGame);
+        for(int i = 0; i < sizeOfGame; i++){
+            for(int j = 0; j < sizeOfGame; j++){
+                int cell = model.cell(i, j);
+                model.setColor(cell, newDotInfo[i][j].getColor());
+                model.setCaptured(cell, newDotInfo[i][j].isCaptured());
+            }
+        }
+        capturedHash = Zobrist.hashCaptured(model);
+        version++;
+        regionGraph = null;
+        seeded = false;
+    }
+
+    /**
+     * Getter method for the graph of the regions of the board. The regions
+     * are labelled again if the mode or the direction changed.
+     *
+     * @return the graph of the regions for the current mode and direction
+     */   
+    public RegionGraph getRegionGraph() {
+        if(regionGraph == null || !regionGraph.matches(this)){
+            regionGraph = new RegionGraph(this);
+        }
+        return regionGraph;
+    }
+
+    /**
+     * Getter method for the topology of the board, telling which dots are
+     * next to each other. It is computed again after a change of mode or
+     * direction, unless another model of the same size already did.
+     *
+     * @return the topology for the current mode and direction
+     */   
+    public Topology getTopology() {
+        if(topology == null){
+            int cells = sizeOfGame*sizeOfGame;
+            topology = topologies.compute(2*mode + direction, (index, last) ->
+                last != null && last.getNumberOfCells() == cells ? last : Topology.create(sizeOfGame, mode, direction));
+        }
+        return topology;
+    }
+
+    /**
+     * Getter method for the board storing the dots
+     *
+     * @return the board
+     */   
+    public Board getBoard() {
+        return model;
+    }
+
+    /**
+     * Setter method for the board storing the dots. The number of
+     * captured dots is taken from the board. Used to undo a reset.
+     *
+     * @param board
+     *            the new board, of the same size
+     */   
+    public void setBoard(Board board) {
+        model = board;
+        numberCaptured = board.countCaptured();
+        capturedHash = numberCaptured == 0 ? 0L : Zobrist.hashCaptured(board);
+        version++;
+        regionGraph = null;
+        seeded = false;
+    }
+
+    /**
+     * Setter method for the board storing the dots, when it was generated
+     * from a seed. Used to undo a reset, or to read a saved game.
+     *
+     * @param board
+     *            the new board, of the same size, generated from seed
+     * @param seed
+     *            the seed of the board
+     */
+    public void setBoard(Board board, long seed) {
+        setBoard(board);
+        this.seed = seed;
+        seeded = true;
+    }
+
+    /**
+     * Returns true if the board was generated from a seed, which then
+     * describes its colors
+     *
+     * @return true if getSeed can be used
+     */
+    public boolean hasSeed() {
+        return seeded;
+    }
+
+    /**
+     * Getter method for the seed the board was generated from
+     *
+     * @return the seed of the board, if hasSeed returns true
+     */
+    public long getSeed() {
+        return seed;
     }
 
 
@@ -267,6 +561,16 @@ public class GameModel implements Cloneable, Serializable{
      public void step(){
         numberOfSteps++;
     }
+
+    /**
+     * Setter method for the number of steps. Used to undo a move.
+     * 
+     * @param steps
+     *            the new number of steps
+     */   
+    public void setNumberOfSteps(int steps){
+        numberOfSteps = steps;
+    }
  
    /**
      * The metod <b>isFinished</b> returns true iff the game is finished, that
@@ -286,17 +590,65 @@ public class GameModel implements Cloneable, Serializable{
     public GameModel clone() throws CloneNotSupportedException{
         GameModel copy;
         copy = (GameModel) super.clone();
-        DotInfo[][] newDotInfo = new DotInfo[sizeOfGame][sizeOfGame];
-        for(int i = 0; i < sizeOfGame; i++){
-            for(int j = 0; j < sizeOfGame; j++){
-                newDotInfo[i][j] = model[i][j].clone();
-            }
-        }
-        copy.set(newDotInfo);
+        copy.model = model.clone();
         return copy;
     }
 
 
+    /**
+     * <b>writeObject</b> is a helper method that writes the serialized
+     * fields of the model
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("currentSelectedColor", currentSelectedColor);
+        fields.put("sizeOfGame", sizeOfGame);
+        fields.put("model", model);
+        fields.put("numberOfSteps", numberOfSteps);
+        fields.put("numberCaptured", numberCaptured);
+        fields.put("mode", mode);
+        fields.put("direction", direction);
+        fields.put("generator", generator);
+        fields.put("seed", seed);
+        fields.put("seeded", seeded);
+        out.writeFields();
+    }
+
+    /**
+     * <b>readObject</b> is a helper method that reads the serialized fields
+     * of the model, converting the DotInfo[][] of the first version of the
+     * class into a Board, and computes the hash of the captured dots again
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        currentSelectedColor = fields.get("currentSelectedColor", 0);
+        sizeOfGame = fields.get("sizeOfGame", 0);
+        numberOfSteps = fields.get("numberOfSteps", 0);
+        mode = fields.get("mode", MODE_PLANE);
+        direction = fields.get("direction", DIRECTION_ORTHOGONAL);
+        generator = (Random) fields.get("generator", null);
+        if(generator == null){
+            generator = new Random();
+        }
+        seed = fields.get("seed", 0L);
+        seeded = fields.get("seeded", false);
+        Object board = fields.get("model", null);
+        if(board instanceof DotInfo[][]){
+            DotInfo[][] dots = (DotInfo[][]) board;
+            if(dots.length != sizeOfGame){
+                throw new InvalidObjectException("Invalid board of " + dots.length + " rows");
+            }
+            set(dots);
+            seeded = false;
+        } else if(board instanceof Board && ((Board) board).getSize() == sizeOfGame){
+            model = (Board) board;
+        } else {
+            throw new InvalidObjectException("Invalid board");
+        }
+        numberCaptured = model.countCaptured();
+        capturedHash = Zobrist.hashCaptured(model);
+    }
+
    /**
      * Builds a String representation of the model
      *
@@ -0,0 +1,382 @@
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class <b>GameServer</b> hosts many games at once, without any user
+ * interface, for bots and for web front-ends behind a local proxy. It
+ * accepts connections on a port of the loopback interface only, and each
+ * connection is a session playing one game at a time on its own
+ * <b>GameEngine</b>, so the sessions do not share any mutable state.
+ *
+ * Each session runs on its own thread, reading requests and writing
+ * responses with blocking I/O. On a JVM with virtual threads (Java 21 or
+ * later) the sessions run on virtual threads, found by reflection since
+ * the game is built for Java 17, so tens of thousands of sessions are
+ * cheap; otherwise they run on platform threads with a small stack.
+ *
+ * The protocol is binary, big-endian as in DataOutputStream. A request is
+ * an opcode byte followed by its arguments:
+ *
+ * NEW_GAME   int size, long seed, byte mode, byte direction
+ * START      int row, int column        (selects the initial dot)
+ * PLAY       byte color
+ * UNDO, REDO, SNAPSHOT                   (no argument)
+ *
+ * A response starts with a status byte. OK is followed by:
+ *
+ * - for START, PLAY, UNDO and REDO, the state delta: int steps, byte
+ *   selected color, byte finished (0 or 1), byte CAPTURED or RELEASED,
+ *   int n, and the n cell ids (row*size + column) of the dots captured or
+ *   released by the move. A PLAY of the selected color changes nothing,
+ *   and its delta has no dot.
+ * - for NEW_GAME and SNAPSHOT, the whole state: int size, byte mode, byte
+ *   direction, int steps, byte selected color, byte finished, and the board
+ *   as written by Board.writeTo: the colors of the dots two per byte (low
+ *   nibble first), then the captured dots as longs of 64 dots, as written
+ *   by Board.writeCaptured
+ *
+ * ERROR is followed by a message written with writeUTF, and the session
+ * goes on. A session ends when the client closes the connection, or sends
+ * an unknown opcode. The options are given as key=value pairs, for
+ * instance:
+ *
+ * java GameServer port=7777 size=14 maxSize=200 threads=virtual
+ */
+public class GameServer {
+
+    /**
+     * The opcodes of the requests
+     */
+    public static final int NEW_GAME = 1;
+    public static final int START    = 2;
+    public static final int PLAY     = 3;
+    public static final int UNDO     = 4;
+    public static final int REDO     = 5;
+    public static final int SNAPSHOT = 6;
+
+    /**
+     * The status of the responses
+     */
+    public static final int OK    = 0;
+    public static final int ERROR = 1;
+
+    /**
+     * The kinds of state deltas
+     */
+    public static final int CAPTURED = 0;
+    public static final int RELEASED = 1;
+
+    /**
+     * The size of the buffers of a session, enough for any request and for
+     * the delta of a usual move
+     */
+    private static final int BUFFER = 512;
+
+    /**
+     * The stack size of the platform threads running the sessions
+     */
+    private static final long STACK = 256 * 1024;
+
+    /**
+     * The options of the server, with their default values
+     */
+    private int port = 7777;
+    private int size = 14;
+    private int maxSize = 200;
+    private String threads = "virtual";
+
+    /**
+     * The socket accepting the connections, and the executor running the
+     * sessions
+     */
+    private ServerSocket server;
+    private ExecutorService sessions;
+
+    /**
+     * The number of sessions currently open
+     */
+    private final AtomicInteger open = new AtomicInteger();
+
+    /**
+     * Constructor parsing the options of the server
+     *
+     * @param args
+     *            the options, as key=value pairs
+     */
+    public GameServer(String[] args) {
+        for(String arg : args){
+            int index = arg.indexOf('=');
+            if(index < 0){
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            String key = arg.substring(0, index);
+            String value = arg.substring(index + 1);
+            if(key.equals("port")){
+                port = Integer.parseInt(value);
+            } else if(key.equals("size")){
+                size = Integer.parseInt(value);
+            } else if(key.equals("maxSize")){
+                maxSize = Integer.parseInt(value);
+            } else if(key.equals("threads")){
+                if(!value.equals("virtual") && !value.equals("platform")){
+                    throw new IllegalArgumentException("Unknown threads: " + value);
+                }
+                threads = value;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + key);
+            }
+        }
+        if(size < 1 || size > maxSize){
+            throw new IllegalArgumentException("Invalid size " + size);
+        }
+    }
+
+    /**
+     * Opens the port of the server. It is the port given in the options, or
+     * a free port if that one is 0.
+     *
+     * @return the port of the server
+     */
+    public int open() throws IOException {
+        server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        sessions = createExecutor();
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed, each one starting a
+     * session
+     */
+    public void run() throws IOException {
+        try{
+            while(!server.isClosed()){
+                Socket socket;
+                try{
+                    socket = server.accept();
+                }catch(SocketException e){
+                    if(server.isClosed()){
+                        break;
+                    }
+                    throw e;
+                }
+                socket.setTcpNoDelay(true);
+                sessions.execute(() -> serve(socket));
+            }
+        } finally {
+            sessions.shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting connections. The open sessions go on until their
+     * clients close them.
+     */
+    public void close() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Getter method for the number of sessions currently open
+     *
+     * @return the number of open sessions
+     */
+    public int getOpenSessions(){
+        return open.get();
+    }
+
+    /**
+     * <b>serve</b> is a helper method that runs a session: it answers the
+     * requests of a client until the connection is closed
+     *
+     * @param socket the connection to the client
+     */
+    private void serve(Socket socket) {
+        open.incrementAndGet();
+        try(Socket s = socket;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), BUFFER));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), BUFFER))){
+            GameEngine engine = new GameEngine(size);
+            for(int opcode = in.read(); opcode >= 0; opcode = in.read()){
+                engine = answer(opcode, engine, in, out);
+                if(engine == null){
+                    break;
+                }
+                out.flush();
+            }
+        }catch(IOException e){
+            // the client went away: the session is over
+        } finally {
+            open.decrementAndGet();
+        }
+    }
+
+    /**
+     * <b>answer</b> is a helper method that reads the arguments of a
+     * request, plays it on the engine of the session and writes the
+     * response
+     *
+     * @param opcode the opcode of the request
+     * @param engine the engine of the session
+     * @param in the stream of the requests
+     * @param out the stream of the responses
+     * @return the engine of the session, a new one after a NEW_GAME of
+     *         another size, or null if the opcode is unknown
+     */
+    private GameEngine answer(int opcode, GameEngine engine, DataInputStream in, DataOutputStream out) throws IOException {
+        try{
+            switch(opcode){
+            case NEW_GAME: {
+                int newSize = in.readInt();
+                long seed = in.readLong();
+                int mode = in.readByte();
+                int direction = in.readByte();
+                if(newSize < 1 || newSize > maxSize){
+                    throw new IllegalArgumentException("Invalid size " + newSize);
+                }
+                if(mode != GameModel.MODE_PLANE && mode != GameModel.MODE_TORUS){
+                    throw new IllegalArgumentException("Invalid mode " + mode);
+                }
+                if(direction != GameModel.DIRECTION_ORTHOGONAL && direction != GameModel.DIRECTION_DIAGONAL){
+                    throw new IllegalArgumentException("Invalid direction " + direction);
+                }
+                if(newSize == engine.getModel().getSize()){
+                    engine.newGame(seed);
+                } else {
+                    engine = new GameEngine(newSize, seed);
+                }
+                engine.setMode(mode);
+                engine.setDirection(direction);
+                out.writeByte(OK);
+                writeState(engine.getModel(), out);
+                return engine;
+            }
+            case START: {
+                int row = in.readInt();
+                int column = in.readInt();
+                int boardSize = engine.getModel().getSize();
+                if(row < 0 || row >= boardSize || column < 0 || column >= boardSize){
+                    throw new IllegalArgumentException("Invalid dot " + row + "," + column);
+                }
+                writeDelta(engine.getModel(), engine.start(row, column), CAPTURED, out);
+                return engine;
+            }
+            case PLAY: {
+                int color = in.readByte();
+                if(color < 0 || color >= GameModel.NUMBER_OF_COLORS){
+                    throw new IllegalArgumentException("Invalid color " + color);
+                }
+                writeDelta(engine.getModel(), engine.play(color), CAPTURED, out);
+                return engine;
+            }
+            case UNDO:
+                writeDelta(engine.getModel(), engine.undo(), RELEASED, out);
+                return engine;
+            case REDO:
+                writeDelta(engine.getModel(), engine.redo(), CAPTURED, out);
+                return engine;
+            case SNAPSHOT:
+                out.writeByte(OK);
+                writeState(engine.getModel(), out);
+                return engine;
+            default:
+                out.writeByte(ERROR);
+                out.writeUTF("Unknown opcode " + opcode);
+                out.flush();
+                return null;
+            }
+        }catch(IllegalStateException | IllegalArgumentException e){
+            out.writeByte(ERROR);
+            out.writeUTF(String.valueOf(e.getMessage()));
+            return engine;
+        }
+    }
+
+    /**
+     * <b>writeDelta</b> is a helper method that writes an OK response with
+     * the state delta of a move
+     *
+     * @param model the model of the session, after the move
+     * @param delta the move, or null if nothing changed
+     * @param kind CAPTURED or RELEASED
+     * @param out the stream of the responses
+     */
+    private static void writeDelta(GameModel model, MoveDelta delta, int kind, DataOutputStream out) throws IOException {
+        out.writeByte(OK);
+        out.writeInt(model.getNumberOfSteps());
+        out.writeByte(model.getCurrentSelectedColor());
+        out.writeByte(model.isFinished() ? 1 : 0);
+        out.writeByte(kind);
+        int n = delta == null ? 0 : delta.getNumberCaptured();
+        out.writeInt(n);
+        for(int k = 0; k < n; k++){
+            out.writeInt(delta.getCell(k));
+        }
+    }
+
+    /**
+     * <b>writeState</b> is a helper method that writes the whole state of
+     * the game of a session
+     *
+     * @param model the model of the session
+     * @param out the stream of the responses
+     */
+    private static void writeState(GameModel model, DataOutputStream out) throws IOException {
+        Board board = model.getBoard();
+        out.writeInt(board.getSize());
+        out.writeByte(model.getMode());
+        out.writeByte(model.getDirection());
+        out.writeInt(model.getNumberOfSteps());
+        out.writeByte(model.getCurrentSelectedColor());
+        out.writeByte(model.isFinished() ? 1 : 0);
+        ByteBuffer buffer = ByteBuffer.allocate(board.byteSize());
+        board.writeTo(buffer);
+        out.write(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * <b>createExecutor</b> is a helper method that creates the executor
+     * running the sessions: one virtual thread per session if the JVM has
+     * them and they are not disabled, one platform thread with a small
+     * stack per session otherwise
+     *
+     * @return the executor
+     */
+    private ExecutorService createExecutor() {
+        if(threads.equals("virtual")){
+            try{
+                return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            }catch(ReflectiveOperationException e){
+                // no virtual threads before Java 21
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(null, task, "session-" + count.incrementAndGet(), STACK);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+   /**
+     * <b>main</b> of the game server.
+     *
+     * @param args
+     *            the options of the server, as key=value pairs
+     */
+    public static void main(String[] args) throws Exception {
+        GameServer server;
+        try{
+            server = new GameServer(args);
+        } catch(IllegalArgumentException e){
+            System.out.println(e.getMessage());
+            System.out.println("Usage: java GameServer [port=7777] [size=14] [maxSize=200] [threads=virtual|platform]");
+            return;
+        }
+        int port = server.open();
+        System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port);
+        server.run();
+    }
+}
@@ -16,9 +16,9 @@ public class GameView extends JFrame {
 
 
     /**
-     * The board is a two dimensionnal array of DotButtons instances
+     * The view of the board, a grid of DotButtons or a single canvas
      */
-    private DotButton[][] board;
+    private BoardView board;
 
  
     /**
@@ -41,6 +41,14 @@ public class GameView extends JFrame {
      * Reference to JButton "Redo"
      */
     private JButton redo;
+    /**
+     * Reference to the JSlider showing the position in the history
+     */
+    private JSlider history;
+    /**
+     * True once the first frame has been painted
+     */
+    private boolean painted;
     /**
      * Constructor used for initializing the Frame
      * 
@@ -48,13 +56,16 @@ public class GameView extends JFrame {
      *            the model of the game (already initialized)
      * @param gameController
      *            the controller
+     * @param board
+     *            the view of the board chosen by the controller
      */
 
-    public GameView(GameModel model, GameController gameController) {
+    public GameView(GameModel model, GameController gameController, BoardView board) {
         super("Flood it -- the ITI 1121 version");
 
         this.gameModel = model;
         this.gameController = gameController;
+        this.board = board;
 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     	setBackground(Color.WHITE);
@@ -76,21 +87,7 @@ public class GameView extends JFrame {
 
         add(selectPanel, BorderLayout.NORTH);
 
-        JPanel panel = new JPanel();
-        panel.setBackground(Color.WHITE);
-        panel.setLayout(new GridLayout(gameModel.getSize(), gameModel.getSize()));
-        panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 0, 20));
-        board = new DotButton[gameModel.getSize()][gameModel.getSize()];
-
-        for (int row = 0; row < gameModel.getSize(); row++) {
-            for (int column = 0; column < gameModel.getSize(); column++) {
-                board[row][column] = new DotButton(row, column, gameModel.getColor(row,column), 
-                    (gameModel.getSize() < 26 ? DotButton.MEDIUM_SIZE : DotButton.SMALL_SIZE));
-                board[row][column].addActionListener(gameController);
-                panel.add(board[row][column]);
-            }
-        }
-    	add(panel, BorderLayout.CENTER);
+    	add(board.getComponent(), BorderLayout.CENTER);
 
         JButton buttonReset = new JButton("Reset");
         buttonReset.setFocusPainted(false);
@@ -112,6 +109,11 @@ public class GameView extends JFrame {
         southPanel.setLayout(new GridLayout(2,1));
         
         southPanel.add(control);
+
+        history = new JSlider(0, 0, 0);
+        history.setBackground(Color.WHITE);
+        history.addChangeListener(gameController);
+        southPanel.add(history);
         southPanel.setBorder(BorderFactory.createEmptyBorder(20, 10, 0, 10));
         southPanel.setBackground(Color.WHITE);
         add(southPanel, BorderLayout.SOUTH);
@@ -124,7 +126,7 @@ public class GameView extends JFrame {
     }
 
     /**
-     * update the status of the board's DotButton instances based on the current game model
+     * update the view of the board based on the current game model
      *
      * @param newGameModel
      *              the new GameModel after undoing/redoing
@@ -135,35 +137,82 @@ public class GameView extends JFrame {
      */
 
     public void update(GameModel newGameModel, boolean undoable, boolean redoable){
+        GameEvent event = GameEvents.viewUpdate();
+        event.start();
         gameModel = newGameModel;
-        for(int i = 0; i < gameModel.getSize(); i++){
-            for(int j = 0; j < gameModel.getSize(); j++){
-                board[i][j].setColor(gameModel.getColor(i,j));
-            }
-        }
-        if(undoable){
-            undo.setEnabled(true);
-        }
-        else{
-            undo.setEnabled(false);
-        }
+        board.update(gameModel);
+        updateStatus(undoable, redoable);
+        event.finish(gameModel, (long)gameModel.getSize()*gameModel.getSize(), 0, 0);
+    }
 
-        if(redoable){
-            redo.setEnabled(true);
-        }
-        else{
-            redo.setEnabled(false);
-        }
+    /**
+     * update the view of the board with the changes made by a move, played,
+     * undone or redone. Only the dots of the move and the captured dots are
+     * updated.
+     *
+     * @param newGameModel
+     *              the GameModel once the move is applied
+     * @param delta
+     *              the move, which must not be a reset
+     * @param undoable
+     *              the game can be undone if it is true and false otherwise
+     * @param redoable
+     *              the game can be redone if it is true and false otherwise
+     */
+
+    public void update(GameModel newGameModel, MoveDelta delta, boolean undoable, boolean redoable){
+        GameEvent event = GameEvents.viewUpdate();
+        event.start();
+        gameModel = newGameModel;
+        board.update(gameModel, delta);
+        updateStatus(undoable, redoable);
+        event.finish(gameModel, delta.getNumberCaptured(), 0, 0);
+    }
+
+    /**
+     * <b>updateStatus</b> is a helper method that updates the buttons and the
+     * score. The components repaint themselves when they change.
+     */
+    private void updateStatus(boolean undoable, boolean redoable){
+        undo.setEnabled(undoable);
+        redo.setEnabled(redoable);
 
         if(gameModel.allDotsNotCaptured()){
             scoreLabel.setText("Select initial dot");
-            repaint();
         }
         else{
             scoreLabel.setText("Number of steps: " + gameModel.getNumberOfSteps());
-            repaint();
         }
-        
+    }
+
+    /**
+     * update the history slider
+     *
+     * @param position
+     *              the number of moves played
+     * @param size
+     *              the number of moves in the history, played or undone
+     * @param enabled
+     *              the slider can be used if it is true and false otherwise
+     */
+    public void updateHistory(int position, int size, boolean enabled){
+        history.getModel().setRangeProperties(position, 0, 0, size, history.getValueIsAdjusting());
+        history.setEnabled(enabled);
+    }
+
+    /**
+     * paints the frame, and tells the controller when the first frame is
+     * painted
+     *
+     * @param g
+     *              the graphics context
+     */
+    public void paint(Graphics g){
+        super.paint(g);
+        if(!painted){
+            painted = true;
+            gameController.firstFrame();
+        }
     }
 
 }
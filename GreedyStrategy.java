@@ -0,0 +1,52 @@
+/**
+ * The class <b>GreedyStrategy</b> is a <b>Strategy</b> that plays the color
+ * capturing the largest number of dots in one move. It works on the
+ * <b>RegionGraph</b> of the model, so a move costs O(regions).
+ */
+public class GreedyStrategy implements Strategy {
+
+    /**
+     * The number of dots each color would capture
+     */
+    private long[] gain = new long[GameModel.NUMBER_OF_COLORS];
+
+    /**
+     * The last region counted, used to count each region once
+     */
+    private int[] counted = new int[16];
+
+    public int nextColor(GameEngine engine) {
+        GameModel model = engine.getModel();
+        RegionGraph graph = model.getRegionGraph();
+        Board board = model.getBoard();
+        int regions = graph.getNumberOfRegions();
+        if(counted.length < regions){
+            counted = new int[regions];
+        }
+        java.util.Arrays.fill(counted, 0, regions, -1);
+        java.util.Arrays.fill(gain, 0);
+
+        for(int region = 0; region < regions; region++){
+            if(!board.isCaptured(graph.cellOf(region, 0))){
+                continue;
+            }
+            int degree = graph.degreeOf(region);
+            for(int k = 0; k < degree; k++){
+                int next = graph.neighbourOf(region, k);
+                if(counted[next] == -1 && !board.isCaptured(graph.cellOf(next, 0))){
+                    counted[next] = region;
+                    gain[graph.colorOf(next)] += graph.sizeOf(next);
+                }
+            }
+        }
+
+        int current = model.getCurrentSelectedColor();
+        int best = current == 0 ? 1 : 0;
+        for(int color = 0; color < GameModel.NUMBER_OF_COLORS; color++){
+            if(color != current && gain[color] > gain[best]){
+                best = color;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * The class <b>GridTopology</b> is the <b>Topology</b> of a square board,
+ * where each dot is next to the 4 dots above, below, on the left and on the
+ * right of it, and to the 4 dots on its diagonals as well in the diagonal
+ * direction. On a torus, the first and last rows, and the first and last
+ * columns, are next to each other.
+ *
+ * The offsets of the neighbours are computed once, and the neighbours of a
+ * dot from its coordinates, so it uses no memory per dot.
+ */
+
+public class GridTopology implements Topology {
+
+    /**
+     * The size of the board
+     */
+    private final int size;
+
+    /**
+     * True on a torus
+     */
+    private final boolean torus;
+
+    /**
+     * The offsets of the neighbours, in rows and in columns
+     */
+    private final int[] rows;
+    private final int[] columns;
+
+    /**
+     * Constructor
+     *
+     * @param size
+     *            the size of the board
+     * @param mode
+     *            GameModel.MODE_PLANE or GameModel.MODE_TORUS
+     * @param direction
+     *            GameModel.DIRECTION_ORTHOGONAL or
+     *            GameModel.DIRECTION_DIAGONAL
+     */
+    public GridTopology(int size, int mode, int direction) {
+        this.size = size;
+        torus = mode == GameModel.MODE_TORUS;
+        if(direction == GameModel.DIRECTION_DIAGONAL){
+            rows = new int[]{-1, -1, -1, 0, 0, 1, 1, 1};
+            columns = new int[]{-1, 0, 1, -1, 1, -1, 0, 1};
+        } else {
+            rows = new int[]{-1, 0, 0, 1};
+            columns = new int[]{0, -1, 1, 0};
+        }
+    }
+
+    public int getNumberOfCells(){
+        return size*size;
+    }
+
+    public int getMaxDegree(){
+        return rows.length;
+    }
+
+    public int neighbours(int cell, int[] neighbours){
+        int x = cell / size;
+        int y = cell - x*size;
+        int count = 0;
+        for(int k = 0; k < rows.length; k++){
+            int i = x + rows[k];
+            int j = y + columns[k];
+            if(torus){
+                i = i < 0 ? i + size : i >= size ? i - size : i;
+                j = j < 0 ? j + size : j >= size ? j - size : j;
+            } else if(i < 0 || i >= size || j < 0 || j >= size){
+                continue;
+            }
+            neighbours[count++] = i*size + j;
+        }
+        return count;
+    }
+}
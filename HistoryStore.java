@@ -0,0 +1,611 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The class <b>HistoryStore</b> records the history of a game as a timeline
+ * of <b>MoveDelta</b>, with a position: the deltas before the position have
+ * been played, the ones after it have been undone and can be redone.
+ *
+ * Every <i>interval</i> moves, a full checkpoint of the model is kept, so the
+ * game can jump to any step k by restoring the closest checkpoint and
+ * replaying at most <i>interval</i> deltas. When the history uses more memory
+ * than its budget, the oldest checkpoints, then the boards of the oldest
+ * resets, are spilled to a temporary file and read back when needed. A
+ * reset between boards generated from seeds is spilled as its seeds.
+ */
+public class HistoryStore implements Serializable {
+
+    /**
+     * Default number of moves between two checkpoints
+     */
+    public static final int DEFAULT_INTERVAL = 32;
+
+    /**
+     * Default memory budget, in bytes
+     */
+    public static final long DEFAULT_BUDGET = 64L << 20;
+
+    /**
+     * A full copy of the state of the model at some step
+     */
+    private static class Checkpoint {
+
+        private Board board;
+        private int size;
+        private long offset;
+        private boolean seeded;
+        private long seed;
+        private int color;
+        private int steps;
+        private int mode;
+        private int direction;
+    }
+
+    /**
+     * The number of moves between two checkpoints, and the memory budget
+     */
+    private int interval;
+    private long budget;
+
+    /**
+     * The timeline of moves, and the number of moves played
+     */
+    private ArrayList<MoveDelta> deltas = new ArrayList<MoveDelta>();
+    private int position;
+
+    /**
+     * The checkpoints, by step. They are not saved with the history and
+     * are recorded again as the game goes on.
+     */
+    private transient TreeMap<Integer, Checkpoint> checkpoints = new TreeMap<Integer, Checkpoint>();
+
+    /**
+     * The resets whose boards are in memory, by index in the timeline
+     */
+    private transient TreeMap<Integer, MoveDelta> resets = new TreeMap<Integer, MoveDelta>();
+
+    /**
+     * The estimated memory used by the deltas and the checkpoints in memory.
+     * It is recomputed from the deltas when the history is read.
+     */
+    private transient long memory;
+
+    /**
+     * The file receiving the spilled checkpoints and resets
+     */
+    private transient File spillFile;
+    private transient FileChannel spill;
+
+    /**
+     * Constructor using the default interval and budget
+     */
+    public HistoryStore() {
+        this(DEFAULT_INTERVAL, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param interval
+     *            the number of moves between two checkpoints
+     * @param budget
+     *            the memory budget, in bytes
+     */
+    public HistoryStore(int interval, long budget) {
+        if(interval < 1){
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        this.interval = interval;
+        this.budget = budget;
+    }
+
+    /**
+     * Must be called before a new move is played on the model: the moves
+     * that were undone are forgotten, and a checkpoint is recorded if needed.
+     *
+     * @param model
+     *            the model of the game, before the move
+     */
+    public void prepare(GameModel model){
+        while(deltas.size() > position){
+            memory -= deltas.remove(deltas.size() - 1).footprint();
+        }
+        resets.tailMap(position).clear();
+        while(!checkpoints.isEmpty() && checkpoints.lastKey() > position){
+            forget(checkpoints.pollLastEntry().getValue());
+        }
+        if(position % interval == 0 && !checkpoints.containsKey(position)){
+            GameEvent event = GameEvents.snapshot();
+            event.start();
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.board = copy(model.getBoard());
+            checkpoint.size = model.getSize();
+            checkpoint.seeded = model.hasSeed();
+            checkpoint.seed = model.getSeed();
+            checkpoint.color = model.getCurrentSelectedColor();
+            checkpoint.steps = model.getNumberOfSteps();
+            checkpoint.mode = model.getMode();
+            checkpoint.direction = model.getDirection();
+            checkpoints.put(position, checkpoint);
+            long bytes = checkpoint.board.footprint();
+            memory += bytes;
+            enforceBudget();
+            event.finish(model, 0, 0, bytes);
+        }
+    }
+
+    /**
+     * Records a move played on the model, after prepare
+     *
+     * @param delta
+     *            the move played
+     */
+    public void add(MoveDelta delta){
+        if(delta.isReset()){
+            resets.put(deltas.size(), delta);
+        }
+        deltas.add(delta);
+        position++;
+        memory += delta.footprint();
+        enforceBudget();
+    }
+
+    /**
+     * Appends the moves of a later history, played from the current position
+     * of this one. If the later history is not empty, the moves of this one
+     * that were undone are forgotten. The checkpoints of the later history
+     * are not kept.
+     *
+     * @param later
+     *            the history played from the current position
+     */
+    public void append(HistoryStore later){
+        if(later.deltas.isEmpty()){
+            return;
+        }
+        while(deltas.size() > position){
+            memory -= deltas.remove(deltas.size() - 1).footprint();
+        }
+        resets.tailMap(position).clear();
+        while(!checkpoints.isEmpty() && checkpoints.lastKey() > position){
+            forget(checkpoints.pollLastEntry().getValue());
+        }
+        for(int k = 0; k < later.deltas.size(); k++){
+            MoveDelta delta = later.deltas.get(k);
+            if(delta.isSpilled()){
+                later.unspill(k);
+            }
+            if(delta.isReset()){
+                resets.put(deltas.size(), delta);
+            }
+            deltas.add(delta);
+            memory += delta.footprint();
+        }
+        position += later.position;
+        later.clear();
+        enforceBudget();
+    }
+
+    /**
+     * Returns true if a move can be undone
+     *
+     * @return true if an undo is permitted and false otherwise
+     */
+    public boolean canUndo(){
+        return position > 0;
+    }
+
+    /**
+     * Returns true if a move can be redone
+     *
+     * @return true if an redo is permitted and false otherwise
+     */
+    public boolean canRedo(){
+        return position < deltas.size();
+    }
+
+    /**
+     * Undoes the last move played on the model
+     *
+     * @param model
+     *            the model of the game
+     * @return the move undone
+     */
+    public MoveDelta undo(GameModel model){
+        if(!canUndo()){
+            throw new IllegalStateException("Cannot undo");
+        }
+        MoveDelta delta = deltas.get(--position);
+        if(delta.isSpilled()){
+            unspill(position);
+        }
+        delta.undo(model);
+        return delta;
+    }
+
+    /**
+     * Redoes the last move undone on the model
+     *
+     * @param model
+     *            the model of the game
+     * @return the move redone
+     */
+    public MoveDelta redo(GameModel model){
+        if(!canRedo()){
+            throw new IllegalStateException("Cannot redo");
+        }
+        MoveDelta delta = deltas.get(position);
+        if(delta.isSpilled()){
+            unspill(position);
+        }
+        position++;
+        delta.redo(model);
+        return delta;
+    }
+
+    /**
+     * Brings the model to the state it had after step moves, either by
+     * undoing or redoing moves, or by restoring the closest checkpoint and
+     * redoing at most interval moves, whichever is shorter.
+     *
+     * @param model
+     *            the model of the game
+     * @param step
+     *            the number of moves played, between 0 and getSize()
+     * @return true if a checkpoint was restored, false if the moves between
+     *         the current position and step were undone or redone one by one
+     */
+    public boolean seek(GameModel model, int step){
+        if(step < 0 || step > deltas.size()){
+            throw new IndexOutOfBoundsException("No step " + step);
+        }
+        Map.Entry<Integer, Checkpoint> closest = checkpoints.floorEntry(step);
+        boolean restored = closest != null && step - closest.getKey() + interval/2 < Math.abs(step - position);
+        if(restored){
+            restore(model, closest.getValue());
+            position = closest.getKey();
+        }
+        while(position < step){
+            redo(model);
+        }
+        while(position > step){
+            undo(model);
+        }
+        return restored;
+    }
+
+    /**
+     * Forgets the whole history
+     */
+    public void clear(){
+        deltas.clear();
+        position = 0;
+        memory = 0;
+        checkpoints.clear();
+        resets.clear();
+        closeSpill();
+    }
+
+    /**
+     * Getter method for the number of moves played
+     *
+     * @return the position in the history
+     */
+    public int getPosition(){
+        return position;
+    }
+
+    /**
+     * Getter method for the number of moves in the history, played or undone
+     *
+     * @return the size of the history
+     */
+    public int getSize(){
+        return deltas.size();
+    }
+
+    /**
+     * Returns the move at a given index of the history
+     *
+     * @param index
+     *            the index of the move, between 0 and getSize()-1
+     * @return the move
+     */
+    public MoveDelta get(int index){
+        return deltas.get(index);
+    }
+
+    /**
+     * Getter method for the estimated memory used by the history, not
+     * counting the spilled checkpoints and resets
+     *
+     * @return the number of bytes used
+     */
+    public long getMemory(){
+        return memory;
+    }
+
+    /**
+     * Writes the interval, the position and the moves of this history to a
+     * buffer. The checkpoints are not written, and the spilled resets are
+     * copied from the spill file.
+     *
+     * @param buffer
+     *            the buffer, with at least byteSize() bytes remaining
+     */
+    public void writeTo(ByteBuffer buffer){
+        buffer.putInt(interval);
+        buffer.putInt(position);
+        buffer.putInt(deltas.size());
+        for(MoveDelta delta : deltas){
+            if(delta.isSpilled()){
+                int length = delta.byteSize();
+                read(buffer.slice(buffer.position(), length), delta.getSpillOffset());
+                buffer.position(buffer.position() + length);
+            } else {
+                delta.writeTo(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads a history written by writeTo, using the default memory budget
+     *
+     * @param buffer
+     *            the buffer, positioned at the history
+     * @param boardSize
+     *            the size of the board of the game
+     * @return the history read
+     */
+    public static HistoryStore readFrom(ByteBuffer buffer, int boardSize){
+        return readFrom(buffer, boardSize, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Reads a history written by writeTo
+     *
+     * @param buffer
+     *            the buffer, positioned at the history
+     * @param boardSize
+     *            the size of the board of the game
+     * @param budget
+     *            the memory budget, in bytes
+     * @return the history read
+     */
+    public static HistoryStore readFrom(ByteBuffer buffer, int boardSize, long budget){
+        HistoryStore history = new HistoryStore(buffer.getInt(), budget);
+        int position = buffer.getInt();
+        int count = buffer.getInt();
+        if(position < 0 || position > count){
+            throw new IllegalArgumentException("Invalid position " + position);
+        }
+        for(int k = 0; k < count; k++){
+            MoveDelta delta = MoveDelta.readFrom(buffer, boardSize);
+            if(delta.isReset()){
+                history.resets.put(k, delta);
+            }
+            history.deltas.add(delta);
+            history.memory += delta.footprint();
+        }
+        history.position = position;
+        history.enforceBudget();
+        return history;
+    }
+
+    /**
+     * Returns the maximum number of bytes written by writeTo
+     *
+     * @return the maximum size of the history once written, in bytes
+     */
+    public long byteSize(){
+        long bytes = 12;
+        for(MoveDelta delta : deltas){
+            bytes += delta.byteSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * <b>writeObject</b> is a helper method that reads back the spilled
+     * resets before the history is serialized
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        for(int k = 0; k < deltas.size(); k++){
+            if(deltas.get(k).isSpilled()){
+                unspill(k);
+            }
+        }
+        out.defaultWriteObject();
+    }
+
+    /**
+     * <b>readObject</b> is a helper method that reads a serialized history,
+     * without checkpoints, and accounts for the memory of its moves
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        checkpoints = new TreeMap<Integer, Checkpoint>();
+        resets = new TreeMap<Integer, MoveDelta>();
+        for(int k = 0; k < deltas.size(); k++){
+            MoveDelta delta = deltas.get(k);
+            if(delta.isReset()){
+                resets.put(k, delta);
+            }
+            memory += delta.footprint();
+        }
+    }
+
+    /**
+     * <b>restore</b> is a helper method that brings the model to the state
+     * of a checkpoint
+     */
+    private void restore(GameModel model, Checkpoint checkpoint){
+        Board board = checkpoint.board;
+        if(board == null){
+            board = load(checkpoint);
+        } else {
+            board = copy(board);
+        }
+        if(checkpoint.seeded){
+            model.setBoard(board, checkpoint.seed);
+        } else {
+            model.setBoard(board);
+        }
+        model.setCurrentSelectedColor(checkpoint.color);
+        model.setNumberOfSteps(checkpoint.steps);
+        model.setMode(checkpoint.mode);
+        model.setDirection(checkpoint.direction);
+    }
+
+    /**
+     * <b>enforceBudget</b> is a helper method that spills the oldest
+     * checkpoints kept in memory to the spill file while the budget is
+     * exceeded, then the oldest resets kept in memory
+     */
+    private void enforceBudget(){
+        try{
+            for(Checkpoint checkpoint : checkpoints.values()){
+                if(memory <= budget){
+                    return;
+                }
+                if(checkpoint.board != null){
+                    spill(checkpoint);
+                }
+            }
+            while(memory > budget && !resets.isEmpty()){
+                spill(resets.pollFirstEntry().getValue());
+            }
+        }catch(IOException e){
+            System.out.println("Cannot spill history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * <b>spill</b> is a helper method that writes the board of a checkpoint
+     * at the end of the spill file and frees it
+     */
+    private void spill(Checkpoint checkpoint) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(checkpoint.board.byteSize());
+        checkpoint.board.writeTo(buffer);
+        buffer.flip();
+        checkpoint.offset = write(buffer);
+        memory -= checkpoint.board.footprint();
+        checkpoint.board = null;
+    }
+
+    /**
+     * <b>spill</b> is a helper method that writes a reset at the end of the
+     * spill file, as in a saved history, and frees its boards
+     */
+    private void spill(MoveDelta delta) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(delta.byteSize());
+        delta.writeTo(buffer);
+        buffer.flip();
+        int length = buffer.remaining();
+        long offset = write(buffer);
+        memory -= delta.footprint();
+        delta.spilled(offset, length);
+        memory += delta.footprint();
+    }
+
+    /**
+     * <b>unspill</b> is a helper method that reads back the boards of a
+     * spilled reset. The reset is kept in memory until the budget is
+     * enforced again.
+     */
+    private void unspill(int index){
+        MoveDelta delta = deltas.get(index);
+        ByteBuffer buffer = ByteBuffer.allocate(delta.byteSize());
+        read(buffer, delta.getSpillOffset());
+        buffer.flip();
+        memory -= delta.footprint();
+        delta.unspill(buffer);
+        memory += delta.footprint();
+        resets.put(index, delta);
+    }
+
+    /**
+     * <b>load</b> is a helper method that reads the board of a spilled
+     * checkpoint
+     */
+    private Board load(Checkpoint checkpoint){
+        ByteBuffer buffer = ByteBuffer.allocate(Board.byteSize(checkpoint.size));
+        read(buffer, checkpoint.offset);
+        buffer.flip();
+        return Board.readFrom(buffer, checkpoint.size);
+    }
+
+    /**
+     * <b>write</b> is a helper method that writes a buffer at the end of the
+     * spill file, creating it if needed, and returns its offset
+     */
+    private long write(ByteBuffer buffer) throws IOException{
+        if(spill == null){
+            spillFile = File.createTempFile("floodit-history", ".bin");
+            spillFile.deleteOnExit();
+            spill = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        long offset = spill.size();
+        while(buffer.hasRemaining()){
+            spill.write(buffer, offset + buffer.position());
+        }
+        return offset;
+    }
+
+    /**
+     * <b>read</b> is a helper method that fills a buffer from the spill file
+     */
+    private void read(ByteBuffer buffer, long offset){
+        int start = buffer.position();
+        try{
+            while(buffer.hasRemaining()){
+                if(spill.read(buffer, offset + buffer.position() - start) < 0){
+                    throw new EOFException();
+                }
+            }
+        }catch(IOException e){
+            throw new UncheckedIOException("Cannot read history", e);
+        }
+    }
+
+    /**
+     * <b>forget</b> is a helper method that accounts for a checkpoint that
+     * is dropped. The space it used in the spill file is not reused.
+     */
+    private void forget(Checkpoint checkpoint){
+        if(checkpoint.board != null){
+            memory -= checkpoint.board.footprint();
+        }
+    }
+
+    /**
+     * <b>closeSpill</b> is a helper method that deletes the spill file
+     */
+    private void closeSpill(){
+        if(spill != null){
+            try{
+                spill.close();
+            }catch(IOException e){
+                System.out.println("Cannot close history file");
+            }
+            spillFile.delete();
+            spill = null;
+        }
+    }
+
+    /**
+     * <b>copy</b> is a helper method that copies a board
+     */
+    private static Board copy(Board board){
+        try{
+            return board.clone();
+        }catch(CloneNotSupportedException e){
+            throw new IllegalStateException("Cannot be cloned");
+        }
+    }
+}
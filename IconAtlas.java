@@ -0,0 +1,227 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+
+/**
+ * The class <b>IconAtlas</b> provides the images of the dots, scaled to any
+ * size in pixels. The ball images of the directories ``S'', ``M'' and ``N''
+ * are decoded once, in the background, as soon as preload is called. They
+ * are looked up on the classpath first, then in the directory ``data''.
+ *
+ * The images of a size are computed from the smallest ball image that is at
+ * least as large, with bicubic interpolation, and stored as images
+ * compatible with the screen. Only the last MAX_SIZES sizes used are kept.
+ * prepare computes the images of a size on a background thread, so that a
+ * resized window never waits for them.
+ */
+public class IconAtlas {
+
+    /**
+     * The colors of the dots, matching the ball images. They are used to
+     * draw a plain circle when an image cannot be read.
+     */
+    static final int[] RGB = {0xC9C9C9, 0xFEDB35, 0x93EDFF, 0xC2FE2C, 0xB399FF, 0xFF3D51};
+
+    /**
+     * The directories of the ball images, and their size in pixels
+     */
+    private static final String[] DIRECTORIES = {"S", "M", "N"};
+    private static final int[] SOURCE_SIZES = {11, 28, 40};
+
+    /**
+     * The number of sizes kept in the atlas
+     */
+    public static final int MAX_SIZES = 4;
+
+    /**
+     * The ball images, by source size and color, once decoded
+     */
+    private static CompletableFuture<BufferedImage[][]> sources;
+
+    /**
+     * The images of each size, the least recently used first
+     */
+    private static final Map<Integer, ImageIcon[]> icons =
+        new LinkedHashMap<Integer, ImageIcon[]>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, ImageIcon[]> eldest) {
+                return size() > MAX_SIZES;
+            }
+        };
+
+    /**
+     * The thread computing the images of the sizes requested by prepare
+     */
+    private static final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "icon-atlas");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The size requested by the last call to prepare
+     */
+    private static volatile int requested;
+
+    /**
+     * Starts decoding the ball images in the background, if not started yet
+     */
+    public static synchronized void preload(){
+        if(sources == null){
+            sources = CompletableFuture.supplyAsync(IconAtlas::readSources, builder);
+        }
+    }
+
+    /**
+     * Returns the images of a size if they are ready
+     *
+     * @param pixels
+     *            the size of the images
+     * @return the images of each color, or null if they are not computed yet
+     */
+    public static synchronized ImageIcon[] getIcons(int pixels){
+        return icons.get(pixels);
+    }
+
+    /**
+     * Returns the image of a color for a size, computing the images of that
+     * size if needed. Waits for the ball images to be decoded.
+     *
+     * @param color
+     *            the color of the dot
+     * @param pixels
+     *            the size of the image
+     * @return the image of the dot
+     */
+    public static ImageIcon getIcon(int color, int pixels){
+        ImageIcon[] result = getIcons(pixels);
+        if(result == null){
+            result = build(pixels);
+        }
+        return result[color];
+    }
+
+    /**
+     * Computes the images of a size in the background, then runs an action
+     * on the event dispatch thread. If another size is requested before the
+     * images are computed, they are not computed and the action is not run.
+     *
+     * @param pixels
+     *            the size of the images
+     * @param ready
+     *            the action run once the images are ready
+     */
+    public static void prepare(int pixels, Runnable ready){
+        requested = pixels;
+        preload();
+        builder.execute(() -> {
+            if(requested != pixels){
+                return;
+            }
+            if(getIcons(pixels) == null){
+                build(pixels);
+            }
+            SwingUtilities.invokeLater(ready);
+        });
+    }
+
+    /**
+     * <b>build</b> is a helper method that computes and stores the images of
+     * a size
+     */
+    private static ImageIcon[] build(int pixels){
+        BufferedImage[][] balls;
+        preload();
+        balls = sources.join();
+        int source = SOURCE_SIZES.length - 1;
+        while(source > 0 && SOURCE_SIZES[source - 1] >= pixels){
+            source--;
+        }
+        ImageIcon[] result = new ImageIcon[GameModel.NUMBER_OF_COLORS];
+        for(int color = 0; color < result.length; color++){
+            result[color] = new ImageIcon(scale(balls[source][color], pixels));
+        }
+        synchronized(IconAtlas.class){
+            icons.put(pixels, result);
+        }
+        return result;
+    }
+
+    /**
+     * <b>readSources</b> is a helper method that decodes every ball image
+     */
+    private static BufferedImage[][] readSources(){
+        BufferedImage[][] balls = new BufferedImage[DIRECTORIES.length][GameModel.NUMBER_OF_COLORS];
+        for(int source = 0; source < DIRECTORIES.length; source++){
+            for(int color = 0; color < GameModel.NUMBER_OF_COLORS; color++){
+                String name = "data/" + DIRECTORIES[source] + "/ball-" + color + ".png";
+                try{
+                    URL url = IconAtlas.class.getResource("/" + name);
+                    balls[source][color] = url != null ? ImageIO.read(url) : ImageIO.read(new File(name));
+                }catch(IOException e){
+                    balls[source][color] = null;
+                }
+                if(balls[source][color] == null){
+                    System.out.println("Cannot read " + name + ", drawing it instead");
+                    balls[source][color] = circle(color, SOURCE_SIZES[source]);
+                }
+            }
+        }
+        return balls;
+    }
+
+    /**
+     * <b>scale</b> is a helper method that scales an image to a size,
+     * halving it while it is more than twice too large
+     */
+    private static Image scale(BufferedImage image, int pixels){
+        BufferedImage current = image;
+        int size = image.getWidth();
+        do{
+            size = Math.max(pixels, size / 2);
+            BufferedImage next = createImage(size);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, size, size, null);
+            g.dispose();
+            current = next;
+        } while(size != pixels);
+        return current;
+    }
+
+    /**
+     * <b>circle</b> is a helper method that draws a plain dot of a color
+     */
+    private static BufferedImage circle(int color, int pixels){
+        BufferedImage image = createImage(pixels);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(new Color(RGB[color]));
+        g.fillOval(1, 1, pixels - 2, pixels - 2);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * <b>createImage</b> is a helper method that creates a translucent image
+     * compatible with the screen, when there is one
+     */
+    private static BufferedImage createImage(int pixels){
+        if(GraphicsEnvironment.isHeadless()){
+            return new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_ARGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+            .getDefaultConfiguration().createCompatibleImage(pixels, pixels, Transparency.TRANSLUCENT);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * The class <b>IntStack</b> is a stack of ints stored in a growable int[],
+ * without boxing them. Clearing it keeps the array, so a stack reused from
+ * one move to the next stops allocating once it has reached the largest
+ * size needed.
+ */
+public class IntStack {
+
+    /**
+     * The elements of the stack, the first size ones being used
+     */
+    private int[] elems;
+    private int size;
+
+    /**
+     * Constructor
+     */
+    public IntStack() {
+        this(16);
+    }
+
+    /**
+     * Constructor used to create a stack with a given initial capacity
+     *
+     * @param capacity
+     *            the initial capacity, at least 1
+     */
+    public IntStack(int capacity) {
+        elems = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Returns the number of elements of the stack
+     *
+     * @return the size of the stack
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Tests if the stack is empty
+     *
+     * @return true if the stack is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds an element at the top of the stack, growing the array if needed
+     *
+     * @param elem
+     *            the element
+     */
+    public void push(int elem) {
+        if(size == elems.length){
+            elems = java.util.Arrays.copyOf(elems, 2*size);
+        }
+        elems[size++] = elem;
+    }
+
+    /**
+     * Removes and returns the element at the top of the stack
+     *
+     * @return the top element
+     * @throws EmptyStackException if the stack is empty
+     */
+    public int pop() {
+        if(size == 0){
+            throw new EmptyStackException();
+        }
+        return elems[--size];
+    }
+
+    /**
+     * Returns an element of the stack, 0 being the bottom one
+     *
+     * @param index
+     *            the index of the element
+     * @return the element
+     */
+    public int get(int index) {
+        if(index >= size){
+            throw new IndexOutOfBoundsException(index);
+        }
+        return elems[index];
+    }
+
+    /**
+     * Removes all the elements of the stack, keeping its array
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the elements of the stack, from the bottom one, in a new
+     * array of the size of the stack
+     *
+     * @return the elements
+     */
+    public int[] toArray() {
+        return java.util.Arrays.copyOf(elems, size);
+    }
+}
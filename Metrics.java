@@ -0,0 +1,134 @@
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class <b>Metrics</b> is a registry of counters and histograms of the
+ * operations of the game, recorded by the <b>GameEvent</b>s: for each kind
+ * of event, the number of events, the total of the dots visited, the dots
+ * captured and the bytes written, and a histogram of the durations with one
+ * bucket per power of 2 nanoseconds.
+ *
+ * The registry is only used when the JVM is started with
+ * -Dfloodit.metrics=true. ENABLED is then a constant true, otherwise a
+ * constant false and the code recording the metrics is removed by the JIT.
+ * When enabled, the metrics are printed when the JVM exits, and can be
+ * printed at any time with dump.
+ */
+public class Metrics {
+
+    /**
+     * True if the metrics are recorded
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("floodit.metrics");
+
+    /**
+     * The number of buckets of the histograms: bucket k counts the
+     * durations d with 2^(k-1) <= d < 2^k nanoseconds, and bucket 0 the
+     * durations of 0
+     */
+    private static final int BUCKETS = 64;
+
+    /**
+     * The metrics of each kind of event
+     */
+    private static final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    static {
+        if(ENABLED){
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(System.err), "metrics"));
+        }
+    }
+
+    /**
+     * The metrics of one kind of event. Every field can be updated by
+     * several threads at once without locking.
+     */
+    private static class Series {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final LongAdder visited = new LongAdder();
+        private final LongAdder captured = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Records an event
+     *
+     * @param name
+     *            the kind of event
+     * @param nanos
+     *            the duration of the event, in nanoseconds
+     * @param visited
+     *            the number of dots visited
+     * @param captured
+     *            the number of dots captured
+     * @param bytes
+     *            the number of bytes read or written
+     */
+    public static void record(String name, long nanos, long visited, long captured, long bytes){
+        Series metrics = series.computeIfAbsent(name, key -> new Series());
+        metrics.count.increment();
+        metrics.nanos.add(nanos);
+        metrics.max.accumulate(nanos);
+        metrics.visited.add(visited);
+        metrics.captured.add(captured);
+        metrics.bytes.add(bytes);
+        metrics.histogram.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+
+    /**
+     * Prints the metrics recorded so far, one line per kind of event: the
+     * number of events, the mean, median, 99th percentile and maximum
+     * durations, and the totals of the dots and bytes. The percentiles are
+     * the upper bounds of their buckets.
+     *
+     * @param out
+     *            the stream the metrics are printed to
+     */
+    public static void dump(PrintStream out){
+        out.printf("%-12s %9s %11s %11s %11s %11s %12s %12s %12s%n", "event", "count",
+            "mean us", "p50 us", "p99 us", "max us", "visited", "captured", "bytes");
+        for(Map.Entry<String, Series> entry : new TreeMap<>(series).entrySet()){
+            Series metrics = entry.getValue();
+            long count = metrics.count.sum();
+            out.printf("%-12s %9d %11.1f %11.1f %11.1f %11.1f %12d %12d %12d%n", entry.getKey(), count,
+                count == 0 ? 0.0 : metrics.nanos.sum() / 1e3 / count,
+                percentile(metrics, 0.5) / 1e3, percentile(metrics, 0.99) / 1e3, metrics.max.get() / 1e3,
+                metrics.visited.sum(), metrics.captured.sum(), metrics.bytes.sum());
+        }
+    }
+
+    /**
+     * Forgets the metrics recorded so far
+     */
+    public static void clear(){
+        series.clear();
+    }
+
+    /**
+     * <b>percentile</b> is a helper method that returns the upper bound of
+     * the bucket of the histogram holding a percentile of the durations
+     */
+    private static long percentile(Series metrics, double fraction){
+        long total = 0;
+        for(int k = 0; k < BUCKETS; k++){
+            total += metrics.histogram.get(k);
+        }
+        long rank = (long)Math.ceil(fraction*total);
+        long seen = 0;
+        for(int k = 0; k < BUCKETS; k++){
+            seen += metrics.histogram.get(k);
+            if(seen >= rank && seen > 0){
+                return Math.min(metrics.max.get(), (1L << k) - 1);
+            }
+        }
+        return 0;
+    }
+}
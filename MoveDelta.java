@@ -0,0 +1,604 @@
+import java.io.*;
+/**
+ * The class <b>MoveDelta</b> describes the result of one move of the game:
+ * the dots captured by the move, the selected color before and after the
+ * move and the number of steps before and after the move. A reset of the
+ * game is also described by a MoveDelta, which then keeps the boards before
+ * and after the reset.
+ *
+ * This is all the history needs to undo or redo the move, in time
+ * proportional to the number of captured dots.
+ */
+public class MoveDelta implements Serializable {
+
+    /**
+     * The selected color before and after the move
+     */
+    private int previousColor;
+    private int color;
+
+    /**
+     * The number of steps before and after the move
+     */
+    private int previousSteps;
+    private int steps;
+
+    /**
+     * The cell ids of the dots captured by the move
+     */
+    private int[] cells;
+    private int size;
+
+    /**
+     * The stack receiving the cell ids while the move is recorded, if one
+     * was given, or null
+     */
+    private transient IntStack recording;
+
+    /**
+     * For a reset only: the boards before and after. They are copies that
+     * are never changed, so the history can jump over the reset.
+     */
+    private Board previousBoard;
+    private Board board;
+
+    /**
+     * For a reset only: the seeds of the boards before and after, when they
+     * were generated from one. Such a board is written as its seed, and the
+     * board before the reset as its seed and its captured dots.
+     */
+    private long previousSeed;
+    private long seed;
+    private boolean previousSeeded;
+    private boolean seeded;
+
+    /**
+     * For a reset spilled by the history: where it was written to the spill
+     * file by writeTo, its number of bytes and the size of its boards. The
+     * length is 0 while the boards are in memory.
+     */
+    private transient long spillOffset;
+    private transient int spillLength;
+    private transient int spillSize;
+
+    /**
+     * The mode and direction before and after the move
+     */
+    private int previousMode;
+    private int previousDirection;
+    private int mode;
+    private int direction;
+
+    /**
+     * Constructor used to start recording a move on a model.
+     *
+     * @param model
+     *            the model of the game, before the move
+     */
+    public MoveDelta(GameModel model) {
+        previousColor = color = model.getCurrentSelectedColor();
+        previousSteps = steps = model.getNumberOfSteps();
+        previousMode = mode = model.getMode();
+        previousDirection = direction = model.getDirection();
+        cells = new int[8];
+    }
+
+    /**
+     * Constructor used to start recording a move on a model, the captured
+     * dots being pushed on a stack until finish copies them into an array
+     * of the right size. The stack can be reused for the next move, so that
+     * recording a move allocates nothing but the MoveDelta and its array.
+     *
+     * @param model
+     *            the model of the game, before the move
+     * @param recording
+     *            an empty stack, not used by anything else until finish
+     */
+    public MoveDelta(GameModel model, IntStack recording) {
+        previousColor = color = model.getCurrentSelectedColor();
+        previousSteps = steps = model.getNumberOfSteps();
+        previousMode = mode = model.getMode();
+        previousDirection = direction = model.getDirection();
+        this.recording = recording;
+    }
+
+    /**
+     * Constructor used by readFrom
+     */
+    private MoveDelta() {
+    }
+
+    /**
+     * Resets a model and returns the MoveDelta describing the reset
+     *
+     * @param model
+     *            the model of the game
+     * @return the reset
+     */
+    public static MoveDelta reset(GameModel model){
+        return reset(model, null);
+    }
+
+    /**
+     * Resets a model on a given board and returns the MoveDelta describing
+     * the reset
+     *
+     * @param model
+     *            the model of the game
+     * @param board
+     *            the new board, or null for a random one
+     * @return the reset
+     */
+    public static MoveDelta reset(GameModel model, Board board){
+        MoveDelta delta = startReset(model);
+        if(board == null){
+            model.reset();
+        } else {
+            model.reset(board);
+        }
+        return delta.finishReset(model);
+    }
+
+    /**
+     * Resets a model on the board generated from a seed and returns the
+     * MoveDelta describing the reset
+     *
+     * @param model
+     *            the model of the game
+     * @param seed
+     *            the seed of the new board
+     * @return the reset
+     */
+    public static MoveDelta reset(GameModel model, long seed){
+        MoveDelta delta = startReset(model);
+        model.reset(seed);
+        return delta.finishReset(model);
+    }
+
+    /**
+     * <b>startReset</b> is a helper method that records the board before a
+     * reset
+     */
+    private static MoveDelta startReset(GameModel model){
+        MoveDelta delta = new MoveDelta(model);
+        delta.previousBoard = copy(model.getBoard());
+        delta.previousSeeded = model.hasSeed();
+        delta.previousSeed = model.getSeed();
+        return delta;
+    }
+
+    /**
+     * <b>finishReset</b> is a helper method that records the board after a
+     * reset
+     */
+    private MoveDelta finishReset(GameModel model){
+        board = copy(model.getBoard());
+        seeded = model.hasSeed();
+        seed = model.getSeed();
+        finish(model);
+        return this;
+    }
+
+    /**
+     * Records a newly captured dot
+     *
+     * @param cell
+     *            the cell id of the dot
+     */
+    public void add(int cell){
+        if(recording != null){
+            recording.push(cell);
+            return;
+        }
+        if(size == cells.length){
+            cells = java.util.Arrays.copyOf(cells, 2*size);
+        }
+        cells[size++] = cell;
+    }
+
+    /**
+     * Records the state of the model once the move is done
+     *
+     * @param model
+     *            the model of the game, after the move
+     */
+    public void finish(GameModel model){
+        color = model.getCurrentSelectedColor();
+        steps = model.getNumberOfSteps();
+        mode = model.getMode();
+        direction = model.getDirection();
+        if(recording != null){
+            cells = recording.toArray();
+            size = cells.length;
+            recording = null;
+        } else if(cells.length > size){
+            cells = java.util.Arrays.copyOf(cells, size);
+        }
+    }
+
+    /**
+     * Brings a model back to the state it was in before the move
+     *
+     * @param model
+     *            the model of the game, after the move
+     */
+    public void undo(GameModel model){
+        if(isReset()){
+            setBoard(model, previousBoard, previousSeeded, previousSeed);
+        } else {
+            for(int k = size - 1; k >= 0; k--){
+                model.release(cells[k]);
+            }
+        }
+        restore(model, previousColor, previousSteps, previousMode, previousDirection);
+    }
+
+    /**
+     * Plays the move again on a model
+     *
+     * @param model
+     *            the model of the game, before the move
+     */
+    public void redo(GameModel model){
+        if(isReset()){
+            setBoard(model, board, seeded, seed);
+        } else {
+            for(int k = 0; k < size; k++){
+                model.capture(cells[k]);
+            }
+        }
+        restore(model, color, steps, mode, direction);
+    }
+
+    /**
+     * Returns true if the MoveDelta describes a reset of the game
+     *
+     * @return true for a reset, false for a move
+     */
+    public boolean isReset(){
+        return board != null || spillLength > 0;
+    }
+
+    /**
+     * Returns an estimate of the memory used by this MoveDelta
+     *
+     * @return the number of bytes used
+     */
+    public long footprint(){
+        long bytes = 48 + 4L*cells.length;
+        if(board != null){
+            bytes += previousBoard.footprint() + board.footprint();
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes this MoveDelta to a buffer. Each captured dot is written as the
+     * signed gap from the previous one, using 7 bits per byte: the dots are
+     * captured in flood order, so most gaps take one or two bytes. A reset
+     * between boards generated from seeds is written as the seeds, and the
+     * captured dots of the board before the reset.
+     *
+     * @param buffer
+     *            the buffer, with at least byteSize() bytes remaining
+     */
+    public void writeTo(java.nio.ByteBuffer buffer){
+        buffer.put((byte)(!isReset() ? 0 : isSeededReset() ? 2 : 1));
+        buffer.put((byte)previousColor).put((byte)color);
+        buffer.put((byte)previousMode).put((byte)mode);
+        buffer.put((byte)previousDirection).put((byte)direction);
+        buffer.putInt(previousSteps).putInt(steps);
+        if(isSeededReset()){
+            buffer.put((byte)((previousSeeded ? 1 : 0) | (seeded ? 2 : 0)));
+            if(previousSeeded){
+                buffer.putLong(previousSeed);
+                Board.writeCaptured(previousBoard, buffer);
+            } else {
+                previousBoard.writeTo(buffer);
+            }
+            if(seeded){
+                buffer.putLong(seed);
+            } else {
+                board.writeTo(buffer);
+            }
+        } else if(isReset()){
+            previousBoard.writeTo(buffer);
+            board.writeTo(buffer);
+        } else {
+            buffer.putInt(size);
+            int previous = 0;
+            for(int k = 0; k < size; k++){
+                int gap = cells[k] - previous;
+                putVarint(buffer, (gap << 1) ^ (gap >> 31));
+                previous = cells[k];
+            }
+        }
+    }
+
+    /**
+     * Reads a MoveDelta written by writeTo
+     *
+     * @param buffer
+     *            the buffer, positioned at the MoveDelta
+     * @param boardSize
+     *            the size of the board of the game
+     * @return the MoveDelta read
+     */
+    public static MoveDelta readFrom(java.nio.ByteBuffer buffer, int boardSize){
+        MoveDelta delta = new MoveDelta();
+        int type = buffer.get();
+        delta.previousColor = buffer.get();
+        delta.color = buffer.get();
+        delta.previousMode = buffer.get();
+        delta.mode = buffer.get();
+        delta.previousDirection = buffer.get();
+        delta.direction = buffer.get();
+        delta.previousSteps = buffer.getInt();
+        delta.steps = buffer.getInt();
+        if(type == 2){
+            int flags = buffer.get();
+            delta.previousSeeded = (flags & 1) != 0;
+            delta.seeded = (flags & 2) != 0;
+            if(delta.previousSeeded){
+                delta.previousSeed = buffer.getLong();
+                delta.previousBoard = BoardGenerator.generate(boardSize, delta.previousSeed);
+                Board.readCaptured(delta.previousBoard, buffer);
+            } else {
+                delta.previousBoard = Board.readFrom(buffer, boardSize);
+            }
+            if(delta.seeded){
+                delta.seed = buffer.getLong();
+                delta.board = BoardGenerator.generate(boardSize, delta.seed);
+            } else {
+                delta.board = Board.readFrom(buffer, boardSize);
+            }
+            delta.cells = new int[0];
+        } else if(type == 1){
+            delta.previousBoard = Board.readFrom(buffer, boardSize);
+            delta.board = Board.readFrom(buffer, boardSize);
+            delta.cells = new int[0];
+        } else if(type != 0){
+            throw new IllegalArgumentException("Invalid move type " + type);
+        } else {
+            delta.size = buffer.getInt();
+            if(delta.size < 0 || delta.size > boardSize*boardSize){
+                throw new IllegalArgumentException("Invalid move of " + delta.size + " dots");
+            }
+            delta.cells = new int[delta.size];
+            int previous = 0;
+            for(int k = 0; k < delta.size; k++){
+                int gap = getVarint(buffer);
+                previous += (gap >>> 1) ^ -(gap & 1);
+                if(previous < 0 || previous >= boardSize*boardSize){
+                    throw new IllegalArgumentException("Invalid dot " + previous);
+                }
+                delta.cells[k] = previous;
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Returns the maximum number of bytes written by writeTo
+     *
+     * @return the maximum size of the MoveDelta once written, in bytes
+     */
+    public int byteSize(){
+        if(isSpilled()){
+            return spillLength;
+        }
+        if(isSeededReset()){
+            int boardSize = previousBoard.getSize();
+            return 16 + (previousSeeded ? 8 + Board.capturedByteSize(boardSize) : previousBoard.byteSize())
+                + (seeded ? 8 : board.byteSize());
+        }
+        if(isReset()){
+            return 15 + previousBoard.byteSize() + board.byteSize();
+        }
+        return 19 + 5*size;
+    }
+
+    /**
+     * Drops the boards of a reset that the history has written to its spill
+     * file by writeTo. The reset must be read back by unspill before it is
+     * undone, redone or written again.
+     *
+     * @param offset
+     *            the position of the reset in the spill file
+     * @param length
+     *            the number of bytes written
+     */
+    void spilled(long offset, int length){
+        spillSize = board.getSize();
+        spillOffset = offset;
+        spillLength = length;
+        previousBoard = null;
+        board = null;
+    }
+
+    /**
+     * Reads back the boards of a spilled reset
+     *
+     * @param buffer
+     *            the bytes written to the spill file
+     */
+    void unspill(java.nio.ByteBuffer buffer){
+        MoveDelta read = readFrom(buffer, spillSize);
+        previousBoard = read.previousBoard;
+        board = read.board;
+        spillLength = 0;
+    }
+
+    /**
+     * Returns true for a reset whose boards were spilled by the history
+     *
+     * @return true if the boards are in the spill file only
+     */
+    boolean isSpilled(){
+        return spillLength > 0;
+    }
+
+    /**
+     * Getter method for the position of a spilled reset in the spill file
+     *
+     * @return the offset of the reset
+     */
+    long getSpillOffset(){
+        return spillOffset;
+    }
+
+    /**
+     * <b>putVarint</b> is a helper method that writes a positive int 7 bits
+     * per byte, the high bit telling if more bytes follow
+     */
+    private static void putVarint(java.nio.ByteBuffer buffer, int value){
+        while((value & ~0x7F) != 0){
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+
+    /**
+     * <b>getVarint</b> is a helper method that reads an int written by
+     * putVarint
+     */
+    private static int getVarint(java.nio.ByteBuffer buffer){
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7){
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Invalid varint");
+    }
+
+    /**
+     * <b>isSeededReset</b> is a helper method that returns true for a reset
+     * from or to a board generated from a seed
+     */
+    private boolean isSeededReset(){
+        return isReset() && (previousSeeded || seeded);
+    }
+
+    /**
+     * <b>setBoard</b> is a helper method that gives a copy of a board to a
+     * model, with its seed if it has one
+     */
+    private static void setBoard(GameModel model, Board board, boolean seeded, long seed){
+        if(seeded){
+            model.setBoard(copy(board), seed);
+        } else {
+            model.setBoard(copy(board));
+        }
+    }
+
+    /**
+     * <b>copy</b> is a helper method that copies a board
+     */
+    private static Board copy(Board board){
+        try{
+            return board.clone();
+        }catch(CloneNotSupportedException e){
+            throw new IllegalStateException("Cannot be cloned");
+        }
+    }
+
+    /**
+     * <b>restore</b> is a helper method that sets the selected color, the
+     * number of steps, the mode and the direction of a model
+     */
+    private static void restore(GameModel model, int color, int steps, int mode, int direction){
+        model.setCurrentSelectedColor(color);
+        model.setNumberOfSteps(steps);
+        model.setMode(mode);
+        model.setDirection(direction);
+    }
+
+    /**
+     * Returns the hash of the state before the move, from the hash of the
+     * state after it, as returned by GameModel.getHash: the keys of the
+     * captured dots and of the colors are applied again. This costs
+     * O(getNumberCaptured()), and does not apply to a reset.
+     *
+     * @param hash
+     *            the hash of the state after the move
+     * @return the hash of the state before the move
+     */
+    public long unhash(long hash){
+        if(isReset()){
+            throw new IllegalStateException("A reset cannot be unhashed");
+        }
+        for(int k = 0; k < size; k++){
+            hash ^= Zobrist.cellKey(cells[k]);
+        }
+        return hash ^ Zobrist.colorKey(color) ^ Zobrist.colorKey(previousColor);
+    }
+
+    /**
+     * Getter method for the number of dots captured by the move
+     *
+     * @return the number of captured dots
+     */
+    public int getNumberCaptured(){
+        return size;
+    }
+
+    /**
+     * Returns the k-th dot captured by the move
+     *
+     * @param k
+     *            the index of the dot, between 0 and getNumberCaptured()-1
+     * @return the cell id of the dot
+     */
+    public int getCell(int k){
+        return cells[k];
+    }
+
+    /**
+     * Getter method for the selected color before the move
+     *
+     * @return the previous selected color
+     */
+    public int getPreviousColor(){
+        return previousColor;
+    }
+
+    /**
+     * Getter method for the selected color after the move
+     *
+     * @return the selected color
+     */
+    public int getColor(){
+        return color;
+    }
+
+    /**
+     * Returns true if the captured dots changed color during the move
+     *
+     * @return true if the selected color changed
+     */
+    public boolean isColorChanged(){
+        return color != previousColor;
+    }
+
+    /**
+     * Getter method for the number of steps before the move
+     *
+     * @return the previous number of steps
+     */
+    public int getPreviousSteps(){
+        return previousSteps;
+    }
+
+    /**
+     * Getter method for the number of steps after the move
+     *
+     * @return the number of steps
+     */
+    public int getSteps(){
+        return steps;
+    }
+}
@@ -0,0 +1,598 @@
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The class <b>MoveJournal</b> saves a game as it is played, so that it can
+ * be recovered after a crash. It uses two files:
+ *
+ * - a checkpoint, the full game written by <b>GameFile</b> with a sequence
+ *   number
+ * - a journal, starting with the sequence number of the checkpoint it
+ *   applies to, followed by one record of a few bytes for every action of
+ *   the player (initial dot, color, undo, redo, jump in the history, mode,
+ *   direction). A reset or a new game records the seed of the new board,
+ *   or the whole board if it was not generated from a seed.
+ *
+ * The records are appended to a buffer in memory, and a background thread
+ * writes everything appended while it was busy in a single write followed
+ * by a single force (group commit), so recording a move costs the same
+ * whatever the size of the board.
+ *
+ * When the journal becomes larger than the checkpoint, the game is
+ * compacted into a new checkpoint, with the next sequence number, and the
+ * journal is emptied. A journal whose sequence number does not match the
+ * checkpoint is ignored, so a crash during compaction loses nothing.
+ *
+ * Only the last record can be torn by a crash, as the records are written
+ * in order: a record that ends past the end of the journal, or a tail of
+ * zeros, is dropped. A complete record that cannot be played means that
+ * the journal is corrupt: it is set aside, and the game is checkpointed as
+ * replayed up to that record.
+ */
+public class MoveJournal implements Closeable {
+
+    /**
+     * The magic number at the start of the journal, "FLDJ"
+     */
+    public static final int MAGIC = 0x464C444A;
+
+    /**
+     * The journal is never compacted while smaller than this, in bytes
+     */
+    public static final long MIN_COMPACTION = 64 << 10;
+
+    /**
+     * The types of records
+     */
+    private static final byte START = 1;
+    private static final byte PLAY = 2;
+    private static final byte UNDO = 3;
+    private static final byte REDO = 4;
+    private static final byte SEEK = 5;
+    private static final byte MODE = 6;
+    private static final byte DIRECTION = 7;
+    private static final byte RESET = 8;
+    private static final byte NEW_GAME = 9;
+    private static final byte SEEDED_RESET = 10;
+    private static final byte SEEDED_NEW_GAME = 11;
+
+    /**
+     * The size of the header of the journal, in bytes
+     */
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * The checkpoint and journal files
+     */
+    private Path checkpointPath;
+    private Path journalPath;
+    private FileChannel channel;
+
+    /**
+     * The sequence number of the checkpoint, and its size in bytes
+     */
+    private long sequence;
+    private long checkpointSize;
+
+    /**
+     * Guards the buffers and counters below, shared with the writer thread
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The records appended and not yet written, and the buffer being written
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(4096);
+    private ByteBuffer writing = ByteBuffer.allocate(4096);
+
+    /**
+     * The number of bytes appended to the journal, and the number of bytes
+     * written and forced to the storage device
+     */
+    private long appended;
+    private long durable;
+
+    /**
+     * The thread writing the journal, and the error it met, if any
+     */
+    private Thread writer;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Constructor
+     *
+     * @param checkpointPath
+     *            the checkpoint file, for instance savedGame.ser
+     * @param journalPath
+     *            the journal file, for instance savedGame.journal
+     */
+    public MoveJournal(Path checkpointPath, Path journalPath) {
+        this.checkpointPath = checkpointPath;
+        this.journalPath = journalPath;
+    }
+
+    /**
+     * Returns true if the journal applies to the checkpoint and holds no
+     * record, so the checkpoint alone is the state of the game
+     *
+     * @param checkpointPath
+     *            the checkpoint file
+     * @param journalPath
+     *            the journal file
+     * @return true if nothing needs to be replayed
+     */
+    public static boolean isClean(Path checkpointPath, Path journalPath) throws IOException {
+        long sequence = GameFile.readSequence(checkpointPath);
+        if(sequence <= 0 || !Files.exists(journalPath) || Files.size(journalPath) != HEADER_SIZE){
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try(FileChannel journal = FileChannel.open(journalPath, StandardOpenOption.READ)){
+            while(header.hasRemaining()){
+                if(journal.read(header) < 0){
+                    return false;
+                }
+            }
+        }
+        header.flip();
+        return header.getInt() == MAGIC && header.getLong() == sequence;
+    }
+
+    /**
+     * Replays the journal on a game loaded from the checkpoint, then starts
+     * journaling the game. If the journal does not apply to the checkpoint,
+     * it is ignored and a new checkpoint of the game is written. If it holds
+     * a record that cannot be played, a copy of it is set aside and a new
+     * checkpoint of the game, as replayed up to that record, is written.
+     *
+     * @param engine
+     *            the game loaded from the checkpoint, or a new game
+     * @return the number of records replayed
+     */
+    public int open(GameEngine engine) throws IOException {
+        sequence = GameFile.readSequence(checkpointPath);
+        channel = FileChannel.open(journalPath, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        int records = 0;
+        long end = 0;
+        ByteBuffer buffer = readJournal();
+        if(sequence > 0 && buffer.remaining() >= HEADER_SIZE
+                && buffer.getInt() == MAGIC && buffer.getLong() == sequence){
+            end = buffer.position();
+            try{
+                while(!isTorn(buffer)){
+                    replay(buffer, engine);
+                    end = buffer.position();
+                    records++;
+                }
+            }catch(BufferUnderflowException e){
+                // the last record was not completely written before the crash
+            }catch(RuntimeException e){
+                System.out.println("Cannot replay record " + (records + 1) + " of the journal: " + e.getMessage()
+                    + ". Journal kept as " + GameFile.setAside(journalPath, true));
+                end = 0;
+            }
+        }
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        engine.setJournal(this);
+        if(end == 0){
+            checkpoint(engine);
+        } else {
+            channel.truncate(end);
+            channel.position(end);
+            appended = durable = end - HEADER_SIZE;
+            checkpointSize = Files.size(checkpointPath);
+        }
+        return records;
+    }
+
+    /**
+     * Records the selection of the initial dot
+     *
+     * @param row
+     *            the row of the initial dot
+     * @param column
+     *            the column of the initial dot
+     */
+    public void start(int row, int column){
+        synchronized(lock){
+            reserve(9).put(START).putInt(row).putInt(column);
+            commit(9);
+        }
+    }
+
+    /**
+     * Records a new selected color
+     *
+     * @param color
+     *            the selected color
+     */
+    public void play(int color){
+        append(PLAY, color);
+    }
+
+    /**
+     * Records an undo
+     */
+    public void undo(){
+        append(UNDO, -1);
+    }
+
+    /**
+     * Records a redo
+     */
+    public void redo(){
+        append(REDO, -1);
+    }
+
+    /**
+     * Records a jump in the history
+     *
+     * @param step
+     *            the number of moves of the history played after the jump
+     */
+    public void seek(int step){
+        synchronized(lock){
+            reserve(5).put(SEEK).putInt(step);
+            commit(5);
+        }
+    }
+
+    /**
+     * Records a new mode
+     *
+     * @param mode
+     *            the new mode
+     */
+    public void mode(int mode){
+        append(MODE, mode);
+    }
+
+    /**
+     * Records a new direction
+     *
+     * @param direction
+     *            the new direction
+     */
+    public void direction(int direction){
+        append(DIRECTION, direction);
+    }
+
+    /**
+     * Records a reset of the game, which keeps its history
+     *
+     * @param board
+     *            the new board
+     */
+    public void reset(Board board){
+        append(RESET, board);
+    }
+
+    /**
+     * Records a new game, which forgets the history
+     *
+     * @param board
+     *            the new board
+     */
+    public void newGame(Board board){
+        append(NEW_GAME, board);
+    }
+
+    /**
+     * Records a reset of the game on the board generated from a seed
+     *
+     * @param seed
+     *            the seed of the new board
+     */
+    public void reset(long seed){
+        append(SEEDED_RESET, seed);
+    }
+
+    /**
+     * Records a new game on the board generated from a seed
+     *
+     * @param seed
+     *            the seed of the new board
+     */
+    public void newGame(long seed){
+        append(SEEDED_NEW_GAME, seed);
+    }
+
+    /**
+     * Returns true if the journal has become large enough to be compacted
+     * into a new checkpoint
+     *
+     * @return true if checkpoint should be called
+     */
+    public boolean isCheckpointDue(){
+        synchronized(lock){
+            return appended > Math.max(MIN_COMPACTION, checkpointSize);
+        }
+    }
+
+    /**
+     * Writes the game to a new checkpoint and empties the journal. Must be
+     * called from the thread playing the game, like the record methods.
+     *
+     * @param engine
+     *            the game
+     */
+    public void checkpoint(GameEngine engine) throws IOException {
+        Path temporary = Paths.get(checkpointPath + ".tmp");
+        GameFile.write(engine, temporary, Math.max(sequence, 0) + 1);
+        synchronized(lock){
+            awaitDurable();
+            Files.move(temporary, checkpointPath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+            sequence = Math.max(sequence, 0) + 1;
+            checkpointSize = Files.size(checkpointPath);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putLong(sequence).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(false);
+            channel.position(HEADER_SIZE);
+            appended = durable = 0;
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is on the storage device
+     */
+    public void flush() throws IOException {
+        synchronized(lock){
+            awaitDurable();
+        }
+    }
+
+    /**
+     * Writes the pending records and closes the journal
+     */
+    public void close(){
+        synchronized(lock){
+            if(closed){
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        if(writer == null){
+            return;
+        }
+        try{
+            writer.join();
+            channel.close();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }catch(IOException e){
+            System.out.println("Cannot close journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Getter method for the number of bytes appended since the checkpoint
+     *
+     * @return the size of the records of the journal
+     */
+    public long getSize(){
+        synchronized(lock){
+            return appended;
+        }
+    }
+
+    /**
+     * <b>writeLoop</b> is the body of the writer thread: it waits for records,
+     * writes all of them and forces them to the storage device
+     */
+    private void writeLoop(){
+        while(true){
+            long target;
+            synchronized(lock){
+                while(pending.position() == 0 && !closed){
+                    try{
+                        lock.wait();
+                    }catch(InterruptedException e){
+                        return;
+                    }
+                }
+                if(pending.position() == 0){
+                    return;
+                }
+                ByteBuffer swap = writing;
+                writing = pending;
+                pending = swap;
+                pending.clear();
+                target = appended;
+            }
+            writing.flip();
+            try{
+                while(writing.hasRemaining()){
+                    channel.write(writing);
+                }
+                channel.force(false);
+            }catch(IOException e){
+                synchronized(lock){
+                    failure = e;
+                    closed = true;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            writing.clear();
+            synchronized(lock){
+                durable = target;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * <b>awaitDurable</b> is a helper method that waits, holding the lock,
+     * until the writer thread has forced every appended record
+     */
+    private void awaitDurable() throws IOException {
+        while(durable < appended && failure == null){
+            try{
+                lock.wait();
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        if(failure != null){
+            throw failure;
+        }
+    }
+
+    /**
+     * <b>append</b> is a helper method that appends a record made of a type
+     * and an optional byte
+     */
+    private void append(byte type, int value){
+        synchronized(lock){
+            ByteBuffer buffer = reserve(2).put(type);
+            if(value < 0){
+                commit(1);
+            } else {
+                buffer.put((byte)value);
+                commit(2);
+            }
+        }
+    }
+
+    /**
+     * <b>append</b> is a helper method that appends a record made of a type
+     * and a board
+     */
+    private void append(byte type, Board board){
+        synchronized(lock){
+            reserve(1 + board.byteSize()).put(type);
+            board.writeTo(pending);
+            commit(1 + board.byteSize());
+        }
+    }
+
+    /**
+     * <b>append</b> is a helper method that appends a record made of a type
+     * and a long
+     */
+    private void append(byte type, long value){
+        synchronized(lock){
+            reserve(9).put(type).putLong(value);
+            commit(9);
+        }
+    }
+
+    /**
+     * <b>reserve</b> is a helper method that makes room for a record in the
+     * pending buffer, with the lock held
+     */
+    private ByteBuffer reserve(int bytes){
+        if(closed){
+            throw new IllegalStateException("Journal closed");
+        }
+        if(pending.remaining() < bytes){
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2*pending.capacity(), pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        return pending;
+    }
+
+    /**
+     * <b>commit</b> is a helper method that wakes up the writer thread once
+     * a record is appended, with the lock held
+     */
+    private void commit(int bytes){
+        appended += bytes;
+        lock.notifyAll();
+    }
+
+    /**
+     * <b>readJournal</b> is a helper method that reads the whole journal
+     */
+    private ByteBuffer readJournal() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(channel.size(), Integer.MAX_VALUE));
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer, buffer.position()) < 0){
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * <b>isTorn</b> is a helper method that returns true if nothing but
+     * zeros is left in the journal, as after a crash that extended the file
+     * before its records were written
+     */
+    private static boolean isTorn(ByteBuffer buffer){
+        for(int k = buffer.position(); k < buffer.limit(); k++){
+            if(buffer.get(k) != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <b>replay</b> is a helper method that plays one record of the journal
+     * on a game. It throws BufferUnderflowException if the record ends past
+     * the end of the journal, and IllegalArgumentException if its type is
+     * not valid.
+     */
+    private static void replay(ByteBuffer buffer, GameEngine engine){
+        int size = engine.getModel().getSize();
+        byte type = buffer.get();
+        switch(type){
+            case START:
+                int row = buffer.getInt();
+                engine.start(row, buffer.getInt());
+                break;
+            case PLAY:
+                engine.play(buffer.get());
+                break;
+            case UNDO:
+                engine.undo();
+                break;
+            case REDO:
+                engine.redo();
+                break;
+            case SEEK:
+                engine.seek(buffer.getInt());
+                break;
+            case MODE:
+                engine.setMode(buffer.get());
+                break;
+            case DIRECTION:
+                engine.setDirection(buffer.get());
+                break;
+            case RESET:
+                engine.reset(Board.readFrom(buffer, size));
+                break;
+            case NEW_GAME:
+                engine.newGame(Board.readFrom(buffer, size));
+                break;
+            case SEEDED_RESET:
+                engine.reset(buffer.getLong());
+                break;
+            case SEEDED_NEW_GAME:
+                engine.newGame(buffer.getLong());
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid record type " + type);
+        }
+    }
+}
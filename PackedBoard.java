@@ -0,0 +1,208 @@
+import java.io.*;
+/**
+ * The class <b>PackedBoard</b> stores the state of all the dots of a board
+ * using primitive arrays instead of one <b>DotInfo</b> object per dot.
+ *
+ * Every dot is identified by a single int cell id, <code>i*size+j</code>.
+ * - colors are packed two per byte (one nibble per dot)
+ * - the captured state is a bitset of longs (one bit per dot)
+ *
+ * A board of n*n dots therefore uses about 5n<sup>2</sup>/8 bytes, where
+ * the DotInfo[][] representation needed one object (header, x, y, color,
+ * captured) plus one reference per dot.
+ */
+public class PackedBoard implements Board, Serializable {
+
+    /**
+     * The size of the board (number of rows and of columns)
+     */
+    private int size;
+
+    /**
+     * The colors of the dots, two per byte. The dot with an even cell id
+     * is stored in the low nibble.
+     */
+    private byte[] colors;
+
+    /**
+     * The captured state of the dots, one bit per dot
+     */
+    private long[] captured;
+
+    /**
+     * Constructor used to create a board of a given size, all dots
+     * having color 0 and not captured.
+     *
+     * @param size
+     *            the size of the board
+     */
+    public PackedBoard(int size) {
+        this.size = size;
+        int cells = size*size;
+        colors = new byte[(cells + 1) >> 1];
+        captured = new long[(cells + 63) >> 6];
+    }
+
+    /**
+     * Getter method for the size of the board
+     *
+     * @return the size of the board
+     */
+    public int getSize(){
+        return size;
+    }
+
+    /**
+     * Returns the cell id of the dot at location (i,j)
+     *
+     * @param i
+     *            the x coordinate of the dot
+     * @param j
+     *            the y coordinate of the dot
+     * @return the cell id of the dot
+     */
+    public int cell(int i, int j){
+        return i*size + j;
+    }
+
+    /**
+     * Returns the initial color of a cell
+     *
+     * @param cell
+     *            the cell id
+     * @return the color of the cell
+     */
+    public int getColor(int cell){
+        int b = colors[cell >> 1];
+        return ((cell & 1) == 0 ? b : b >> 4) & 0x0F;
+    }
+
+    /**
+     * Sets the initial color of a cell
+     *
+     * @param cell
+     *            the cell id
+     * @param color
+     *            the new color, between 0 and 15
+     */
+    public void setColor(int cell, int color){
+        int index = cell >> 1;
+        if((cell & 1) == 0){
+            colors[index] = (byte)((colors[index] & 0xF0) | (color & 0x0F));
+        } else {
+            colors[index] = (byte)((colors[index] & 0x0F) | ((color & 0x0F) << 4));
+        }
+    }
+
+    /**
+     * Returns true if the cell is captured, false otherwise
+     *
+     * @param cell
+     *            the cell id
+     * @return the captured state of the cell
+     */
+    public boolean isCaptured(int cell){
+        return (captured[cell >> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Sets the captured state of a cell
+     *
+     * @param cell
+     *            the cell id
+     * @param value
+     *            the new captured state
+     */
+    public void setCaptured(int cell, boolean value){
+        if(value){
+            captured[cell >> 6] |= 1L << cell;
+        } else {
+            captured[cell >> 6] &= ~(1L << cell);
+        }
+    }
+
+    /**
+     * Marks every cell as not captured
+     */
+    public void clearCaptured(){
+        java.util.Arrays.fill(captured, 0L);
+    }
+
+    /**
+     * Returns the number of captured cells
+     *
+     * @return the number of bits set in the captured bitset
+     */
+    public int countCaptured(){
+        int count = 0;
+        for(long bits : captured){
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    /**
+     * Writes the colors and the captured bitset of this board to a buffer
+     *
+     * @param buffer
+     *            the buffer, with at least byteSize() bytes remaining
+     */
+    public void writeTo(java.nio.ByteBuffer buffer){
+        buffer.put(colors);
+        buffer.asLongBuffer().put(captured);
+        buffer.position(buffer.position() + 8*captured.length);
+    }
+
+    /**
+     * Reads the colors and the captured bitset written by writeTo into this
+     * board
+     *
+     * @param buffer
+     *            the buffer, positioned at the board
+     */
+    void read(java.nio.ByteBuffer buffer){
+        buffer.get(colors);
+        buffer.asLongBuffer().get(captured);
+        buffer.position(buffer.position() + 8*captured.length);
+    }
+
+    /**
+     * Returns the colors of the dots, two per byte, for BoardGenerator to
+     * fill them in place
+     *
+     * @return the array of colors of this board
+     */
+    byte[] getColors(){
+        return colors;
+    }
+
+    /**
+     * Returns the number of bytes written by writeTo
+     *
+     * @return the size of the board once written, in bytes
+     */
+    public int byteSize(){
+        return colors.length + 8*captured.length;
+    }
+
+    /**
+     * Returns the number of bytes used by the arrays of this board
+     *
+     * @return the size of the colors and captured arrays, in bytes
+     */
+    public long footprint(){
+        return colors.length + 8L*captured.length;
+    }
+
+    /**
+     * This method produces a copy of PackedBoard and returns it.
+     *
+     * @return a copy of current PackedBoard
+     */
+    public PackedBoard clone() throws CloneNotSupportedException{
+        PackedBoard copy = (PackedBoard) super.clone();
+        copy.colors = colors.clone();
+        copy.captured = captured.clone();
+        return copy;
+    }
+}
@@ -0,0 +1,551 @@
+import java.util.Arrays;
+import java.util.concurrent.*;
+
+/**
+ * The class <b>ParallelFloodEngine</b> is a <b>FloodEngine</b> for very large
+ * boards that floods several parts of the board at once on a ForkJoinPool.
+ * The board is split into square tiles of TILE x TILE dots, and each tile
+ * keeps its own frontier, as <b>FrontierFloodEngine</b> does for the whole
+ * board: one bucket of cell ids per color, and one bit per dot of the tile
+ * telling whether it is captured, and whether it is already in a bucket.
+ *
+ * A flood runs in rounds until a fixed point is reached:
+ * - every tile with dots of the selected color in its frontier floods them
+ *   within the tile, the tiles being work-stolen by the threads of the pool.
+ *   A tile only writes its own state, and the neighbours of its captured
+ *   dots that lie in another tile are put in its outbox
+ * - the outboxes are then delivered, in tile order, to the frontiers of
+ *   the tiles they belong to, and the tiles that received dots of the
+ *   selected color flood again in the next round
+ *
+ * A round runs on the calling thread when the frontier of its tiles holds
+ * less than PARALLEL_WORK dots of the selected color, so that the small
+ * moves of a game do not pay for the pool. The board of the model is only
+ * read during the rounds: the captured dots are given to the model and to
+ * the move once the flood is over, tile by tile. The captured dots are
+ * the ones connected to the captured region whatever the order in which
+ * they are found, so the result is the one of the sequential engines, and
+ * the move records them in the same order whatever the number of threads.
+ *
+ * A move undone or redone is replayed on the tiles of its dots, as
+ * <b>FrontierFloodEngine</b> does: a dot leaves the frontier of its tile
+ * by clearing its bit in queued, and is skipped when found in a bucket
+ * without it.
+ */
+
+public class ParallelFloodEngine implements FloodEngine {
+
+    /**
+     * The number of rows and of columns of a tile, a power of 2 so that the
+     * tile of a dot is found with shifts
+     */
+    public static final int TILE_BITS = 8;
+    public static final int TILE = 1 << TILE_BITS;
+
+    /**
+     * Rounds whose tiles hold at least this number of dots of the selected
+     * color in their frontier run on the pool
+     */
+    public static final int PARALLEL_WORK = 1 << 12;
+
+    /**
+     * The pool running the rounds
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The number of dots of the frontier from which a round runs on the pool
+     */
+    private final int parallelWork;
+
+    /**
+     * The model the frontier was computed for
+     */
+    private GameModel model;
+
+    /**
+     * The mode, direction and version of the model when the frontier was
+     * last updated
+     */
+    private int mode;
+    private int direction;
+    private int version;
+
+    /**
+     * The topology of the board, for the mode and direction of the model
+     */
+    private Topology topology;
+
+    /**
+     * The size of the board, and the number of tiles of a row of tiles
+     */
+    private int size;
+    private int tilesPerRow;
+
+    /**
+     * The tiles, row of tiles by row of tiles
+     */
+    private Tile[] tiles;
+
+    /**
+     * The indexes of the tiles flooding in the current round, and of the
+     * tiles that captured dots during the current flood
+     */
+    private IntStack active = new IntStack();
+    private IntStack touched = new IntStack();
+
+    /**
+     * One bit per tile, set when the tile is in active, or in touched
+     */
+    private long[] inActive;
+    private long[] inTouched;
+
+    /**
+     * The number of dots looked at by the last capture or flood
+     */
+    private int visited;
+
+    /**
+     * Constructor used to flood on the common pool
+     */
+    public ParallelFloodEngine() {
+        this(ForkJoinPool.commonPool(), PARALLEL_WORK);
+    }
+
+    /**
+     * Constructor used to flood on a given pool
+     *
+     * @param pool
+     *            the pool running the rounds
+     * @param parallelWork
+     *            the number of dots of the selected color in the frontier
+     *            of the tiles of a round from which the round runs on the
+     *            pool, 0 to always use the pool
+     */
+    public ParallelFloodEngine(ForkJoinPool pool, int parallelWork) {
+        this.pool = pool;
+        this.parallelWork = parallelWork;
+    }
+
+    public int capture(GameModel model, int i, int j, MoveDelta delta) {
+        sync(model);
+        int cell = model.getBoard().cell(i, j);
+        visited = 1;
+        Tile tile = tiles[tileOf(cell)];
+        int local = tile.local(cell);
+        if(tile.isCaptured(local)){
+            return 0;
+        }
+        tile.captured[local >> 6] |= 1L << local;
+        tile.expand(cell);
+        model.capture(cell);
+        if(delta != null){
+            delta.add(cell);
+        }
+        deliver(tile, model.getBoard(), -1);
+        version = model.getVersion();
+        return 1;
+    }
+
+    public int flood(GameModel model, MoveDelta delta) {
+        sync(model);
+        Board board = model.getBoard();
+        final int color = model.getCurrentSelectedColor();
+        visited = 0;
+        active.clear();
+        for(int index = 0; index < tiles.length; index++){
+            if(!tiles[index].buckets[color].isEmpty()){
+                activate(index);
+            }
+        }
+        while(!active.isEmpty()){
+            int[] round = active.toArray();
+            Arrays.sort(round);
+            active.clear();
+            long work = 0;
+            for(int index : round){
+                inActive[index >> 6] &= ~(1L << index);
+                work += tiles[index].buckets[color].getSize();
+            }
+            if(round.length > 1 && work >= parallelWork && pool.getParallelism() > 1){
+                java.util.List<RecursiveAction> tasks = new java.util.ArrayList<RecursiveAction>(round.length);
+                for(final int index : round){
+                    tasks.add(new RecursiveAction() {
+                        protected void compute() {
+                            tiles[index].flood(color);
+                        }
+                    });
+                }
+                pool.invoke(new RecursiveAction() {
+                    protected void compute() {
+                        invokeAll(tasks);
+                    }
+                });
+            } else {
+                for(int index : round){
+                    tiles[index].flood(color);
+                }
+            }
+            for(int index : round){
+                Tile tile = tiles[index];
+                visited += tile.visited;
+                if(!tile.flooded.isEmpty() && (inTouched[index >> 6] & (1L << index)) == 0){
+                    inTouched[index >> 6] |= 1L << index;
+                    touched.push(index);
+                }
+                deliver(tile, board, color);
+            }
+        }
+
+        int[] order = touched.toArray();
+        Arrays.sort(order);
+        touched.clear();
+        int count = 0;
+        for(int index : order){
+            inTouched[index >> 6] &= ~(1L << index);
+            IntStack flooded = tiles[index].flooded;
+            for(int k = 0; k < flooded.getSize(); k++){
+                int cell = flooded.get(k);
+                model.capture(cell);
+                if(delta != null){
+                    delta.add(cell);
+                }
+            }
+            count += flooded.getSize();
+            flooded.clear();
+        }
+        version = model.getVersion();
+        return count;
+    }
+
+    public void replay(GameModel model, MoveDelta delta, boolean undone, int version) {
+        if(model != this.model || version != this.version || delta.isReset() || tiles == null
+            || model.getMode() != mode || model.getDirection() != direction){
+            this.model = null;
+            return;
+        }
+        Board board = model.getBoard();
+        int n = delta.getNumberCaptured();
+        for(int k = 0; k < n; k++){
+            int cell = delta.getCell(k);
+            Tile tile = tiles[tileOf(cell)];
+            int local = tile.local(cell);
+            if(undone){
+                tile.captured[local >> 6] &= ~(1L << local);
+                tile.queued[local >> 6] &= ~(1L << local);
+            } else {
+                tile.captured[local >> 6] |= 1L << local;
+            }
+        }
+        for(int k = 0; k < n; k++){
+            int cell = delta.getCell(k);
+            Tile tile = tiles[tileOf(cell)];
+            if(undone){
+                tile.refresh(cell, board);
+                int count = topology.neighbours(cell, tile.neighbours);
+                for(int m = 0; m < count; m++){
+                    int next = tile.neighbours[m];
+                    tiles[tileOf(next)].refresh(next, board);
+                }
+            } else {
+                tile.expand(cell);
+                deliver(tile, board, -1);
+            }
+        }
+        this.version = version + n;
+    }
+
+    public int getVisited() {
+        return visited;
+    }
+
+    /**
+     * <b>deliver</b> is a helper method that empties the outbox of a tile
+     * into the frontiers of the tiles of its dots, and activates the tiles
+     * receiving a dot of the color being flooded
+     *
+     * @param tile the tile
+     * @param board the board of the model
+     * @param color the color being flooded, or -1
+     */
+    private void deliver(Tile tile, Board board, int color) {
+        IntStack outbox = tile.outbox;
+        for(int k = 0; k < outbox.getSize(); k++){
+            int cell = outbox.get(k);
+            int index = tileOf(cell);
+            Tile target = tiles[index];
+            int local = target.local(cell);
+            if(!target.isCaptured(local) && (target.queued[local >> 6] & (1L << local)) == 0){
+                target.queued[local >> 6] |= 1L << local;
+                int next = board.getColor(cell);
+                target.buckets[next].push(cell);
+                if(next == color){
+                    activate(index);
+                }
+            }
+        }
+        outbox.clear();
+    }
+
+    /**
+     * <b>activate</b> is a helper method that adds a tile to the next round,
+     * unless it is already in it
+     *
+     * @param index the index of the tile
+     */
+    private void activate(int index) {
+        if((inActive[index >> 6] & (1L << index)) == 0){
+            inActive[index >> 6] |= 1L << index;
+            active.push(index);
+        }
+    }
+
+    /**
+     * <b>tileOf</b> is a helper method that returns the index of the tile
+     * of a dot
+     *
+     * @param cell the cell id of the dot
+     * @return the index of its tile
+     */
+    private int tileOf(int cell) {
+        int i = cell / size;
+        int j = cell - i*size;
+        return (i >> TILE_BITS)*tilesPerRow + (j >> TILE_BITS);
+    }
+
+    /**
+     * <b>sync</b> is a helper method that rebuilds the tiles from the
+     * captured dots of the model if they are not up to date. Each tile
+     * rebuilds its own frontier from the board of the model, which is only
+     * read, so the tiles are rebuilt on the pool.
+     *
+     * @param model the model of the game
+     */
+    private void sync(GameModel model) {
+        if(model == this.model && model.getMode() == mode && model.getDirection() == direction
+            && model.getVersion() == version && tiles != null){
+            return;
+        }
+        this.model = model;
+        mode = model.getMode();
+        direction = model.getDirection();
+        version = model.getVersion();
+        topology = model.getTopology();
+
+        final Board board = model.getBoard();
+        if(tiles == null || size != board.getSize()){
+            size = board.getSize();
+            tilesPerRow = (size + TILE - 1) >> TILE_BITS;
+            tiles = new Tile[tilesPerRow*tilesPerRow];
+            for(int index = 0; index < tiles.length; index++){
+                int top = (index / tilesPerRow) << TILE_BITS;
+                int left = (index % tilesPerRow) << TILE_BITS;
+                tiles[index] = new Tile(top, left, Math.min(TILE, size - top), Math.min(TILE, size - left));
+            }
+            inActive = new long[(tiles.length + 63) >> 6];
+            inTouched = new long[(tiles.length + 63) >> 6];
+        }
+        java.util.stream.IntStream range = java.util.stream.IntStream.range(0, tiles.length);
+        if(tiles.length > 1 && pool.getParallelism() > 1){
+            pool.invoke(ForkJoinTask.adapt(() -> range.parallel().forEach(index -> tiles[index].rebuild(board))));
+        } else {
+            range.forEach(index -> tiles[index].rebuild(board));
+        }
+    }
+
+    /**
+     * The class <b>Tile</b> holds the frontier and the captured dots of one
+     * tile. Only one thread at a time works on a tile.
+     */
+    private class Tile {
+
+        /**
+         * The first row and column of the tile, and its numbers of rows and
+         * of columns
+         */
+        private final int top;
+        private final int left;
+        private final int rows;
+        private final int columns;
+
+        /**
+         * One bit per dot of the tile, row by row: set when the dot is
+         * captured, and when it has been put in a bucket
+         */
+        private final long[] captured;
+        private final long[] queued;
+
+        /**
+         * The frontier of the tile: one bucket of cell ids per color
+         */
+        private final IntStack[] buckets;
+
+        /**
+         * The neighbours of the dots captured by the tile that lie in
+         * another tile, waiting to be delivered
+         */
+        private final IntStack outbox = new IntStack();
+
+        /**
+         * The dots captured by the tile during the current flood, in order
+         */
+        private final IntStack flooded = new IntStack();
+
+        /**
+         * Scratch arrays receiving the neighbours of a dot, and the
+         * neighbours of one of them
+         */
+        private final int[] neighbours = new int[8];
+        private final int[] around = new int[8];
+
+        /**
+         * The number of dots looked at by the last flood of the tile
+         */
+        private int visited;
+
+        /**
+         * Constructor
+         */
+        private Tile(int top, int left, int rows, int columns) {
+            this.top = top;
+            this.left = left;
+            this.rows = rows;
+            this.columns = columns;
+            captured = new long[(rows*columns + 63) >> 6];
+            queued = new long[(rows*columns + 63) >> 6];
+            buckets = new IntStack[GameModel.NUMBER_OF_COLORS];
+            for(int color = 0; color < buckets.length; color++){
+                buckets[color] = new IntStack();
+            }
+        }
+
+        /**
+         * <b>local</b> is a helper method that returns the index of a dot of
+         * the tile in its bitsets
+         */
+        private int local(int cell) {
+            int i = cell / size;
+            int j = cell - i*size;
+            return (i - top)*columns + (j - left);
+        }
+
+        /**
+         * <b>isCaptured</b> is a helper method that returns true if a dot of
+         * the tile is captured
+         */
+        private boolean isCaptured(int local) {
+            return (captured[local >> 6] & (1L << local)) != 0;
+        }
+
+        /**
+         * <b>flood</b> is a helper method that captures the dots of a color
+         * of the frontier of the tile, and everything of that color
+         * connected to them within the tile
+         */
+        private void flood(int color) {
+            IntStack bucket = buckets[color];
+            visited = 0;
+            while(!bucket.isEmpty()){
+                int cell = bucket.pop();
+                visited++;
+                int local = local(cell);
+                if(!isCaptured(local) && (queued[local >> 6] & (1L << local)) != 0){
+                    captured[local >> 6] |= 1L << local;
+                    flooded.push(cell);
+                    expand(cell);
+                }
+            }
+        }
+
+        /**
+         * <b>expand</b> is a helper method that puts the neighbours of a
+         * newly captured dot of the tile in its frontier, or in its outbox
+         * when they lie in another tile
+         */
+        private void expand(int cell) {
+            Board board = model.getBoard();
+            int count = topology.neighbours(cell, neighbours);
+            for(int k = 0; k < count; k++){
+                int next = neighbours[k];
+                int row = next / size;
+                int j = next - row*size - left;
+                int i = row - top;
+                if(i < 0 || i >= rows || j < 0 || j >= columns){
+                    outbox.push(next);
+                    continue;
+                }
+                int local = i*columns + j;
+                if(!isCaptured(local) && (queued[local >> 6] & (1L << local)) == 0){
+                    queued[local >> 6] |= 1L << local;
+                    buckets[board.getColor(next)].push(next);
+                }
+            }
+        }
+
+        /**
+         * <b>refresh</b> is a helper method that puts a dot of the tile that
+         * is not captured in its frontier if it is next to a captured dot,
+         * and takes it out of the frontier otherwise
+         */
+        private void refresh(int cell, Board board) {
+            int local = local(cell);
+            if(isCaptured(local)){
+                return;
+            }
+            int count = topology.neighbours(cell, around);
+            boolean border = false;
+            for(int k = 0; k < count && !border; k++){
+                border = board.isCaptured(around[k]);
+            }
+            boolean in = (queued[local >> 6] & (1L << local)) != 0;
+            if(border && !in){
+                queued[local >> 6] |= 1L << local;
+                buckets[board.getColor(cell)].push(cell);
+            } else if(!border && in){
+                queued[local >> 6] &= ~(1L << local);
+            }
+        }
+
+        /**
+         * <b>rebuild</b> is a helper method that computes the captured dots
+         * and the frontier of the tile from the board: a dot is in the
+         * frontier if it is not captured and one of its neighbours, in this
+         * tile or another, is
+         */
+        private void rebuild(Board board) {
+            Arrays.fill(captured, 0L);
+            Arrays.fill(queued, 0L);
+            for(IntStack bucket : buckets){
+                bucket.clear();
+            }
+            outbox.clear();
+            flooded.clear();
+            for(int i = 0; i < rows; i++){
+                int cell = (top + i)*size + left;
+                for(int j = 0; j < columns; j++, cell++){
+                    if(board.isCaptured(cell)){
+                        int local = i*columns + j;
+                        captured[local >> 6] |= 1L << local;
+                    }
+                }
+            }
+            for(int i = 0; i < rows; i++){
+                int cell = (top + i)*size + left;
+                for(int j = 0; j < columns; j++, cell++){
+                    int local = i*columns + j;
+                    if(isCaptured(local)){
+                        continue;
+                    }
+                    int count = topology.neighbours(cell, neighbours);
+                    for(int k = 0; k < count; k++){
+                        if(board.isCaptured(neighbours[k])){
+                            queued[local >> 6] |= 1L << local;
+                            buckets[board.getColor(cell)].push(cell);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+import java.util.Random;
+/**
+ * The class <b>RandomStrategy</b> is a <b>Strategy</b> that plays a random
+ * color among the ones that are not currently selected.
+ */
+public class RandomStrategy implements Strategy {
+
+    /**
+     * Random generator
+     */
+    private Random generator;
+
+    /**
+     * Constructor
+     *
+     * @param seed
+     *            the seed of the random generator
+     */
+    public RandomStrategy(long seed) {
+        generator = new Random(seed);
+    }
+
+    public int nextColor(GameEngine engine) {
+        int current = engine.getModel().getCurrentSelectedColor();
+        int color = generator.nextInt(GameModel.NUMBER_OF_COLORS - 1);
+        return color < current ? color : color + 1;
+    }
+}
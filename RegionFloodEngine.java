@@ -0,0 +1,238 @@
+/**
+ * The class <b>RegionFloodEngine</b> is a <b>FloodEngine</b> that plays on the
+ * <b>RegionGraph</b> of the model instead of dot by dot. It keeps the
+ * frontier of the captured region as regions, in one bucket per color, so
+ * selecting a color merges whole regions into the captured one and only
+ * looks at the neighbours of the merged regions. The dots of a merged
+ * region are written to the model in one pass, for the view.
+ *
+ * As for <b>FrontierFloodEngine</b>, the state is rebuilt from the model
+ * only when the model changed behind the engine's back, or after a move
+ * is undone or redone.
+ *
+ * The game does not use this engine: the model keeps its dots one by one,
+ * so the dots of the merged regions are still captured one at a time, and
+ * <b>BitboardFloodEngine</b> is faster. It is kept as the reference engine
+ * playing on the same <b>RegionGraph</b> as the <b>Solver</b>, checked
+ * against the other engines by FloodEngineTest and measured by
+ * AllocationBenchmark.
+ */
+
+public class RegionFloodEngine implements FloodEngine {
+
+    /**
+     * The model and region graph the frontier was computed for
+     */
+    private GameModel model;
+    private RegionGraph graph;
+
+    /**
+     * The version of the model when the frontier was last updated
+     */
+    private int version;
+
+    /**
+     * The frontier: one bucket of region ids per color
+     */
+    private IntStack[] buckets;
+
+    /**
+     * The regions partly captured when the frontier is rebuilt, and the
+     * neighbours of a dot
+     */
+    private IntStack partial = new IntStack();
+    private int[] neighbours = new int[8];
+
+    /**
+     * The number of dots looked at by the last capture or flood
+     */
+    private int visited;
+
+    /**
+     * One bit per region, set when all the dots of the region are captured
+     */
+    private long[] captured;
+
+    /**
+     * One bit per region, set when the region has been put in a bucket
+     */
+    private long[] queued;
+
+    /**
+     * Constructor
+     */
+    public RegionFloodEngine() {
+        buckets = new IntStack[GameModel.NUMBER_OF_COLORS];
+        for(int color = 0; color < buckets.length; color++){
+            buckets[color] = new IntStack();
+        }
+    }
+
+    public int capture(GameModel model, int i, int j, MoveDelta delta) {
+        sync(model);
+        int cell = model.getBoard().cell(i, j);
+        visited = 1;
+        if(model.getBoard().isCaptured(cell)){
+            return 0;
+        }
+        model.capture(cell);
+        if(delta != null){
+            delta.add(cell);
+        }
+        enqueue(graph.regionOf(cell));
+        version = model.getVersion();
+        return 1;
+    }
+
+    public int flood(GameModel model, MoveDelta delta) {
+        sync(model);
+        Board board = model.getBoard();
+        int color = model.getCurrentSelectedColor();
+        int count = 0;
+        IntStack bucket = buckets[color];
+        visited = 0;
+        while(!bucket.isEmpty()){
+            int region = bucket.pop();
+            if(isSet(captured, region)){
+                continue;
+            }
+            captured[region >> 6] |= 1L << region;
+            int size = graph.sizeOf(region);
+            visited += size;
+            for(int k = 0; k < size; k++){
+                int cell = graph.cellOf(region, k);
+                if(!board.isCaptured(cell)){
+                    model.capture(cell);
+                    if(delta != null){
+                        delta.add(cell);
+                    }
+                    count++;
+                }
+            }
+            expand(region);
+        }
+        version = model.getVersion();
+        return count;
+    }
+
+    public void replay(GameModel model, MoveDelta delta, boolean undone, int version) {
+        // regions may be left partly captured: rebuilt on the next call
+        this.model = null;
+    }
+
+    public int getVisited() {
+        return visited;
+    }
+
+    /**
+     * <b>sync</b> is a helper method that rebuilds the captured regions and
+     * the frontier from the captured dots of the model if they are not up
+     * to date
+     *
+     * @param model the model of the game
+     */
+    private void sync(GameModel model) {
+        RegionGraph current = model.getRegionGraph();
+        if(model == this.model && current == graph && model.getVersion() == version){
+            return;
+        }
+        this.model = model;
+        graph = current;
+        version = model.getVersion();
+
+        int regions = graph.getNumberOfRegions();
+        if(captured == null || captured.length != (regions + 63) >> 6){
+            captured = new long[(regions + 63) >> 6];
+            queued = new long[(regions + 63) >> 6];
+        } else {
+            java.util.Arrays.fill(captured, 0L);
+            java.util.Arrays.fill(queued, 0L);
+        }
+        for(IntStack bucket : buckets){
+            bucket.clear();
+        }
+        partial.clear();
+
+        Board board = model.getBoard();
+        for(int region = 0; region < regions; region++){
+            int size = graph.sizeOf(region);
+            int count = 0;
+            for(int k = 0; k < size; k++){
+                if(board.isCaptured(graph.cellOf(region, k))){
+                    count++;
+                }
+            }
+            if(count == size){
+                captured[region >> 6] |= 1L << region;
+            } else if(count > 0){
+                // only the initial dot is captured, or the regions were
+                // labelled again after a change of mode or direction
+                partial.push(region);
+            }
+        }
+        for(int region = 0; region < regions; region++){
+            if(isSet(captured, region)){
+                expand(region);
+            }
+        }
+        Topology topology = model.getTopology();
+        while(!partial.isEmpty()){
+            int region = partial.pop();
+            enqueue(region);
+            int size = graph.sizeOf(region);
+            for(int k = 0; k < size; k++){
+                int cell = graph.cellOf(region, k);
+                if(board.isCaptured(cell)){
+                    int count = topology.neighbours(cell, neighbours);
+                    for(int n = 0; n < count; n++){
+                        int next = graph.regionOf(neighbours[n]);
+                        if(!isSet(captured, next)){
+                            enqueue(next);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * <b>expand</b> is a helper method that puts the neighbours of a newly
+     * captured region in the frontier
+     *
+     * @param region the region id of the captured region
+     */
+    private void expand(int region) {
+        int degree = graph.degreeOf(region);
+        for(int k = 0; k < degree; k++){
+            int next = graph.neighbourOf(region, k);
+            if(!isSet(captured, next)){
+                enqueue(next);
+            }
+        }
+    }
+
+    /**
+     * <b>enqueue</b> is a helper method that puts a region in the bucket of
+     * its color, unless it is already there
+     *
+     * @param region the region id
+     */
+    private void enqueue(int region) {
+        if(isSet(queued, region)){
+            return;
+        }
+        queued[region >> 6] |= 1L << region;
+        buckets[graph.colorOf(region)].push(region);
+    }
+
+    /**
+     * <b>isSet</b> is a helper method that tests a bit of a bitset
+     *
+     * @param bits the bitset
+     * @param index the index of the bit
+     * @return true if the bit is set
+     */
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >> 6] & (1L << index)) != 0;
+    }
+}
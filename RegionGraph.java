@@ -0,0 +1,221 @@
+/**
+ * The class <b>RegionGraph</b> is the graph of the connected regions of dots
+ * of the same color of a board, for a given mode and direction. Since the
+ * captured dots always form a union of such regions, the game can be played
+ * on this graph instead of dot by dot.
+ *
+ * The graph is stored in flat arrays:
+ * - the region of every dot
+ * - the color and the dots of every region
+ * - the neighbouring regions of every region
+ *
+ * It only depends on the initial colors of the board, so it does not change
+ * during a game and can be shared by copies of a <b>GameModel</b>.
+ */
+public class RegionGraph {
+
+    /**
+     * The region id of every dot, indexed by cell id
+     */
+    private int[] regionOf;
+
+    /**
+     * The color of every region
+     */
+    private byte[] colorOf;
+
+    /**
+     * The dots of region r are cells[cellStart[r]] to cells[cellStart[r+1]-1]
+     */
+    private int[] cellStart;
+    private int[] cells;
+
+    /**
+     * The neighbours of region r are adjacent[adjacentStart[r]] to
+     * adjacent[adjacentStart[r+1]-1]
+     */
+    private int[] adjacentStart;
+    private int[] adjacent;
+
+    /**
+     * The number of regions
+     */
+    private int numberOfRegions;
+
+    /**
+     * The mode and the direction used to label the regions
+     */
+    private int mode;
+    private int direction;
+
+    /**
+     * Constructor labelling the regions of a model, using its current mode
+     * and direction. The labelling is a linear breadth first scan.
+     *
+     * @param model
+     *            the model of the game
+     */
+    public RegionGraph(GameModel model) {
+        Board board = model.getBoard();
+        mode = model.getMode();
+        direction = model.getDirection();
+        int total = board.getSize()*board.getSize();
+        Topology topology = model.getTopology();
+        int[] neighbours = new int[topology.getMaxDegree()];
+
+        regionOf = new int[total];
+        java.util.Arrays.fill(regionOf, -1);
+        cells = new int[total];
+        int[] starts = new int[16];
+        byte[] colors = new byte[16];
+
+        // cells doubles as the queue of the breadth first scan, so the
+        // dots of each region end up stored next to each other
+        int tail = 0;
+        for(int seed = 0; seed < total; seed++){
+            if(regionOf[seed] != -1){
+                continue;
+            }
+            if(numberOfRegions == starts.length){
+                starts = java.util.Arrays.copyOf(starts, 2*numberOfRegions);
+                colors = java.util.Arrays.copyOf(colors, 2*numberOfRegions);
+            }
+            int color = board.getColor(seed);
+            starts[numberOfRegions] = tail;
+            colors[numberOfRegions] = (byte) color;
+            regionOf[seed] = numberOfRegions;
+            int head = tail;
+            cells[tail++] = seed;
+            while(head < tail){
+                int count = topology.neighbours(cells[head++], neighbours);
+                for(int k = 0; k < count; k++){
+                    int next = neighbours[k];
+                    if(regionOf[next] == -1 && board.getColor(next) == color){
+                        regionOf[next] = numberOfRegions;
+                        cells[tail++] = next;
+                    }
+                }
+            }
+            numberOfRegions++;
+        }
+        cellStart = java.util.Arrays.copyOf(starts, numberOfRegions + 1);
+        cellStart[numberOfRegions] = total;
+        colorOf = java.util.Arrays.copyOf(colors, numberOfRegions);
+
+        // neighbouring regions, without duplicates
+        int[] lastSeen = new int[numberOfRegions];
+        java.util.Arrays.fill(lastSeen, -1);
+        adjacentStart = new int[numberOfRegions + 1];
+        adjacent = new int[Math.max(16, 2*numberOfRegions)];
+        int size = 0;
+        for(int r = 0; r < numberOfRegions; r++){
+            adjacentStart[r] = size;
+            for(int c = cellStart[r]; c < cellStart[r + 1]; c++){
+                int count = topology.neighbours(cells[c], neighbours);
+                for(int k = 0; k < count; k++){
+                    int other = regionOf[neighbours[k]];
+                    if(other != r && lastSeen[other] != r){
+                        lastSeen[other] = r;
+                        if(size == adjacent.length){
+                            adjacent = java.util.Arrays.copyOf(adjacent, 2*size);
+                        }
+                        adjacent[size++] = other;
+                    }
+                }
+            }
+        }
+        adjacentStart[numberOfRegions] = size;
+        adjacent = java.util.Arrays.copyOf(adjacent, size);
+    }
+
+    /**
+     * Returns true if the regions were labelled for the mode and the
+     * direction of a model
+     *
+     * @param model
+     *            the model of the game
+     * @return true if the graph can be used with the model
+     */
+    public boolean matches(GameModel model){
+        return model.getMode() == mode && model.getDirection() == direction;
+    }
+
+    /**
+     * Getter method for the number of regions
+     *
+     * @return the number of regions
+     */
+    public int getNumberOfRegions(){
+        return numberOfRegions;
+    }
+
+    /**
+     * Returns the region of a dot
+     *
+     * @param cell
+     *            the cell id of the dot
+     * @return the region id of the dot
+     */
+    public int regionOf(int cell){
+        return regionOf[cell];
+    }
+
+    /**
+     * Returns the color of a region
+     *
+     * @param region
+     *            the region id
+     * @return the color of the region
+     */
+    public int colorOf(int region){
+        return colorOf[region];
+    }
+
+    /**
+     * Returns the number of dots of a region
+     *
+     * @param region
+     *            the region id
+     * @return the number of dots of the region
+     */
+    public int sizeOf(int region){
+        return cellStart[region + 1] - cellStart[region];
+    }
+
+    /**
+     * Returns the k-th dot of a region
+     *
+     * @param region
+     *            the region id
+     * @param k
+     *            the index of the dot, between 0 and sizeOf(region)-1
+     * @return the cell id of the dot
+     */
+    public int cellOf(int region, int k){
+        return cells[cellStart[region] + k];
+    }
+
+    /**
+     * Returns the number of neighbours of a region
+     *
+     * @param region
+     *            the region id
+     * @return the number of neighbouring regions
+     */
+    public int degreeOf(int region){
+        return adjacentStart[region + 1] - adjacentStart[region];
+    }
+
+    /**
+     * Returns the k-th neighbour of a region
+     *
+     * @param region
+     *            the region id
+     * @param k
+     *            the index of the neighbour, between 0 and degreeOf(region)-1
+     * @return the region id of the neighbour
+     */
+    public int neighbourOf(int region, int k){
+        return adjacent[adjacentStart[region] + k];
+    }
+}
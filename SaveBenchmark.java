@@ -0,0 +1,147 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The class <b>SaveBenchmark</b> compares the time needed to save and load a
+ * game, and the size of the file, with Java serialization (the format of
+ * savedGame.ser in the previous versions) and with <b>GameFile</b>. The time
+ * needed to read only the current board, which is all the application waits
+ * for before showing the game, is also measured.
+ *
+ * The game is played by the <b>GreedyStrategy</b> on a seeded board and
+ * restarted when finished, until its history holds the requested number of
+ * moves. The options are given as key=value pairs, for instance:
+ *
+ * java SaveBenchmark size=200 moves=5000 runs=10
+ */
+public class SaveBenchmark {
+
+    /**
+     * The options of the benchmark, with their default values
+     */
+    private int size = 100;
+    private int moves = 1000;
+    private int runs = 10;
+    private long seed = 0;
+
+    /**
+     * Constructor parsing the options of the benchmark
+     *
+     * @param args
+     *            the options, as key=value pairs
+     */
+    public SaveBenchmark(String[] args) {
+        for(String arg : args){
+            int index = arg.indexOf('=');
+            if(index < 0){
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            String key = arg.substring(0, index);
+            String value = arg.substring(index + 1);
+            if(key.equals("size")){
+                size = Integer.parseInt(value);
+            } else if(key.equals("moves")){
+                moves = Integer.parseInt(value);
+            } else if(key.equals("runs")){
+                runs = Integer.parseInt(value);
+            } else if(key.equals("seed")){
+                seed = Long.parseLong(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + key);
+            }
+        }
+    }
+
+    /**
+     * Plays the game, then saves and loads it runs times in both formats and
+     * prints the best times and the sizes of the files.
+     */
+    public void run() throws IOException, ClassNotFoundException {
+        GameEngine engine = new GameEngine(size, seed);
+        Strategy player = new GreedyStrategy();
+        engine.start(0, 0);
+        while(engine.getHistory().getSize() < moves){
+            if(engine.isFinished()){
+                engine.reset();
+                engine.start(0, 0);
+            } else {
+                engine.play(player.nextColor(engine));
+            }
+        }
+
+        Path serialized = Files.createTempFile("floodit", ".ser");
+        Path binary = Files.createTempFile("floodit", ".bin");
+        try{
+            long[] serialTimes = {Long.MAX_VALUE, Long.MAX_VALUE};
+            long[] binaryTimes = {Long.MAX_VALUE, Long.MAX_VALUE};
+            long modelTime = Long.MAX_VALUE;
+            for(int run = 0; run < runs; run++){
+                long start = System.nanoTime();
+                try(ObjectOutputStream os = new ObjectOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(serialized)))){
+                    os.writeObject(engine.getModel());
+                    os.writeObject(engine.getHistory());
+                }
+                long middle = System.nanoTime();
+                try(ObjectInputStream is = new ObjectInputStream(
+                        new BufferedInputStream(Files.newInputStream(serialized)))){
+                    is.readObject();
+                    is.readObject();
+                }
+                long end = System.nanoTime();
+                serialTimes[0] = Math.min(serialTimes[0], middle - start);
+                serialTimes[1] = Math.min(serialTimes[1], end - middle);
+
+                start = System.nanoTime();
+                GameFile.write(engine, binary);
+                middle = System.nanoTime();
+                GameEngine loaded = GameFile.read(binary);
+                end = System.nanoTime();
+                binaryTimes[0] = Math.min(binaryTimes[0], middle - start);
+                binaryTimes[1] = Math.min(binaryTimes[1], end - middle);
+
+                start = System.nanoTime();
+                GameFile.readModel(binary);
+                modelTime = Math.min(modelTime, System.nanoTime() - start);
+                if(!loaded.getModel().toString().equals(engine.getModel().toString())){
+                    throw new IllegalStateException("Game not restored");
+                }
+            }
+
+            System.out.printf("Board %dx%d, %d moves in the history, best of %d runs%n",
+                size, size, engine.getHistory().getSize(), runs);
+            print("Serialization", Files.size(serialized), serialTimes);
+            print("GameFile", Files.size(binary), binaryTimes);
+            System.out.printf("%-14s %10s        load %8.2f ms (board only, shown before the history)%n",
+                "GameFile", "", modelTime / 1e6);
+            System.out.printf("Size reduction: %.1fx%n", (double)Files.size(serialized) / Files.size(binary));
+        } finally {
+            Files.delete(serialized);
+            Files.delete(binary);
+        }
+    }
+
+    /**
+     * <b>print</b> is a helper method that prints the results of a format
+     */
+    private static void print(String format, long bytes, long[] times){
+        System.out.printf("%-14s %10d bytes, save %8.2f ms, load %8.2f ms%n",
+            format, bytes, times[0] / 1e6, times[1] / 1e6);
+    }
+
+   /**
+     * <b>main</b> of the benchmark.
+     *
+     * @param args
+     *            the options of the benchmark, as key=value pairs
+     */
+    public static void main(String[] args) throws Exception {
+        try{
+            new SaveBenchmark(args).run();
+        } catch(IllegalArgumentException e){
+            System.out.println(e.getMessage());
+            System.out.println("Usage: java SaveBenchmark [size=100] [moves=1000] [runs=10] [seed=0]");
+        }
+    }
+}
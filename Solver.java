@@ -0,0 +1,647 @@
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * The class <b>Solver</b> finds the minimum number of colors to select to
+ * finish a game, from the current state of a <b>GameModel</b>. It searches the
+ * <b>RegionGraph</b> of the model with IDA*:
+ * - a state is the set of captured regions, stored as a bitset
+ * - the lower bound of a state is the largest of the number of colors not
+ *   captured yet and of the distance, in the region graph, from the captured
+ *   regions to the farthest region
+ * - a color that can be captured entirely is always played first, without
+ *   trying the other colors
+ * - a <b>TranspositionTable</b> prunes the states already reached with fewer
+ *   moves. A state is hashed with the <b>Zobrist</b> keys of the dots of its
+ *   captured regions, so its hash is the one of the captured dots of a
+ *   <b>GameModel</b> in that state.
+ *
+ * The subtrees below the root are searched in parallel on a ForkJoinPool.
+ * The search can be bounded in time and in number of nodes, and cancelled
+ * from another thread; it then returns the best plan found so far, which
+ * starts with the plan of a beam search.
+ */
+public class Solver {
+
+    /**
+     * The result of a search: a list of colors to select, and whether it is
+     * known to be optimal.
+     */
+    public static class Plan {
+
+        private int[] colors;
+        private boolean optimal;
+        private int lowerBound;
+        private long nodes;
+
+        private Plan(int[] colors, boolean optimal, int lowerBound, long nodes) {
+            this.colors = colors;
+            this.optimal = optimal;
+            this.lowerBound = lowerBound;
+            this.nodes = nodes;
+        }
+
+        /**
+         * Getter method for the colors to select, in order
+         *
+         * @return the colors of the plan
+         */
+        public int[] getColors() {
+            return colors.clone();
+        }
+
+        /**
+         * Getter method for the number of moves of the plan
+         *
+         * @return the number of colors to select
+         */
+        public int getLength() {
+            return colors.length;
+        }
+
+        /**
+         * Returns true if no plan with fewer moves exists
+         *
+         * @return true if the plan is optimal
+         */
+        public boolean isOptimal() {
+            return optimal;
+        }
+
+        /**
+         * Getter method for the proven lower bound of the number of moves
+         *
+         * @return the number of moves any plan needs at least
+         */
+        public int getLowerBound() {
+            return lowerBound;
+        }
+
+        /**
+         * Getter method for the number of states searched
+         *
+         * @return the number of nodes
+         */
+        public long getNodes() {
+            return nodes;
+        }
+    }
+
+    /**
+     * Value returned by the search when a plan is found
+     */
+    private static final int FOUND = -1;
+
+    /**
+     * Number of nodes between two checks of the budget
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * Number of states kept by the beam search building the first plan
+     */
+    private static final int BEAM_WIDTH = 64;
+
+    /**
+     * The number of entries of the transposition table of the first
+     * iteration
+     */
+    private static final int MIN_TABLE = 1 << 12;
+
+    /**
+     * The region graph, and for each region its neighbours as a bitset
+     */
+    private RegionGraph graph;
+    private long[][] adjacent;
+
+    /**
+     * For each color, the regions of that color
+     */
+    private long[][] colorMask;
+
+    /**
+     * The keys of the regions, used to hash the states: the XOR of the
+     * Zobrist keys of their dots
+     */
+    private long[] keys;
+
+    /**
+     * The number of longs of a bitset of regions
+     */
+    private int words;
+
+    /**
+     * The initial state: captured regions and frontier
+     */
+    private long[] rootCaptured;
+    private long[] rootFrontier;
+
+    /**
+     * The pool running the search
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * The state of the current search
+     */
+    private volatile boolean cancelled;
+    private volatile int[] solution;
+    private long start;
+    private long maxNanos;
+    private long maxNodes;
+    private LongAdder nodes = new LongAdder();
+    private TranspositionTable table;
+
+    /**
+     * Constructor used to solve the game from the current state of a model.
+     * If the initial dot is not selected yet, the game is solved from the
+     * top left dot.
+     *
+     * @param model
+     *            the model of the game
+     */
+    public Solver(GameModel model) {
+        this(model, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor used to solve the game from the current state of a model,
+     * on a given pool.
+     *
+     * @param model
+     *            the model of the game
+     * @param pool
+     *            the pool running the search
+     */
+    public Solver(GameModel model, ForkJoinPool pool) {
+        this.pool = pool;
+        graph = model.getRegionGraph();
+        int regions = graph.getNumberOfRegions();
+        words = (regions + 63) >> 6;
+
+        adjacent = new long[regions][words];
+        colorMask = new long[GameModel.NUMBER_OF_COLORS][words];
+        keys = new long[regions];
+        for(int region = 0; region < regions; region++){
+            set(colorMask[graph.colorOf(region)], region);
+            for(int k = 0; k < graph.degreeOf(region); k++){
+                set(adjacent[region], graph.neighbourOf(region, k));
+            }
+            for(int k = 0; k < graph.sizeOf(region); k++){
+                keys[region] ^= Zobrist.cellKey(graph.cellOf(region, k));
+            }
+        }
+
+        rootCaptured = new long[words];
+        Board board = model.getBoard();
+        if(model.allDotsNotCaptured()){
+            set(rootCaptured, graph.regionOf(0));
+        } else {
+            for(int region = 0; region < regions; region++){
+                if(board.isCaptured(graph.cellOf(region, 0))){
+                    set(rootCaptured, region);
+                }
+            }
+        }
+        rootFrontier = new long[words];
+        for(int region = 0; region < regions; region++){
+            if(isSet(rootCaptured, region)){
+                or(rootFrontier, adjacent[region]);
+            }
+        }
+        andNot(rootFrontier, rootCaptured);
+    }
+
+    /**
+     * Finds an optimal plan, without any budget.
+     *
+     * @return an optimal plan
+     */
+    public Plan solve() {
+        return solve(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Finds the best plan possible within a budget. The returned plan is
+     * optimal if the search completed.
+     *
+     * @param millis
+     *            the maximum time of the search, in milliseconds
+     * @param budget
+     *            the maximum number of states to search
+     * @return the best plan found
+     */
+    public Plan solve(long millis, long budget) {
+        cancelled = false;
+        solution = null;
+        nodes.reset();
+        start = System.nanoTime();
+        maxNanos = millis >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE : millis*1000000;
+        maxNodes = budget;
+
+        int[] best = beam(BEAM_WIDTH);
+        int bound = lowerBound(rootCaptured, rootFrontier, new long[words], new long[words], new long[words],
+            new int[adjacent.length + 1]);
+        while(bound < best.length && !exhausted()){
+            prepareTable();
+            final int limit = bound;
+            int next = pool.invoke(new RecursiveTask<Integer>() {
+                protected Integer compute() {
+                    return searchRoot(limit);
+                }
+            });
+            if(solution != null){
+                best = solution;
+                break;
+            }
+            if(exhausted()){
+                break;
+            }
+            bound = next;
+        }
+        boolean optimal = solution != null || bound >= best.length;
+        return new Plan(best, optimal, Math.min(bound, best.length), nodes.sum());
+    }
+
+    /**
+     * <b>prepareTable</b> is a helper method that empties the transposition
+     * table before an iteration. The table starts small, so that an easy
+     * game is not slowed down by clearing a large one, and grows with the
+     * number of states searched so far, each iteration searching more
+     * states than the previous ones.
+     */
+    private void prepareTable() {
+        long searched = nodes.sum();
+        int wanted = (int)Math.min(TranspositionTable.DEFAULT_CAPACITY, Math.max(MIN_TABLE, 4*searched));
+        if(table == null || table.getCapacity() < wanted){
+            table = new TranspositionTable(wanted);
+        } else {
+            table.clear();
+        }
+    }
+
+    /**
+     * Stops the current search. The search returns the best plan found so far.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * <b>searchRoot</b> is a helper method that searches the subtrees of the
+     * moves of the root in parallel
+     *
+     * @param bound the maximum number of moves of this iteration
+     * @return the smallest number of moves exceeding the bound
+     */
+    private int searchRoot(final int bound) {
+        int[] colors = moves(rootCaptured, rootFrontier);
+        java.util.List<RecursiveTask<Integer>> tasks = new java.util.ArrayList<RecursiveTask<Integer>>();
+        for(final int color : colors){
+            tasks.add(new RecursiveTask<Integer>() {
+                protected Integer compute() {
+                    Search search = new Search(bound);
+                    search.path[0] = color;
+                    long[] captured = rootCaptured.clone();
+                    long[] frontier = rootFrontier.clone();
+                    long hash = play(captured, frontier, color, hashOf(rootCaptured));
+                    return search.dfs(captured, frontier, hash, 1);
+                }
+            });
+        }
+        int next = Integer.MAX_VALUE;
+        for(RecursiveTask<Integer> task : ForkJoinTask.invokeAll(tasks)){
+            int value = task.join();
+            if(value != FOUND){
+                next = Math.min(next, value);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * The state of one depth first search: the scratch bitsets of every
+     * depth and the colors played.
+     */
+    private class Search {
+
+        private int bound;
+        private int[] path;
+        private long[][] captured;
+        private long[][] frontier;
+        private long[] visited = new long[words];
+        private long[] layer = new long[words];
+        private long[] next = new long[words];
+        private int[] layers = new int[adjacent.length + 1];
+        private int count;
+
+        private Search(int bound) {
+            this.bound = bound;
+            path = new int[bound + 1];
+            captured = new long[bound + 1][words];
+            frontier = new long[bound + 1][words];
+        }
+
+        /**
+         * Searches the plans of at most bound moves from a state
+         *
+         * @return FOUND, or the smallest number of moves exceeding the bound
+         */
+        private int dfs(long[] capturedNow, long[] frontierNow, long hash, int depth) {
+            if(++count == CHECK_INTERVAL){
+                nodes.add(count);
+                count = 0;
+                if(exhausted()){
+                    return Integer.MAX_VALUE;
+                }
+            }
+            if(solution != null || cancelled){
+                return Integer.MAX_VALUE;
+            }
+            int estimate = depth + lowerBound(capturedNow, frontierNow, visited, layer, next, layers);
+            if(estimate > bound){
+                return estimate;
+            }
+            if(isEmpty(frontierNow)){
+                int[] plan = java.util.Arrays.copyOf(path, depth);
+                synchronized(Solver.this){
+                    if(solution == null){
+                        solution = plan;
+                    }
+                }
+                return FOUND;
+            }
+            if(table.visit(hash, depth)){
+                return Integer.MAX_VALUE;
+            }
+
+            int result = Integer.MAX_VALUE;
+            for(int move : moves(capturedNow, frontierNow)){
+                long[] c = captured[depth];
+                long[] f = frontier[depth];
+                System.arraycopy(capturedNow, 0, c, 0, words);
+                System.arraycopy(frontierNow, 0, f, 0, words);
+                long h = play(c, f, move, hash);
+                path[depth] = move;
+                int value = dfs(c, f, h, depth + 1);
+                if(value == FOUND){
+                    return FOUND;
+                }
+                result = Math.min(result, value);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * <b>moves</b> is a helper method that lists the colors worth playing from
+     * a state, the ones capturing more regions first. If a color can be
+     * captured entirely, it is the only move. The current selected color
+     * has no region in the frontier, so it is never tried.
+     *
+     * @param captured the captured regions
+     * @param frontier the regions next to the captured ones
+     * @return the colors to try
+     */
+    private int[] moves(long[] captured, long[] frontier) {
+        int[] gain = new int[GameModel.NUMBER_OF_COLORS];
+        int count = 0;
+        for(int color = 0; color < GameModel.NUMBER_OF_COLORS; color++){
+            long[] mask = colorMask[color];
+            boolean complete = true;
+            for(int w = 0; w < words; w++){
+                gain[color] += Long.bitCount(frontier[w] & mask[w]);
+                if((mask[w] & ~captured[w] & ~frontier[w]) != 0){
+                    complete = false;
+                }
+            }
+            if(gain[color] > 0){
+                if(complete){
+                    return new int[] {color};
+                }
+                count++;
+            }
+        }
+        int[] colors = new int[count];
+        for(int k = 0; k < count; k++){
+            int best = -1;
+            for(int color = 0; color < GameModel.NUMBER_OF_COLORS; color++){
+                if(gain[color] > 0 && (best == -1 || gain[color] > gain[best])){
+                    best = color;
+                }
+            }
+            colors[k] = best;
+            gain[best] = 0;
+        }
+        return colors;
+    }
+
+    /**
+     * <b>play</b> is a helper method that selects a color: the frontier
+     * regions of that color are captured and their neighbours join the
+     * frontier
+     *
+     * @param captured the captured regions, updated
+     * @param frontier the frontier, updated
+     * @param color the selected color
+     * @param hash the hash of the captured regions
+     * @return the hash of the new captured regions
+     */
+    private long play(long[] captured, long[] frontier, int color, long hash) {
+        long[] mask = colorMask[color];
+        for(int w = 0; w < words; w++){
+            long gained = frontier[w] & mask[w];
+            captured[w] |= gained;
+            frontier[w] &= ~gained;
+            while(gained != 0){
+                int region = (w << 6) + Long.numberOfTrailingZeros(gained);
+                gained &= gained - 1;
+                hash ^= keys[region];
+                or(frontier, adjacent[region]);
+            }
+        }
+        andNot(frontier, captured);
+        return hash;
+    }
+
+    /**
+     * <b>lowerBound</b> is a helper method that computes a number of moves
+     * needed at least to finish the game from a state. A move captures at
+     * most one more layer of regions around the captured ones, so the
+     * regions at distance d or more are all still there after d-1 moves,
+     * and each of their colors needs one more move. The bound is the
+     * largest value of d-1 plus the number of colors at distance d or more;
+     * it is never smaller than the number of colors left nor than the
+     * distance to the farthest region.
+     *
+     * @param captured the captured regions
+     * @param frontier the regions next to the captured ones
+     * @param visited scratch bitset
+     * @param layer scratch bitset
+     * @param next scratch bitset
+     * @param layerColors scratch array receiving the colors of each
+     *        layer, with one more entry than there are regions
+     * @return the lower bound
+     */
+    private int lowerBound(long[] captured, long[] frontier, long[] visited, long[] layer, long[] next,
+                           int[] layerColors) {
+        int distance = 0;
+        System.arraycopy(captured, 0, visited, 0, words);
+        System.arraycopy(frontier, 0, layer, 0, words);
+        while(!isEmpty(layer)){
+            int colors = 0;
+            for(int color = 0; color < GameModel.NUMBER_OF_COLORS; color++){
+                long[] mask = colorMask[color];
+                for(int w = 0; w < words; w++){
+                    if((mask[w] & layer[w]) != 0){
+                        colors |= 1 << color;
+                        break;
+                    }
+                }
+            }
+            layerColors[distance++] = colors;
+            or(visited, layer);
+            java.util.Arrays.fill(next, 0L);
+            for(int w = 0; w < words; w++){
+                long bits = layer[w];
+                while(bits != 0){
+                    or(next, adjacent[(w << 6) + Long.numberOfTrailingZeros(bits)]);
+                    bits &= bits - 1;
+                }
+            }
+            andNot(next, visited);
+            System.arraycopy(next, 0, layer, 0, words);
+        }
+        int bound = 0;
+        int colors = 0;
+        for(int d = distance - 1; d >= 0; d--){
+            colors |= layerColors[d];
+            bound = Math.max(bound, d + Integer.bitCount(colors));
+        }
+        return bound;
+    }
+
+    /**
+     * <b>beam</b> is a helper method that builds a first plan with a beam
+     * search: at each move, only the states with the smallest lower bound
+     * (then the fewest regions left) are kept
+     *
+     * @param width the number of states kept at each move
+     * @return a plan finishing the game
+     */
+    private int[] beam(int width) {
+        long[] visited = new long[words];
+        long[] layer = new long[words];
+        long[] next = new long[words];
+        int[] layers = new int[adjacent.length + 1];
+        java.util.List<BeamState> states = new java.util.ArrayList<BeamState>();
+        states.add(new BeamState(rootCaptured.clone(), rootFrontier.clone(), new int[0], 0, 0));
+        while(true){
+            for(BeamState state : states){
+                if(isEmpty(state.frontier)){
+                    return state.plan;
+                }
+            }
+            java.util.List<BeamState> children = new java.util.ArrayList<BeamState>();
+            java.util.Set<Long> seen = new java.util.HashSet<Long>();
+            for(BeamState state : states){
+                for(int move : moves(state.captured, state.frontier)){
+                    long[] c = state.captured.clone();
+                    long[] f = state.frontier.clone();
+                    long hash = play(c, f, move, state.hash);
+                    if(seen.add(hash)){
+                        int[] plan = java.util.Arrays.copyOf(state.plan, state.plan.length + 1);
+                        plan[state.plan.length] = move;
+                        int left = 0;
+                        for(int w = 0; w < words; w++){
+                            left += Long.bitCount(~c[w]);
+                        }
+                        int score = lowerBound(c, f, visited, layer, next, layers)*65536 + left;
+                        children.add(new BeamState(c, f, plan, hash, score));
+                    }
+                }
+            }
+            children.sort((a, b) -> Integer.compare(a.score, b.score));
+            states = children.subList(0, Math.min(width, children.size()));
+        }
+    }
+
+    /**
+     * A state of the beam search
+     */
+    private static class BeamState {
+
+        private long[] captured;
+        private long[] frontier;
+        private int[] plan;
+        private long hash;
+        private int score;
+
+        private BeamState(long[] captured, long[] frontier, int[] plan, long hash, int score) {
+            this.captured = captured;
+            this.frontier = frontier;
+            this.plan = plan;
+            this.hash = hash;
+            this.score = score;
+        }
+    }
+
+    /**
+     * <b>exhausted</b> is a helper method that checks the budget of the search
+     *
+     * @return true if the search must stop
+     */
+    private boolean exhausted() {
+        if(cancelled || nodes.sum() >= maxNodes || System.nanoTime() - start >= maxNanos){
+            cancelled = true;
+        }
+        return cancelled;
+    }
+
+    /**
+     * <b>hashOf</b> is a helper method that hashes a set of regions
+     *
+     * @param regions the set of regions
+     * @return the hash of the set
+     */
+    private long hashOf(long[] regions) {
+        long hash = 0L;
+        for(int w = 0; w < words; w++){
+            long bits = regions[w];
+            while(bits != 0){
+                hash ^= keys[(w << 6) + Long.numberOfTrailingZeros(bits)];
+                bits &= bits - 1;
+            }
+        }
+        return hash;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >> 6] |= 1L << index;
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    private static void or(long[] bits, long[] other) {
+        for(int w = 0; w < bits.length; w++){
+            bits[w] |= other[w];
+        }
+    }
+
+    private static void andNot(long[] bits, long[] other) {
+        for(int w = 0; w < bits.length; w++){
+            bits[w] &= ~other[w];
+        }
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for(int w = 0; w < bits.length; w++){
+            if(bits[w] != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+}
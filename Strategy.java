@@ -0,0 +1,19 @@
+/**
+ * A <b>Strategy</b> chooses the next color to play in a game driven by a
+ * program instead of a player, for instance by the <b>BatchRunner</b>.
+ * A strategy may keep state between moves, so each game uses its own instance.
+ */
+
+public interface Strategy {
+
+    /**
+     * Returns the next color to play. The initial dot of the game has
+     * already been selected and the game is not finished.
+     *
+     * @param engine the engine playing the game
+     * @return the color to play, different from the current selected color
+     */
+
+    public abstract int nextColor( GameEngine engine );
+
+}
@@ -0,0 +1,58 @@
+/**
+ * The class <b>TableTopology</b> is a <b>Topology</b> that reads the
+ * neighbours of each dot from a table computed once from another topology,
+ * so finding them takes no test and no division. The table holds
+ * getMaxDegree() ints per dot. It never changes once built, so it can be
+ * shared by several models and threads.
+ */
+
+public class TableTopology implements Topology {
+
+    /**
+     * The largest number of neighbours of a cell
+     */
+    private final int degree;
+
+    /**
+     * The neighbours of each cell, degree entries per cell
+     */
+    private final int[] table;
+
+    /**
+     * The number of neighbours of each cell
+     */
+    private final byte[] counts;
+
+    /**
+     * Constructor
+     *
+     * @param topology
+     *            the topology giving the neighbours of each dot
+     */
+    public TableTopology(Topology topology) {
+        int cells = topology.getNumberOfCells();
+        degree = topology.getMaxDegree();
+        table = new int[cells*degree];
+        counts = new byte[cells];
+        int[] neighbours = new int[degree];
+        for(int cell = 0; cell < cells; cell++){
+            int count = topology.neighbours(cell, neighbours);
+            System.arraycopy(neighbours, 0, table, cell*degree, count);
+            counts[cell] = (byte) count;
+        }
+    }
+
+    public int getNumberOfCells(){
+        return counts.length;
+    }
+
+    public int getMaxDegree(){
+        return degree;
+    }
+
+    public int neighbours(int cell, int[] neighbours){
+        int count = counts[cell];
+        System.arraycopy(table, cell*degree, neighbours, 0, count);
+        return count;
+    }
+}
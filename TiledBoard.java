@@ -0,0 +1,388 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The class <b>TiledBoard</b> is a <b>Board</b> for huge boards. The cells
+ * are split into chunks of CHUNK consecutive cell ids, so that finding the
+ * chunk of a cell is a shift. Each chunk has its own array of colors and its
+ * own captured bitset, and:
+ *
+ * - an array is only allocated when a dot of its chunk is set: the
+ *   captured bitset of a chunk without any captured dot is never allocated
+ * - a copy of the board shares the arrays of the original, and the first
+ *   change made to a chunk by either board copies the arrays of that chunk
+ *   only, so the checkpoints of the history cost little until the
+ *   board diverges from them
+ * - the board can be read from a memory-mapped file, in the format written
+ *   by writeTo: the chunks that are not changed are read from the file, and
+ *   never loaded in memory
+ */
+public class TiledBoard implements Board, Serializable {
+
+    /**
+     * The number of cells of a chunk, and its number of color bytes and of
+     * captured longs
+     */
+    private static final int CHUNK_BITS = 16;
+    static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int COLOR_BYTES = CHUNK / 2;
+    private static final int CAPTURED_LONGS = CHUNK / 64;
+
+    /**
+     * Bytes written for the chunks that are not allocated
+     */
+    private static final byte[] ZEROS = new byte[COLOR_BYTES];
+
+    /**
+     * The size of the board (number of rows and of columns), and its number
+     * of cells
+     */
+    private int size;
+    private int cells;
+
+    /**
+     * The colors of the dots of each chunk, two per byte, or null if the
+     * chunk is not allocated
+     */
+    private byte[][] colors;
+
+    /**
+     * The captured state of the dots of each chunk, one bit per dot, or null
+     * if the chunk is not allocated
+     */
+    private long[][] captured;
+
+    /**
+     * True for the chunks whose arrays belong to this board only, and can
+     * be changed in place
+     */
+    private boolean[] ownColors;
+    private boolean[] ownCaptured;
+
+    /**
+     * The board as written by writeTo, holding the chunks that are not
+     * allocated, or null. The captured bitset is only read from it until
+     * clearCaptured is called.
+     */
+    private transient ByteBuffer source;
+    private transient boolean capturedInSource;
+
+    /**
+     * Constructor used to create a board of a given size, all dots
+     * having color 0 and not captured. No chunk is allocated.
+     *
+     * @param size
+     *            the size of the board
+     */
+    public TiledBoard(int size) {
+        this.size = size;
+        cells = size*size;
+        int chunks = (cells + CHUNK - 1) >>> CHUNK_BITS;
+        colors = new byte[chunks][];
+        captured = new long[chunks][];
+        ownColors = new boolean[chunks];
+        ownCaptured = new boolean[chunks];
+    }
+
+    /**
+     * Creates a board reading its dots from a buffer, for instance a file
+     * mapped in memory. The buffer must not change as long as the board, or
+     * a copy of it, is used.
+     *
+     * @param buffer
+     *            the board, as written by writeTo, from position 0
+     * @param size
+     *            the size of the board
+     * @return the board
+     */
+    static TiledBoard map(ByteBuffer buffer, int size){
+        TiledBoard board = new TiledBoard(size);
+        board.source = buffer;
+        board.capturedInSource = true;
+        return board;
+    }
+
+    public int getSize(){
+        return size;
+    }
+
+    public int cell(int i, int j){
+        return i*size + j;
+    }
+
+    public int getColor(int cell){
+        byte[] chunk = colors[cell >>> CHUNK_BITS];
+        int b;
+        if(chunk != null){
+            b = chunk[(cell & (CHUNK - 1)) >> 1];
+        } else if(source != null){
+            b = source.get(cell >> 1);
+        } else {
+            return 0;
+        }
+        return ((cell & 1) == 0 ? b : b >> 4) & 0x0F;
+    }
+
+    public void setColor(int cell, int color){
+        byte[] chunk = writableColors(cell >>> CHUNK_BITS);
+        int index = (cell & (CHUNK - 1)) >> 1;
+        if((cell & 1) == 0){
+            chunk[index] = (byte)((chunk[index] & 0xF0) | (color & 0x0F));
+        } else {
+            chunk[index] = (byte)((chunk[index] & 0x0F) | ((color & 0x0F) << 4));
+        }
+    }
+
+    public boolean isCaptured(int cell){
+        long[] chunk = captured[cell >>> CHUNK_BITS];
+        long bits;
+        if(chunk != null){
+            bits = chunk[(cell & (CHUNK - 1)) >> 6];
+        } else if(capturedInSource){
+            bits = source.getLong(colorBytes() + 8*(cell >> 6));
+        } else {
+            return false;
+        }
+        return (bits & (1L << cell)) != 0;
+    }
+
+    public void setCaptured(int cell, boolean value){
+        int index = cell >>> CHUNK_BITS;
+        if(!value && captured[index] == null && !capturedInSource){
+            return;
+        }
+        long[] chunk = writableCaptured(index);
+        if(value){
+            chunk[(cell & (CHUNK - 1)) >> 6] |= 1L << cell;
+        } else {
+            chunk[(cell & (CHUNK - 1)) >> 6] &= ~(1L << cell);
+        }
+    }
+
+    public void clearCaptured(){
+        Arrays.fill(captured, null);
+        Arrays.fill(ownCaptured, false);
+        capturedInSource = false;
+    }
+
+    public int countCaptured(){
+        int count = 0;
+        int longs = capturedLongs();
+        for(int index = 0; index < captured.length; index++){
+            if(captured[index] != null){
+                for(long bits : captured[index]){
+                    count += Long.bitCount(bits);
+                }
+            } else if(capturedInSource){
+                int first = index*CAPTURED_LONGS;
+                int last = Math.min(longs, first + CAPTURED_LONGS);
+                for(int k = first; k < last; k++){
+                    count += Long.bitCount(source.getLong(colorBytes() + 8*k));
+                }
+            }
+        }
+        return count;
+    }
+
+    public void writeTo(ByteBuffer buffer){
+        int colorBytes = colorBytes();
+        for(int index = 0; index < colors.length; index++){
+            int length = Math.min(COLOR_BYTES, colorBytes - index*COLOR_BYTES);
+            if(colors[index] != null){
+                buffer.put(colors[index], 0, length);
+            } else if(source != null){
+                buffer.put(source.slice(index*COLOR_BYTES, length));
+            } else {
+                buffer.put(ZEROS, 0, length);
+            }
+        }
+        int longs = capturedLongs();
+        for(int index = 0; index < captured.length; index++){
+            int count = Math.min(CAPTURED_LONGS, longs - index*CAPTURED_LONGS);
+            if(captured[index] != null){
+                buffer.asLongBuffer().put(captured[index], 0, count);
+                buffer.position(buffer.position() + 8*count);
+            } else if(capturedInSource){
+                buffer.put(source.slice(colorBytes + 8*index*CAPTURED_LONGS, 8*count));
+            } else {
+                buffer.put(ZEROS, 0, 8*count);
+            }
+        }
+    }
+
+    /**
+     * Reads the colors and the captured bitset written by writeTo into this
+     * board. The chunks without any captured dot are not allocated.
+     *
+     * @param buffer
+     *            the buffer, positioned at the board
+     */
+    void read(ByteBuffer buffer){
+        int colorBytes = colorBytes();
+        for(int index = 0; index < colors.length; index++){
+            colors[index] = new byte[COLOR_BYTES];
+            ownColors[index] = true;
+            buffer.get(colors[index], 0, Math.min(COLOR_BYTES, colorBytes - index*COLOR_BYTES));
+        }
+        int longs = capturedLongs();
+        long[] chunk = new long[CAPTURED_LONGS];
+        for(int index = 0; index < captured.length; index++){
+            int count = Math.min(CAPTURED_LONGS, longs - index*CAPTURED_LONGS);
+            buffer.asLongBuffer().get(chunk, 0, count);
+            buffer.position(buffer.position() + 8*count);
+            for(int k = 0; k < count; k++){
+                if(chunk[k] != 0){
+                    captured[index] = chunk;
+                    ownCaptured[index] = true;
+                    chunk = new long[CAPTURED_LONGS];
+                    break;
+                }
+            }
+        }
+    }
+
+    public int byteSize(){
+        return Board.byteSize(size);
+    }
+
+    /**
+     * Returns the number of bytes used by the arrays of this board. The
+     * arrays shared with a copy are counted too: once the other board has
+     * copied them on write, they are kept alive by this board alone, and
+     * a checkpoint of the history would otherwise be accounted as empty
+     * while it ends up holding the whole board. The mapped file is not
+     * counted.
+     *
+     * @return the size of the arrays used by this board, in bytes
+     */
+    public long footprint(){
+        long bytes = 0;
+        for(int index = 0; index < colors.length; index++){
+            if(colors[index] != null){
+                bytes += COLOR_BYTES;
+            }
+            if(captured[index] != null){
+                bytes += 8*CAPTURED_LONGS;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * This method produces a copy of TiledBoard and returns it. The arrays
+     * of the chunks are shared until one of the boards changes them.
+     *
+     * @return a copy of current TiledBoard
+     */
+    public TiledBoard clone() throws CloneNotSupportedException{
+        TiledBoard copy = (TiledBoard) super.clone();
+        copy.colors = colors.clone();
+        copy.captured = captured.clone();
+        copy.ownColors = new boolean[colors.length];
+        copy.ownCaptured = new boolean[captured.length];
+        Arrays.fill(ownColors, false);
+        Arrays.fill(ownCaptured, false);
+        if(source != null){
+            copy.source = source.duplicate();
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the number of chunks of this board
+     *
+     * @return the number of chunks
+     */
+    int getNumberOfChunks(){
+        return colors.length;
+    }
+
+    /**
+     * Returns the colors of the dots of a chunk, two per byte, for
+     * BoardGenerator to fill them in place. The chunk is allocated, or
+     * copied if it is shared. Different chunks can be filled by different
+     * threads.
+     *
+     * @param index
+     *            the index of the chunk
+     * @return the array of colors of the chunk, owned by this board
+     */
+    byte[] getColorChunk(int index){
+        return writableColors(index);
+    }
+
+    /**
+     * <b>writableColors</b> is a helper method that returns the colors of a
+     * chunk, allocating them or copying them first if needed
+     */
+    private byte[] writableColors(int index){
+        if(!ownColors[index]){
+            byte[] chunk = new byte[COLOR_BYTES];
+            if(colors[index] != null){
+                System.arraycopy(colors[index], 0, chunk, 0, COLOR_BYTES);
+            } else if(source != null){
+                source.get(index*COLOR_BYTES, chunk, 0, Math.min(COLOR_BYTES, colorBytes() - index*COLOR_BYTES));
+            }
+            colors[index] = chunk;
+            ownColors[index] = true;
+        }
+        return colors[index];
+    }
+
+    /**
+     * <b>writableCaptured</b> is a helper method that returns the captured
+     * bitset of a chunk, allocating it or copying it first if needed
+     */
+    private long[] writableCaptured(int index){
+        if(!ownCaptured[index]){
+            long[] chunk = new long[CAPTURED_LONGS];
+            if(captured[index] != null){
+                System.arraycopy(captured[index], 0, chunk, 0, CAPTURED_LONGS);
+            } else if(capturedInSource){
+                int first = index*CAPTURED_LONGS;
+                int count = Math.min(CAPTURED_LONGS, capturedLongs() - first);
+                for(int k = 0; k < count; k++){
+                    chunk[k] = source.getLong(colorBytes() + 8*(first + k));
+                }
+            }
+            captured[index] = chunk;
+            ownCaptured[index] = true;
+        }
+        return captured[index];
+    }
+
+    /**
+     * <b>colorBytes</b> is a helper method that returns the number of bytes
+     * of colors written by writeTo
+     */
+    private int colorBytes(){
+        return (cells + 1) >> 1;
+    }
+
+    /**
+     * <b>capturedLongs</b> is a helper method that returns the number of
+     * longs of the captured bitset written by writeTo
+     */
+    private int capturedLongs(){
+        return (cells + 63) >> 6;
+    }
+
+    /**
+     * <b>writeObject</b> is a helper method that loads the chunks still in
+     * the mapped file before the board is serialized
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if(source != null){
+            for(int index = 0; index < colors.length; index++){
+                writableColors(index);
+                if(capturedInSource){
+                    writableCaptured(index);
+                }
+            }
+            source = null;
+            capturedInSource = false;
+        }
+        out.defaultWriteObject();
+    }
+}
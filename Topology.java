@@ -0,0 +1,71 @@
+/**
+ * A <b>Topology</b> tells which dots of a board are next to each other. The
+ * flood engines and the <b>RegionGraph</b> only see the cell ids given by a
+ * topology, so a new way of connecting the dots (hexagons, a Klein bottle,
+ * ...) only needs a new implementation of this interface.
+ *
+ * create builds the topology of the square grid for a mode and a direction
+ * of <b>GameModel</b>: a <b>GridTopology</b>, which computes the neighbours
+ * of each dot, turned into a <b>TableTopology</b>, which reads them from a
+ * table, when the table has at most TABLE_LIMIT entries.
+ */
+
+public interface Topology {
+
+    /**
+     * The largest number of entries of the table of a TableTopology built
+     * by create
+     */
+    public static final int TABLE_LIMIT = 1 << 21;
+
+    /**
+     * Returns the number of cells of the board
+     *
+     * @return the number of cells
+     */
+
+    public abstract int getNumberOfCells();
+
+    /**
+     * Returns the largest number of neighbours of a cell
+     *
+     * @return the largest number of neighbours
+     */
+
+    public abstract int getMaxDegree();
+
+    /**
+     * Stores in an array the cell ids of the dots next to a given dot
+     *
+     * @param cell
+     *            the cell id of the dot
+     * @param neighbours
+     *            the array receiving the cell ids, of length getMaxDegree()
+     *            at least
+     * @return the number of neighbours stored
+     */
+
+    public abstract int neighbours(int cell, int[] neighbours);
+
+    /**
+     * Creates the topology of a square board for a mode and a direction
+     *
+     * @param size
+     *            the size of the board
+     * @param mode
+     *            GameModel.MODE_PLANE or GameModel.MODE_TORUS
+     * @param direction
+     *            GameModel.DIRECTION_ORTHOGONAL or
+     *            GameModel.DIRECTION_DIAGONAL
+     * @return a TableTopology if its table is small enough, a GridTopology
+     *         otherwise
+     */
+
+    public static Topology create(int size, int mode, int direction){
+        Topology grid = new GridTopology(size, mode, direction);
+        if((long) grid.getNumberOfCells()*grid.getMaxDegree() <= TABLE_LIMIT){
+            return new TableTopology(grid);
+        }
+        return grid;
+    }
+}
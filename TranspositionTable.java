@@ -0,0 +1,136 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The class <b>TranspositionTable</b> remembers the smallest depth at which
+ * a search reached each state, identified by its Zobrist hash, so that a
+ * state reached again at the same depth or deeper is not searched twice.
+ *
+ * It is a fixed-size hash table of primitive longs, shared by the threads of
+ * a search without locking and without allocating:
+ *
+ * - each hash goes to a bucket of BUCKET consecutive entries; when the
+ *   bucket is full, the entry of the deepest state is replaced, since it
+ *   prunes the fewest states
+ * - an entry is a single long holding the hash, except for its lowest
+ *   DEPTH_BITS bits, and the depth in those bits. It is read and written
+ *   in one atomic access, so the hash and the depth checked always come
+ *   from the same write, even when two threads write the entry at once.
+ *   The bits of the hash that are not stored are mostly those that chose
+ *   the bucket
+ *
+ * A state that is missed, because its entry was replaced, is searched
+ * again, so the table only loses time. A state is only pruned wrongly
+ * when two states collide on the stored bits of their hashes, as when two
+ * states have the same Zobrist hash.
+ */
+public class TranspositionTable {
+
+    /**
+     * The number of entries of a bucket
+     */
+    private static final int BUCKET = 4;
+
+    /**
+     * The number of low bits of an entry holding the depth plus one, and
+     * their mask. Deeper states are not recorded.
+     */
+    private static final int DEPTH_BITS = 16;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+
+    /**
+     * The default number of entries, 8 MB of memory
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * The hash and the depth plus one of each entry, 0 for an empty entry
+     */
+    private final AtomicLongArray entries;
+
+    /**
+     * The mask giving the first entry of the bucket of a hash
+     */
+    private final int mask;
+
+    /**
+     * Constructor used to create a table with the default capacity
+     */
+    public TranspositionTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor used to create a table of a given capacity
+     *
+     * @param capacity
+     *            the number of entries, rounded up to a power of 2
+     */
+    public TranspositionTable(int capacity) {
+        int size = Integer.highestOneBit(Math.max(BUCKET, capacity) - 1) << 1;
+        entries = new AtomicLongArray(size);
+        mask = (size - 1) & ~(BUCKET - 1);
+    }
+
+    /**
+     * Records that a state was reached at a given depth, unless it was
+     * already reached at that depth or less.
+     *
+     * @param hash
+     *            the hash of the state
+     * @param depth
+     *            the depth of the state
+     * @return true if the state was already reached at that depth or less,
+     *         and need not be searched again
+     */
+    public boolean visit(long hash, int depth){
+        if(depth + 1L > DEPTH_MASK){
+            return false;
+        }
+        long key = hash & ~DEPTH_MASK;
+        int first = (int)(hash ^ (hash >>> 32)) & mask;
+        int replaced = first;
+        long deepest = -1;
+        for(int index = first; index < first + BUCKET; index++){
+            long entry = entries.getOpaque(index);
+            long stored = entry & DEPTH_MASK;
+            if(stored == 0){
+                if(deepest < Long.MAX_VALUE){
+                    replaced = index;
+                    deepest = Long.MAX_VALUE;
+                }
+                continue;
+            }
+            if((entry & ~DEPTH_MASK) == key){
+                if(stored - 1 <= depth){
+                    return true;
+                }
+                replaced = index;
+                break;
+            }
+            if(stored > deepest){
+                replaced = index;
+                deepest = stored;
+            }
+        }
+        entries.setOpaque(replaced, key | (depth + 1L));
+        return false;
+    }
+
+    /**
+     * Getter method for the number of entries of the table
+     *
+     * @return the capacity of the table
+     */
+    public int getCapacity(){
+        return entries.length();
+    }
+
+    /**
+     * Empties the table
+     */
+    public void clear(){
+        for(int index = 0; index < entries.length(); index++){
+            entries.setOpaque(index, 0L);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * The class <b>Zobrist</b> gives the random keys used to hash the states of
+ * a game: one key per cell id and one per color. The hash of a state is the
+ * XOR of the keys of its captured dots and of the key of its selected color,
+ * so it is updated in O(1) when a dot is captured or released, or when the
+ * selected color changes, and two states with the same captured dots and
+ * selected color always have the same hash.
+ *
+ * The keys are not stored in a table, which would take 8 bytes per dot on a
+ * huge board, but computed from the cell id with the finalizer of
+ * SplitMix64, as <b>BoardGenerator</b> does for the colors. They are the
+ * same on every JVM, so hashes can be compared between runs.
+ */
+public class Zobrist {
+
+    /**
+     * The counters of the keys of the colors, far from the ones of the cells
+     */
+    private static final long COLOR_BASE = 1L << 40;
+
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the key of a captured dot
+     *
+     * @param cell
+     *            the cell id of the dot
+     * @return the key of the dot
+     */
+    public static long cellKey(int cell){
+        return BoardGenerator.mix((cell + 1L)*BoardGenerator.GOLDEN_GAMMA);
+    }
+
+    /**
+     * Returns the key of a selected color
+     *
+     * @param color
+     *            the color
+     * @return the key of the color
+     */
+    public static long colorKey(int color){
+        return BoardGenerator.mix((COLOR_BASE + color)*BoardGenerator.GOLDEN_GAMMA);
+    }
+
+    /**
+     * Computes the hash of the captured dots of a board, without any color
+     *
+     * @param board
+     *            the board
+     * @return the XOR of the keys of the captured dots
+     */
+    public static long hashCaptured(Board board){
+        long hash = 0L;
+        int cells = board.getSize()*board.getSize();
+        for(int cell = 0; cell < cells; cell++){
+            if(board.isCaptured(cell)){
+                hash ^= cellKey(cell);
+            }
+        }
+        return hash;
+    }
+}
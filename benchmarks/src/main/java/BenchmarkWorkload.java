@@ -0,0 +1,144 @@
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.io.*;
+
+import floodit.benchmarks.Workload;
+
+/**
+ * The class <b>BenchmarkWorkload</b> implements the operations measured by
+ * the benchmarks of floodit.benchmarks on the classes of the game. It is in
+ * the default package, like the game, so that it can use them.
+ */
+public class BenchmarkWorkload implements Workload {
+
+    public Object newEngine(int size, long seed, int mode, int direction){
+        GameEngine engine = new GameEngine(size, seed);
+        engine.setMode(mode);
+        engine.setDirection(direction);
+        return engine;
+    }
+
+    public int playGame(Object game){
+        GameEngine engine = (GameEngine) game;
+        engine.start(0, 0);
+        while(!engine.isFinished()){
+            int color = engine.getModel().getCurrentSelectedColor();
+            engine.play((color + 1) % GameModel.NUMBER_OF_COLORS);
+        }
+        return engine.getModel().getNumberOfSteps();
+    }
+
+    public Object newModel(int size, long seed){
+        return new GameModel(size, seed);
+    }
+
+    public Object cloneModel(Object model){
+        try{
+            return ((GameModel) model).clone();
+        } catch(CloneNotSupportedException e){
+            throw new IllegalStateException("Cannot be cloned");
+        }
+    }
+
+    public void resetModel(Object model){
+        ((GameModel) model).reset();
+    }
+
+    public Object generateBoard(int size, long seed){
+        return BoardGenerator.generate(size, seed);
+    }
+
+    public byte[] serialize(Object game){
+        GameEngine engine = (GameEngine) game;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream os = new ObjectOutputStream(bytes)){
+            os.writeObject(engine.getModel());
+            os.writeObject(engine.getHistory());
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public Object deserialize(byte[] bytes){
+        try(ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(bytes))){
+            is.readObject();
+            return is.readObject();
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        } catch(ClassNotFoundException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Object newStack(String kind, int capacity){
+        if(kind.equals("linked")){
+            return new GenericLinkedStack<Integer>();
+        } else if(kind.equals("array")){
+            return new GenericArrayStack<Integer>(capacity);
+        } else if(kind.equals("int")){
+            return new IntStack(capacity);
+        }
+        throw new IllegalArgumentException("Unknown stack: " + kind);
+    }
+
+    @SuppressWarnings("unchecked")
+    public int pushPop(Object stack, Object[] elements){
+        int sum = 0;
+        if(stack instanceof IntStack){
+            IntStack ints = (IntStack) stack;
+            for(Object element : elements){
+                ints.push((Integer) element);
+            }
+            while(!ints.isEmpty()){
+                sum += ints.pop();
+            }
+        } else {
+            Stack<Integer> integers = (Stack<Integer>) stack;
+            for(Object element : elements){
+                integers.push((Integer) element);
+            }
+            while(!integers.isEmpty()){
+                sum += integers.pop();
+            }
+        }
+        return sum;
+    }
+
+    public Object newView(Object model){
+        GameModel gameModel = (GameModel) model;
+        BoardView view;
+        if(gameModel.getSize() >= GameController.VIEWPORT_THRESHOLD){
+            view = new BoardViewport(gameModel, null);
+        } else if(gameModel.getSize() >= GameController.CANVAS_THRESHOLD){
+            view = new BoardCanvas(gameModel, null);
+        } else {
+            view = new DotButtonBoard(gameModel, null);
+        }
+        Component component = view.getComponent();
+        component.setSize(component.getPreferredSize());
+        layout(component);
+        return view;
+    }
+
+    public void updateView(Object view, Object model, Graphics2D graphics){
+        BoardView board = (BoardView) view;
+        board.update((GameModel) model);
+        board.getComponent().paint(graphics);
+    }
+
+    /**
+     * <b>layout</b> is a helper method that lays out a component and its
+     * children, as a window would
+     */
+    private static void layout(Component component){
+        if(component instanceof Container){
+            Container container = (Container) component;
+            container.doLayout();
+            for(Component child : container.getComponents()){
+                layout(child);
+            }
+        }
+    }
+}
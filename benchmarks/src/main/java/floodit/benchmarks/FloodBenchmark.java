@@ -0,0 +1,48 @@
+package floodit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Plays whole games, as the GameController does when the player selects the
+ * colors, for each mode, direction and size of board. The board is created
+ * before each game and is not measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FloodBenchmark {
+
+    @Param({"12", "50", "200"})
+    public int size;
+
+    @Param({"plane", "torus"})
+    public String mode;
+
+    @Param({"orthogonal", "diagonal"})
+    public String direction;
+
+    private Workload workload;
+    private Object engine;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void load(){
+        workload = Workload.load();
+    }
+
+    @Setup(Level.Invocation)
+    public void newGame(){
+        engine = workload.newEngine(size, seed++, mode.equals("torus") ? 1 : 0,
+            direction.equals("diagonal") ? 1 : 0);
+    }
+
+    @Benchmark
+    public int playGame(){
+        return workload.playGame(engine);
+    }
+}
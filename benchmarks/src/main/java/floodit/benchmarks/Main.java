@@ -0,0 +1,26 @@
+package floodit.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the JMH command line, writing the results as
+ * JSON to jmh-result.json unless the options choose another format or
+ * file, so that the results of successive runs can be compared.
+ */
+public class Main {
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if(!options.contains("-rf")){
+            options.add("-rf");
+            options.add("json");
+        }
+        if(!options.contains("-rff")){
+            options.add("-rff");
+            options.add("jmh-result.json");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,47 @@
+package floodit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Copies a model, as the history of the previous versions did before each
+ * move, resets it on a new random board, and generates boards from seeds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+    @Param({"12", "50", "200", "1000"})
+    public int size;
+
+    private Workload workload;
+    private Object model;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        workload = Workload.load();
+        model = workload.newModel(size, 0);
+    }
+
+    @Benchmark
+    public Object cloneModel(){
+        return workload.cloneModel(model);
+    }
+
+    @Benchmark
+    public Object resetModel(){
+        workload.resetModel(model);
+        return model;
+    }
+
+    @Benchmark
+    public Object generateBoard(){
+        return workload.generateBoard(size, seed++);
+    }
+}
@@ -0,0 +1,43 @@
+package floodit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Serializes and deserializes the model and the history of a finished game,
+ * as savedGame.ser was written and read.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"12", "50", "200"})
+    public int size;
+
+    private Workload workload;
+    private Object engine;
+    private byte[] saved;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        workload = Workload.load();
+        engine = workload.newEngine(size, 0, 0, 0);
+        workload.playGame(engine);
+        saved = workload.serialize(engine);
+    }
+
+    @Benchmark
+    public byte[] serialize(){
+        return workload.serialize(engine);
+    }
+
+    @Benchmark
+    public Object deserialize(){
+        return workload.deserialize(saved);
+    }
+}
@@ -0,0 +1,43 @@
+package floodit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Pushes elements onto a stack, then pops them all, with the stacks of the
+ * game: GenericLinkedStack, GenericArrayStack and IntStack.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StackBenchmark {
+
+    @Param({"linked", "array", "int"})
+    public String kind;
+
+    @Param({"100", "10000"})
+    public int count;
+
+    private Workload workload;
+    private Object stack;
+    private Object[] elements;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        workload = Workload.load();
+        stack = workload.newStack(kind, count);
+        elements = new Object[count];
+        for(int k = 0; k < count; k++){
+            elements[k] = k;
+        }
+    }
+
+    @Benchmark
+    public int pushPop(){
+        return workload.pushPop(stack, elements);
+    }
+}
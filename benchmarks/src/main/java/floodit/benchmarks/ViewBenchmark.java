@@ -0,0 +1,51 @@
+package floodit.benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Updates the view of the board with every dot of the model, as
+ * GameView.update does after an undo, and paints it to an image. The view
+ * is the one the GameController chooses for the size of the board, and no
+ * window is created, so the benchmark runs on a headless JVM.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ViewBenchmark {
+
+    @Param({"12", "50", "200"})
+    public int size;
+
+    private Workload workload;
+    private Object model;
+    private Object view;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        workload = Workload.load();
+        model = workload.newModel(size, 0);
+        view = workload.newView(model);
+        image = new BufferedImage(1200, 1200, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public Object update(){
+        workload.updateView(view, model, graphics);
+        return image;
+    }
+}
@@ -0,0 +1,149 @@
+package floodit.benchmarks;
+
+import java.awt.Graphics2D;
+
+/**
+ * A <b>Workload</b> runs the operations of the game that are measured by the
+ * benchmarks. The classes of the game are in the default package, which a
+ * benchmark cannot import, so the operations are implemented by the class
+ * BenchmarkWorkload of the default package, and the benchmarks call them
+ * through this interface. The objects of the game are passed as Object.
+ */
+
+public interface Workload {
+
+    /**
+     * Creates a game engine on a seeded board
+     *
+     * @param size the size of the board
+     * @param seed the seed of the board
+     * @param mode GameModel.MODE_PLANE or GameModel.MODE_TORUS
+     * @param direction GameModel.DIRECTION_ORTHOGONAL or
+     *            GameModel.DIRECTION_DIAGONAL
+     * @return the GameEngine
+     */
+
+    public abstract Object newEngine(int size, long seed, int mode, int direction);
+
+    /**
+     * Plays a game until the end, selecting the top left dot then the
+     * colors in turn
+     *
+     * @param engine the GameEngine, before the initial dot is selected
+     * @return the number of steps played
+     */
+
+    public abstract int playGame(Object engine);
+
+    /**
+     * Creates a model on a seeded board
+     *
+     * @param size the size of the board
+     * @param seed the seed of the board
+     * @return the GameModel
+     */
+
+    public abstract Object newModel(int size, long seed);
+
+    /**
+     * Returns a copy of a model
+     *
+     * @param model the GameModel
+     * @return the copy
+     */
+
+    public abstract Object cloneModel(Object model);
+
+    /**
+     * Resets a model on a new random board
+     *
+     * @param model the GameModel
+     */
+
+    public abstract void resetModel(Object model);
+
+    /**
+     * Generates the board of a seed with BoardGenerator
+     *
+     * @param size the size of the board
+     * @param seed the seed of the board
+     * @return the Board
+     */
+
+    public abstract Object generateBoard(int size, long seed);
+
+    /**
+     * Serializes the model and the history of an engine, as in savedGame.ser
+     *
+     * @param engine the GameEngine
+     * @return the serialized objects
+     */
+
+    public abstract byte[] serialize(Object engine);
+
+    /**
+     * Reads the model and the history written by serialize
+     *
+     * @param bytes the serialized objects
+     * @return the HistoryStore read
+     */
+
+    public abstract Object deserialize(byte[] bytes);
+
+    /**
+     * Creates a stack
+     *
+     * @param kind "linked" for a GenericLinkedStack, "array" for a
+     *            GenericArrayStack, "int" for an IntStack
+     * @param capacity the capacity of a GenericArrayStack
+     * @return the stack
+     */
+
+    public abstract Object newStack(String kind, int capacity);
+
+    /**
+     * Pushes elements onto a stack, then pops them all
+     *
+     * @param stack a stack created by newStack
+     * @param elements the elements, Integers
+     * @return the sum of the elements popped
+     */
+
+    public abstract int pushPop(Object stack, Object[] elements);
+
+    /**
+     * Creates the view of a board chosen by the GameController for its
+     * size, laid out at its preferred size. No window is created, so this
+     * works on a headless JVM.
+     *
+     * @param model the GameModel
+     * @return the BoardView
+     */
+
+    public abstract Object newView(Object model);
+
+    /**
+     * Updates a view with every dot of a model, as GameView.update does,
+     * then paints it
+     *
+     * @param view the BoardView
+     * @param model the GameModel
+     * @param graphics the graphics the view is painted to
+     */
+
+    public abstract void updateView(Object view, Object model, Graphics2D graphics);
+
+    /**
+     * Returns the workload implemented by the game
+     *
+     * @return the BenchmarkWorkload
+     */
+
+    public static Workload load(){
+        try{
+            return (Workload) Class.forName("BenchmarkWorkload").getDeclaredConstructor().newInstance();
+        } catch(ReflectiveOperationException e){
+            throw new IllegalStateException("Cannot load BenchmarkWorkload", e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The class <b>FloodEngineTest</b> checks that the flood engines keep
+ * capturing the right dots when moves are undone, redone and sought in
+ * between, the moves being replayed on what the engines keep between moves
+ * instead of rebuilding it. Every move is compared with a flood of a copy
+ * of the model by a new BitboardFloodEngine, the default engine of the
+ * game, which starts from the model alone. The region engine, which
+ * rebuilds its state after an undo or a redo, is checked the same way,
+ * and the parallel engine also on boards of several tiles, so that dots
+ * cross from tile to tile and the rounds run on the pool.
+ */
+class FloodEngineTest {
+
+    @Test
+    void bitboardEngineReplaysMoves() throws Exception {
+        check(BitboardFloodEngine::new);
+    }
+
+    @Test
+    void frontierEngineReplaysMoves() throws Exception {
+        check(FrontierFloodEngine::new);
+    }
+
+    @Test
+    void regionEngineReplaysMoves() throws Exception {
+        check(RegionFloodEngine::new);
+    }
+
+    @Test
+    void parallelEngineReplaysMoves() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try{
+            check(() -> new ParallelFloodEngine(pool, 0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parallelEngineFloodsAcrossTiles() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try{
+            check(() -> new ParallelFloodEngine(pool, 0), ParallelFloodEngine.TILE + 1, 2*ParallelFloodEngine.TILE + 1, 600);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * <b>check</b> is a helper method that plays random games with an
+     * engine, on boards of several sizes, modes and directions
+     */
+    private void check(Supplier<FloodEngine> engines) throws Exception {
+        check(engines, 1, 2, 7, 30, 130);
+    }
+
+    /**
+     * <b>check</b> is a helper method that plays random games with an
+     * engine, on boards of the given sizes, in every mode and direction
+     */
+    private void check(Supplier<FloodEngine> engines, int... sizes) throws Exception {
+        for(int size : sizes){
+            for(int mode = 0; mode < 2; mode++){
+                for(int direction = 0; direction < 2; direction++){
+                    play(engines.get(), size, mode, direction, size*4 + mode*2 + direction);
+                }
+            }
+        }
+    }
+
+    /**
+     * <b>play</b> is a helper method that plays a random game with an
+     * engine, with undo, redo and seek, as GameEngine does. On a board of
+     * several tiles, the game starts next to the corner of four tiles and
+     * is shorter.
+     */
+    private void play(FloodEngine engine, int size, int mode, int direction, long seed) throws Exception {
+        GameModel model = new GameModel(size, seed);
+        model.setMode(mode);
+        model.setDirection(direction);
+        HistoryStore history = new HistoryStore(4, HistoryStore.DEFAULT_BUDGET);
+        Random random = new Random(seed);
+        String game = "size " + size + ", mode " + mode + ", direction " + direction;
+        boolean tiled = size > ParallelFloodEngine.TILE;
+        for(int k = 0; k < (tiled ? 60 : 300) && !model.isFinished(); k++){
+            int action = random.nextInt(10);
+            if(action == 0 && history.canUndo()){
+                int version = model.getVersion();
+                engine.replay(model, history.undo(model), true, version);
+            } else if(action == 1 && history.canRedo()){
+                int version = model.getVersion();
+                engine.replay(model, history.redo(model), false, version);
+            } else if(action == 2){
+                int from = history.getPosition();
+                int step = random.nextInt(history.getSize() + 1);
+                int version = model.getVersion();
+                if(!history.seek(model, step)){
+                    for(int m = from; m < step; m++){
+                        engine.replay(model, history.get(m), false, version);
+                        version += history.get(m).getNumberCaptured();
+                    }
+                    for(int m = from - 1; m >= step; m--){
+                        engine.replay(model, history.get(m), true, version);
+                        version += history.get(m).getNumberCaptured();
+                    }
+                }
+            } else {
+                GameModel expected = model.clone();
+                history.prepare(model);
+                MoveDelta delta = new MoveDelta(model);
+                if(model.allDotsNotCaptured()){
+                    int row = random.nextInt(size);
+                    int column = random.nextInt(size);
+                    if(tiled){
+                        row = Math.min(size - 1, ParallelFloodEngine.TILE - 4 + random.nextInt(8));
+                        column = Math.min(size - 1, ParallelFloodEngine.TILE - 4 + random.nextInt(8));
+                    }
+                    new BitboardFloodEngine().capture(expected, row, column, null);
+                    new BitboardFloodEngine().flood(expected, null);
+                    engine.capture(model, row, column, delta);
+                } else {
+                    int color = random.nextInt(GameModel.NUMBER_OF_COLORS);
+                    expected.setCurrentSelectedColor(color);
+                    new BitboardFloodEngine().flood(expected, null);
+                    model.setCurrentSelectedColor(color);
+                    model.step();
+                }
+                engine.flood(model, delta);
+                delta.finish(model);
+                history.add(delta);
+                if(expected.getHash() != model.getHash()){
+                    assertEquals(expected.toString(), model.toString(), game + ", move " + k);
+                }
+                assertEquals(expected.getHash(), model.getHash(), game + ", move " + k);
+                assertEquals(expected.getNumberCaptured(), model.getNumberCaptured(), game + ", move " + k);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The class <b>GameFileTest</b> checks that the saved games of the first
+ * version of the game are still read, and are not lost when they cannot be,
+ * and that a huge board read from a game file does not depend on the file,
+ * which the next save replaces.
+ *
+ * fixtures/legacy-savedGame.ser was written by the classes of the first
+ * version: a 12x12 plane game started at (3,4), with 6 moves played and 2 of
+ * them undone, saved as its model and its stacks of models to undo and redo.
+ */
+class GameFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsSerializedGameOfFirstVersion() throws Exception {
+        GameEngine engine = GameFile.readSerialized(fixture());
+        GameModel model = engine.getModel();
+        assertEquals(12, model.getSize());
+        assertEquals(GameModel.MODE_PLANE, model.getMode());
+        assertEquals(4, model.getNumberOfSteps());
+        assertEquals(3, model.getCurrentSelectedColor());
+        assertEquals(6, model.getNumberCaptured());
+        assertEquals(5, engine.getHistory().getPosition());
+        assertEquals(7, engine.getHistory().getSize());
+
+        engine.redo();
+        engine.redo();
+        assertFalse(engine.canRedo());
+        assertEquals(6, model.getNumberOfSteps());
+        assertEquals(2, model.getCurrentSelectedColor());
+        assertEquals(13, model.getNumberCaptured());
+
+        engine.seek(0);
+        assertTrue(model.allDotsNotCaptured());
+        engine.seek(1);
+        assertTrue(model.isCaptured(3, 4));
+        assertEquals(model.getColor(3, 4), model.getCurrentSelectedColor());
+    }
+
+    @Test
+    void serializedGameSurvivesRoundTrip() throws Exception {
+        GameEngine legacy = GameFile.readSerialized(fixture());
+        Path saved = directory.resolve("savedGame.ser");
+        GameFile.write(legacy, saved);
+        assertTrue(GameFile.isGameFile(saved));
+
+        GameEngine read = GameFile.read(saved);
+        assertEquals(legacy.getHistory().getPosition(), read.getHistory().getPosition());
+        assertEquals(legacy.getHistory().getSize(), read.getHistory().getSize());
+        for(int step = 0; step <= legacy.getHistory().getSize(); step++){
+            legacy.seek(step);
+            read.seek(step);
+            assertEquals(legacy.getModel().toString(), read.getModel().toString(), "step " + step);
+            assertEquals(legacy.getModel().getNumberOfSteps(), read.getModel().getNumberOfSteps());
+            assertEquals(legacy.getModel().getCurrentSelectedColor(), read.getModel().getCurrentSelectedColor());
+            assertEquals(legacy.getModel().getHash(), read.getModel().getHash());
+        }
+    }
+
+    @Test
+    void unreadableGameIsSetAside() throws Exception {
+        Path saved = directory.resolve("savedGame.ser");
+        byte[] bytes = "not a saved game".getBytes("US-ASCII");
+        Files.write(saved, bytes);
+        assertThrows(IOException.class, () -> GameFile.readSerialized(saved));
+
+        Path aside = GameFile.setAside(saved, false);
+        assertFalse(Files.exists(saved));
+        assertArrayEquals(bytes, Files.readAllBytes(aside));
+        assertTrue(aside.getFileName().toString().startsWith("savedGame.ser.unreadable-"));
+    }
+
+    @Test
+    void hugeBoardIsNotMappedFromTheGameFile() throws Exception {
+        int size = Board.TILED_THRESHOLD;
+        Board board = BoardGenerator.generate(size, 3);
+        GameEngine engine = new GameEngine(new GameModel(board), new HistoryStore());
+        Path saved = directory.resolve("savedGame.ser");
+        GameFile.write(engine, saved);
+
+        GameEngine read = GameFile.read(saved);
+        byte[] bytes = Files.readAllBytes(saved);
+        Arrays.fill(bytes, 64, bytes.length, (byte)0x55);
+        Files.write(saved, bytes);
+        assertSameColors(board, read.getModel().getBoard());
+
+        GameFile.write(read, saved);
+        assertSameColors(board, GameFile.read(saved).getModel().getBoard());
+    }
+
+    /**
+     * <b>assertSameColors</b> is a helper method that checks that two boards
+     * have the same colors
+     */
+    private void assertSameColors(Board expected, Board board) {
+        for(int cell = 0; cell < expected.getSize()*expected.getSize(); cell++){
+            if(expected.getColor(cell) != board.getColor(cell)){
+                assertEquals(expected.getColor(cell), board.getColor(cell), "cell " + cell);
+            }
+        }
+    }
+
+    /**
+     * <b>fixture</b> is a helper method that copies the saved game of the
+     * first version to the temporary directory
+     */
+    private Path fixture() throws Exception {
+        Path copy = directory.resolve("legacy-savedGame.ser");
+        Files.copy(Paths.get(getClass().getResource("/fixtures/legacy-savedGame.ser").toURI()), copy);
+        return copy;
+    }
+}
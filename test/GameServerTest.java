@@ -0,0 +1,200 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The class <b>GameServerTest</b> plays games on a server through its
+ * binary protocol, and checks every response against a <b>GameEngine</b>
+ * playing the same game: the whole state after NEW_GAME and SNAPSHOT, the
+ * state deltas after START, PLAY and UNDO, the errors, after which the
+ * session goes on, and the unknown opcode, which ends the session.
+ */
+class GameServerTest {
+
+    private static final int SIZE = 10;
+    private static final long SEED = 42;
+
+    private GameServer server;
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    @BeforeEach
+    void connect() throws Exception {
+        server = new GameServer(new String[]{"port=0", "threads=platform"});
+        int port = server.open();
+        Thread thread = new Thread(() -> {
+            try{
+                server.run();
+            }catch(IOException e){
+                // the server is closed
+            }
+        }, "game-server");
+        thread.setDaemon(true);
+        thread.start();
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setSoTimeout(10000);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        socket.close();
+        server.close();
+    }
+
+    @Test
+    void newGameAndSnapshotSendTheWholeState() throws Exception {
+        GameEngine engine = new GameEngine(SIZE, SEED);
+        engine.setMode(GameModel.MODE_TORUS);
+        engine.setDirection(GameModel.DIRECTION_DIAGONAL);
+        newGame(SIZE, SEED, GameModel.MODE_TORUS, GameModel.DIRECTION_DIAGONAL);
+        assertState(engine);
+
+        out.writeByte(GameServer.SNAPSHOT);
+        out.flush();
+        assertState(engine);
+    }
+
+    @Test
+    void movesSendTheirDeltas() throws Exception {
+        GameEngine engine = new GameEngine(SIZE, SEED);
+        newGame(SIZE, SEED, GameModel.MODE_PLANE, GameModel.DIRECTION_ORTHOGONAL);
+        assertState(engine);
+
+        out.writeByte(GameServer.START);
+        out.writeInt(4);
+        out.writeInt(5);
+        out.flush();
+        assertDelta(engine, engine.start(4, 5), GameServer.CAPTURED);
+
+        for(int k = 1; k <= 3; k++){
+            int color = (engine.getModel().getCurrentSelectedColor() + k) % GameModel.NUMBER_OF_COLORS;
+            out.writeByte(GameServer.PLAY);
+            out.writeByte(color);
+            out.flush();
+            assertDelta(engine, engine.play(color), GameServer.CAPTURED);
+        }
+
+        out.writeByte(GameServer.PLAY);
+        out.writeByte(engine.getModel().getCurrentSelectedColor());
+        out.flush();
+        assertDelta(engine, null, GameServer.CAPTURED);
+
+        out.writeByte(GameServer.UNDO);
+        out.flush();
+        assertDelta(engine, engine.undo(), GameServer.RELEASED);
+
+        out.writeByte(GameServer.SNAPSHOT);
+        out.flush();
+        assertState(engine);
+    }
+
+    @Test
+    void errorsLeaveTheSessionOpen() throws Exception {
+        GameEngine engine = new GameEngine(SIZE, SEED);
+        newGame(SIZE, SEED, GameModel.MODE_PLANE, GameModel.DIRECTION_ORTHOGONAL);
+        assertState(engine);
+
+        out.writeByte(GameServer.PLAY);
+        out.writeByte(2);
+        out.flush();
+        assertError("Initial dot not selected");
+
+        out.writeByte(GameServer.UNDO);
+        out.flush();
+        assertError("Cannot undo");
+
+        out.writeByte(GameServer.START);
+        out.writeInt(SIZE);
+        out.writeInt(0);
+        out.flush();
+        assertError("Invalid dot " + SIZE + ",0");
+
+        out.writeByte(GameServer.PLAY);
+        out.writeByte(GameModel.NUMBER_OF_COLORS);
+        out.flush();
+        assertError("Invalid color " + GameModel.NUMBER_OF_COLORS);
+
+        newGame(0, SEED, GameModel.MODE_PLANE, GameModel.DIRECTION_ORTHOGONAL);
+        assertError("Invalid size 0");
+
+        out.writeByte(GameServer.SNAPSHOT);
+        out.flush();
+        assertState(engine);
+    }
+
+    @Test
+    void unknownOpcodeEndsTheSession() throws Exception {
+        out.writeByte(99);
+        out.flush();
+        assertError("Unknown opcode 99");
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * <b>newGame</b> is a helper method that sends a NEW_GAME request
+     */
+    private void newGame(int size, long seed, int mode, int direction) throws IOException {
+        out.writeByte(GameServer.NEW_GAME);
+        out.writeInt(size);
+        out.writeLong(seed);
+        out.writeByte(mode);
+        out.writeByte(direction);
+        out.flush();
+    }
+
+    /**
+     * <b>assertState</b> is a helper method that reads a response with the
+     * whole state, and checks it against an engine
+     */
+    private void assertState(GameEngine engine) throws IOException {
+        GameModel model = engine.getModel();
+        assertEquals(GameServer.OK, in.readByte());
+        assertEquals(model.getSize(), in.readInt());
+        assertEquals(model.getMode(), in.readByte());
+        assertEquals(model.getDirection(), in.readByte());
+        assertEquals(model.getNumberOfSteps(), in.readInt());
+        assertEquals(model.getCurrentSelectedColor(), in.readByte());
+        assertEquals(model.isFinished() ? 1 : 0, in.readByte());
+        ByteBuffer board = ByteBuffer.allocate(model.getBoard().byteSize());
+        model.getBoard().writeTo(board);
+        byte[] bytes = new byte[board.capacity()];
+        in.readFully(bytes);
+        assertArrayEquals(board.array(), bytes);
+    }
+
+    /**
+     * <b>assertDelta</b> is a helper method that reads a response with a
+     * state delta, and checks it against an engine and the move it played
+     */
+    private void assertDelta(GameEngine engine, MoveDelta delta, int kind) throws IOException {
+        GameModel model = engine.getModel();
+        assertEquals(GameServer.OK, in.readByte());
+        assertEquals(model.getNumberOfSteps(), in.readInt());
+        assertEquals(model.getCurrentSelectedColor(), in.readByte());
+        assertEquals(model.isFinished() ? 1 : 0, in.readByte());
+        assertEquals(kind, in.readByte());
+        int n = delta == null ? 0 : delta.getNumberCaptured();
+        assertEquals(n, in.readInt());
+        for(int k = 0; k < n; k++){
+            assertEquals(delta.getCell(k), in.readInt());
+        }
+    }
+
+    /**
+     * <b>assertError</b> is a helper method that reads an ERROR response
+     */
+    private void assertError(String message) throws IOException {
+        assertEquals(GameServer.ERROR, in.readByte());
+        assertEquals(message, in.readUTF());
+    }
+}
@@ -0,0 +1,145 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The class <b>HistoryStoreTest</b> checks the memory accounted by a
+ * history read from a buffer, once moves are forgotten and played on it,
+ * by the checkpoint of a tiled board, which shares its chunks with the
+ * board until the moves change them, and by resets spilled to keep the
+ * history within its budget.
+ */
+class HistoryStoreTest {
+
+    @Test
+    void loadedHistoryAccountsForItsMoves() {
+        GameModel model = new GameModel(100, 11);
+        HistoryStore history = new HistoryStore(2, HistoryStore.DEFAULT_BUDGET);
+        Random random = new Random(11);
+        play(model, history, random, 20);
+        ByteBuffer buffer = ByteBuffer.allocate((int)history.byteSize());
+        history.writeTo(buffer);
+        buffer.flip();
+
+        long board = model.getBoard().footprint();
+        long budget = deltas(history, 9) + board;
+        HistoryStore loaded = HistoryStore.readFrom(buffer, 100, budget);
+        assertEquals(deltas(loaded, loaded.getSize()), loaded.getMemory());
+
+        loaded.seek(model, 9);
+        play(model, loaded, random, 1);
+        assertEquals(10, loaded.getSize());
+        assertEquals(deltas(loaded, 10), loaded.getMemory());
+
+        play(model, loaded, random, 8);
+        long moves = deltas(loaded, loaded.getSize());
+        long checkpoints = loaded.getMemory() - moves;
+        assertTrue(checkpoints >= 0 && checkpoints % board == 0, "memory of the checkpoints " + checkpoints);
+        assertTrue(loaded.getMemory() <= budget || checkpoints == 0, "memory " + loaded.getMemory() + " over budget " + budget);
+    }
+
+    @Test
+    void tiledCheckpointIsAccountedOnceTheBoardDiverges() {
+        GameModel model = new GameModel(Board.TILED_THRESHOLD, 5);
+        long board = model.getBoard().footprint();
+        assertTrue(board > 0, "footprint of the board " + board);
+        HistoryStore history = new HistoryStore(4, HistoryStore.DEFAULT_BUDGET);
+        play(model, history, new Random(5), 3);
+        assertEquals(deltas(history, 3) + board, history.getMemory());
+
+        model = new GameModel(Board.TILED_THRESHOLD, 5);
+        history = new HistoryStore(4, board/2);
+        play(model, history, new Random(5), 3);
+        assertEquals(deltas(history, 3), history.getMemory());
+        history.seek(model, 0);
+        history.seek(model, 3);
+        history.clear();
+    }
+
+    @Test
+    void resetsAreSpilledUnderASmallBudget() {
+        GameModel model = new GameModel(100, 3);
+        long board = model.getBoard().footprint();
+        long budget = 3*board;
+        HistoryStore history = new HistoryStore(HistoryStore.DEFAULT_INTERVAL, budget);
+        Random random = new Random(3);
+        ArrayList<String> states = new ArrayList<String>();
+        states.add(model.toString());
+        for(int k = 0; k < 6; k++){
+            play(model, history, random, 2);
+            history.prepare(model);
+            if(k % 2 == 0){
+                history.add(MoveDelta.reset(model, 20L + k));
+            } else {
+                history.add(MoveDelta.reset(model, BoardGenerator.generate(100, 20L + k)));
+            }
+            while(states.size() < history.getSize()){
+                states.add(null);
+            }
+            states.add(model.toString());
+            assertTrue(history.getMemory() <= budget, "memory " + history.getMemory() + " over budget " + budget);
+        }
+        ByteBuffer spilled = ByteBuffer.allocate((int)history.byteSize());
+        history.writeTo(spilled);
+        spilled.flip();
+
+        while(history.canUndo()){
+            history.undo(model);
+            if(states.get(history.getPosition()) != null){
+                assertEquals(states.get(history.getPosition()), model.toString(), "undo to " + history.getPosition());
+            }
+        }
+        while(history.canRedo()){
+            history.redo(model);
+            if(states.get(history.getPosition()) != null){
+                assertEquals(states.get(history.getPosition()), model.toString(), "redo to " + history.getPosition());
+            }
+        }
+        ByteBuffer loaded = ByteBuffer.allocate((int)history.byteSize());
+        history.writeTo(loaded);
+        loaded.flip();
+        assertEquals(loaded, spilled);
+        history.clear();
+    }
+
+    /**
+     * <b>play</b> is a helper method that plays moves of random colors on a
+     * model, recording them in a history as GameEngine does
+     */
+    private void play(GameModel model, HistoryStore history, Random random, int moves) {
+        FloodEngine engine = new FrontierFloodEngine();
+        for(int k = 0; k < moves; k++){
+            history.prepare(model);
+            MoveDelta delta = new MoveDelta(model);
+            if(model.allDotsNotCaptured()){
+                engine.capture(model, 50, 50, delta);
+            } else {
+                int color = model.getCurrentSelectedColor();
+                while(color == model.getCurrentSelectedColor()){
+                    color = random.nextInt(GameModel.NUMBER_OF_COLORS);
+                }
+                model.setCurrentSelectedColor(color);
+                model.step();
+            }
+            engine.flood(model, delta);
+            delta.finish(model);
+            history.add(delta);
+        }
+    }
+
+    /**
+     * <b>deltas</b> is a helper method that returns the memory used by the
+     * first moves of a history
+     */
+    private long deltas(HistoryStore history, int count) {
+        long bytes = 0;
+        for(int k = 0; k < count; k++){
+            bytes += history.get(k).footprint();
+        }
+        return bytes;
+    }
+}
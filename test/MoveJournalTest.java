@@ -0,0 +1,121 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The class <b>MoveJournalTest</b> checks how a game is recovered from its
+ * checkpoint and its journal after a crash: a last record that was not
+ * completely written is dropped, and a corrupt record in the middle of the
+ * journal sets the journal aside instead of dropping the records after it.
+ *
+ * The journal written by play starts with a header of 12 bytes, followed by
+ * the initial dot in 9 bytes and one record of 2 bytes for every color.
+ */
+class MoveJournalTest {
+
+    private static final int[] COLORS = {1, 3, 0, 4, 2, 5};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornLastRecordIsDropped() throws Exception {
+        play();
+        byte[] bytes = Files.readAllBytes(journal());
+        Files.write(journal(), Arrays.copyOf(bytes, bytes.length - 1));
+
+        GameEngine engine = GameFile.read(checkpoint());
+        MoveJournal journal = new MoveJournal(checkpoint(), journal());
+        try{
+            assertEquals(COLORS.length, journal.open(engine));
+        } finally {
+            journal.close();
+        }
+        assertEquals(expected(COLORS.length - 1).getHash(), engine.getModel().getHash());
+        assertEquals(bytes.length - 2, Files.size(journal()));
+        assertEquals(0, aside().length);
+    }
+
+    @Test
+    void corruptRecordSetsTheJournalAside() throws Exception {
+        play();
+        byte[] bytes = Files.readAllBytes(journal());
+        bytes[12 + 9 + 2*2] = 0x7F;
+        Files.write(journal(), bytes);
+
+        GameEngine engine = GameFile.read(checkpoint());
+        MoveJournal journal = new MoveJournal(checkpoint(), journal());
+        try{
+            assertEquals(3, journal.open(engine));
+        } finally {
+            journal.close();
+        }
+        assertEquals(expected(2).getHash(), engine.getModel().getHash());
+        Path[] aside = aside();
+        assertEquals(1, aside.length);
+        assertArrayEquals(bytes, Files.readAllBytes(aside[0]));
+        assertTrue(MoveJournal.isClean(checkpoint(), journal()));
+        assertEquals(expected(2).getHash(), GameFile.read(checkpoint()).getModel().getHash());
+    }
+
+    /**
+     * <b>play</b> is a helper method that plays a game journaled in the
+     * directory, and leaves its checkpoint and journal as after a crash
+     */
+    private void play() throws Exception {
+        GameEngine engine = new GameEngine(12, 7L);
+        MoveJournal journal = new MoveJournal(checkpoint(), journal());
+        journal.open(engine);
+        engine.start(5, 6);
+        for(int color : COLORS){
+            engine.play(color);
+        }
+        journal.flush();
+        journal.close();
+        assertEquals(12 + 9 + 2*COLORS.length, Files.size(journal()));
+    }
+
+    /**
+     * <b>expected</b> is a helper method that returns the model of the game
+     * of play, once the initial dot and the first colors are played
+     */
+    private GameModel expected(int colors) {
+        GameEngine engine = new GameEngine(12, 7L);
+        engine.start(5, 6);
+        for(int k = 0; k < colors; k++){
+            engine.play(COLORS[k]);
+        }
+        return engine.getModel();
+    }
+
+    /**
+     * <b>aside</b> is a helper method that returns the journals set aside
+     */
+    private Path[] aside() throws Exception {
+        try(Stream<Path> files = Files.list(directory)){
+            return files.filter(path -> path.getFileName().toString().startsWith("savedGame.journal.unreadable-"))
+                .toArray(Path[]::new);
+        }
+    }
+
+    /**
+     * <b>checkpoint</b> is a helper method that returns the checkpoint of
+     * the game
+     */
+    private Path checkpoint() {
+        return directory.resolve("savedGame.ser");
+    }
+
+    /**
+     * <b>journal</b> is a helper method that returns the journal of the game
+     */
+    private Path journal() {
+        return directory.resolve("savedGame.journal");
+    }
+}